@@ -0,0 +1,245 @@
+package com.spartronics4915.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * A small microbenchmark harness modeled on JMH's default mode: each
+ * benchmark gets timed warmup iterations, then timed measurement
+ * iterations, and we report the mean time per operation with a 99.9%
+ * confidence interval plus the bytes allocated per operation (from the
+ * HotSpot per-thread allocation counter). Benchmarks return a value that
+ * is folded into a sink, so the JIT can't discard the work. A benchmark
+ * may be measured against background load on another thread, eg: a
+ * writer contending for the lock the benchmark reads under.
+ *
+ * Runs on a dev machine, nothing here touches the HAL. Usage (see
+ * build.xml):
+ *
+ * ant bench [-Dbench.filter=regex] [-Dbench.args="-wi 5 -i 5 -r 500"]
+ */
+public class BenchmarkRunner
+{
+
+    public interface Benchmark
+    {
+
+        double run();
+    }
+
+    private static class Entry
+    {
+
+        final String name;
+        final Benchmark benchmark;
+        final Runnable load; // run repeatedly on another thread, or null
+
+        Entry(String name, Benchmark benchmark, Runnable load)
+        {
+            this.name = name;
+            this.benchmark = benchmark;
+            this.load = load;
+        }
+    }
+
+    private final List<Entry> mEntries = new ArrayList<>();
+    private final List<String[]> mComparisons = new ArrayList<>(); // {baseline, other}
+    private final Map<String, Double> mScores = new HashMap<>();
+    private int mWarmupIterations = 5;
+    private int mMeasurementIterations = 5;
+    private long mIterationMs = 500;
+    private double mSink;
+
+    public void add(String name, Benchmark benchmark)
+    {
+        add(name, benchmark, null);
+    }
+
+    /**
+     * Adds a benchmark that is measured (warmup included) while load is
+     * called in a loop on a background thread.
+     */
+    public void add(String name, Benchmark benchmark, Runnable load)
+    {
+        mEntries.add(new Entry(name, benchmark, load));
+    }
+
+    /**
+     * After the run, reports how many times faster other was than baseline
+     * (if both ran), eg: to show the speedup of a parallel version.
+     */
+    public void addComparison(String baseline, String other)
+    {
+        mComparisons.add(new String[] {baseline, other});
+    }
+
+    public void setIterations(int warmup, int measurement, long iterationMs)
+    {
+        mWarmupIterations = warmup;
+        mMeasurementIterations = measurement;
+        mIterationMs = iterationMs;
+    }
+
+    public void run(Pattern filter)
+    {
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+        {
+            bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        System.out.println(String.format("%-52s %5s %12s %10s %10s", "Benchmark", "Cnt", "Score", "Error",
+                "B/op"));
+        for (Entry e : mEntries)
+        {
+            if (!filter.matcher(e.name).find())
+                continue;
+            final AtomicBoolean loading = new AtomicBoolean(true);
+            Thread loader = null;
+            if (e.load != null)
+            {
+                loader = new Thread(() ->
+                {
+                    while (loading.get())
+                        e.load.run();
+                }, "Benchmark load");
+                loader.setDaemon(true);
+                loader.start();
+            }
+            for (int i = 0; i < mWarmupIterations; i++)
+            {
+                iteration(e.benchmark, null);
+            }
+            double[] scores = new double[mMeasurementIterations];
+            double bytes = 0.0;
+            for (int i = 0; i < mMeasurementIterations; i++)
+            {
+                double[] result = iteration(e.benchmark, bean);
+                scores[i] = result[0];
+                bytes += result[1];
+            }
+            loading.set(false);
+            if (loader != null)
+            {
+                try
+                {
+                    loader.join();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            double mean = mean(scores);
+            mScores.put(e.name, mean);
+            System.out.println(String.format("%-52s %5d %9.1f ns %10.1f %10s", e.name, mMeasurementIterations, mean,
+                    error(scores, mean), bean == null ? "n/a" : String.format("%.1f", bytes / scores.length)));
+        }
+        for (String[] c : mComparisons)
+        {
+            if (mScores.containsKey(c[0]) && mScores.containsKey(c[1]))
+                System.out.println(String.format("%s vs %s: %.2fx speedup", c[1], c[0],
+                        mScores.get(c[0]) / mScores.get(c[1])));
+        }
+        if (mSink == 42.4242)
+            System.out.println(); // keep the sink live
+    }
+
+    /**
+     * Calls the benchmark in doubling batches until the iteration time is
+     * used up.
+     *
+     * @return {ns/op, bytes/op}
+     */
+    private double[] iteration(Benchmark benchmark, com.sun.management.ThreadMXBean bean)
+    {
+        final long id = Thread.currentThread().getId();
+        final long deadline = System.nanoTime() + mIterationMs * 1000000L;
+        long ops = 0;
+        long ns = 0;
+        long bytes = 0;
+        long batch = 1;
+        double sink = 0.0;
+        while (System.nanoTime() < deadline)
+        {
+            long allocated = bean == null ? 0 : bean.getThreadAllocatedBytes(id);
+            long start = System.nanoTime();
+            for (long i = 0; i < batch; i++)
+            {
+                sink += benchmark.run();
+            }
+            ns += System.nanoTime() - start;
+            if (bean != null)
+                bytes += bean.getThreadAllocatedBytes(id) - allocated;
+            ops += batch;
+            if (batch < (1 << 20))
+                batch <<= 1;
+        }
+        mSink += sink;
+        return new double[] {(double) ns / ops, (double) bytes / ops};
+    }
+
+    private static double mean(double[] values)
+    {
+        double sum = 0.0;
+        for (double v : values)
+        {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Half width of the 99.9% confidence interval, using the normal
+     * approximation (JMH uses Student's t, which is wider for few
+     * iterations).
+     */
+    private static double error(double[] values, double mean)
+    {
+        if (values.length < 2)
+            return Double.NaN;
+        double sum = 0.0;
+        for (double v : values)
+        {
+            sum += (v - mean) * (v - mean);
+        }
+        double stddev = Math.sqrt(sum / (values.length - 1));
+        return 3.29 * stddev / Math.sqrt(values.length);
+    }
+
+    public static void main(String[] args)
+    {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String filter = ".*";
+        int warmup = runner.mWarmupIterations;
+        int measurement = runner.mMeasurementIterations;
+        long iterationMs = runner.mIterationMs;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-wi") && i + 1 < args.length)
+                warmup = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-i") && i + 1 < args.length)
+                measurement = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-r") && i + 1 < args.length)
+                iterationMs = Long.parseLong(args[++i]);
+            else if (!args[i].isEmpty())
+                filter = args[i];
+        }
+        runner.setIterations(warmup, measurement, iterationMs);
+
+        MathBenchmarks.register(runner);
+        ControlBenchmarks.register(runner);
+        MotionBenchmarks.register(runner);
+        VisionBenchmarks.register(runner);
+        RobotStateBenchmarks.register(runner);
+        PathBenchmarks.register(runner);
+
+        runner.run(Pattern.compile(filter));
+    }
+}
@@ -0,0 +1,102 @@
+package com.spartronics4915.bench;
+
+import com.spartronics4915.frc2018.paths.DriveToCloseSwitchFromCPath;
+import com.spartronics4915.frc2018.paths.PathContainer;
+import com.spartronics4915.frc2018.subsystems.Drive;
+import com.spartronics4915.lib.util.control.AdaptivePurePursuitController;
+import com.spartronics4915.lib.util.control.Lookahead;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.PathFollower;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+import com.spartronics4915.lib.util.math.Twist2d;
+
+/**
+ * Path following: the target point search and the pure pursuit update.
+ * The robot is placed just off the start of the path, so neither call
+ * consumes any segments and every invocation does the same work.
+ *
+ * PathFollower.update (what Drive calls every loop) is measured driving
+ * the whole path instead, since its speed profile depends on progress: each
+ * op is one 10 ms tick of a robot that moves exactly as commanded, and a
+ * fresh follower starts over when the path is done. Its B/op includes the
+ * simulated robot's scaled Twist2d each tick and the restart (a Path copy
+ * and a PathFollower, once every few hundred ops).
+ */
+public class ControlBenchmarks
+{
+
+    private static final Lookahead kLookahead = new Lookahead(16.0, 16.0, 0.0, 120.0);
+
+    private static final double kDt = 0.01;
+
+    private static int sIndex = 0;
+
+    // A robot driving a path with PathFollower, one update per tick.
+    private static class Follow
+    {
+
+        final Path mPath;
+        final PathContainer mContainer;
+        final RigidTransform2d mStep = new RigidTransform2d();
+        PathFollower mFollower;
+        RigidTransform2d mPose;
+        double mTime, mDisplacement, mVelocity;
+
+        Follow(PathContainer container)
+        {
+            mContainer = container;
+            mPath = container.buildPath();
+            restart();
+        }
+
+        void restart()
+        {
+            mFollower = new PathFollower(mPath.copy(), mContainer.isReversed(), Drive.getPathFollowerParameters());
+            mPose = new RigidTransform2d(mContainer.getStartPose());
+            mTime = mDisplacement = mVelocity = 0.0;
+        }
+
+        double tick()
+        {
+            if (mFollower.isFinished() || mTime > 15.0)
+                restart();
+            final Twist2d command = mFollower.update(mTime, mPose, mDisplacement, mVelocity);
+            RigidTransform2d.exp(command.scaled(kDt), mStep);
+            mPose.transformBy(mStep, mPose);
+            mTime += kDt;
+            mVelocity = command.dx;
+            mDisplacement += mVelocity * kDt;
+            return command.dtheta;
+        }
+    }
+
+    public static void register(BenchmarkRunner runner)
+    {
+        final PathContainer container = new DriveToCloseSwitchFromCPath();
+        final Path path = container.buildPath();
+        final AdaptivePurePursuitController controller = new AdaptivePurePursuitController(container.buildPath(),
+                container.isReversed(), kLookahead);
+
+        final RigidTransform2d[] poses = new RigidTransform2d[8];
+        for (int i = 0; i < poses.length; i++)
+        {
+            poses[i] = container.getStartPose().transformBy(new RigidTransform2d(
+                    new Translation2d(0.0, 0.5 * (i - 4)), Rotation2d.fromDegrees(2 * (i - 4))));
+        }
+
+        runner.add("control.Path.getTargetPoint", () ->
+        {
+            sIndex = (sIndex + 1) % poses.length;
+            return path.getTargetPoint(poses[sIndex].getTranslation(), kLookahead).lookahead_point.x();
+        });
+        runner.add("control.AdaptivePurePursuitController.update", () ->
+        {
+            sIndex = (sIndex + 1) % poses.length;
+            return controller.update(poses[sIndex]).delta.dtheta;
+        });
+        final Follow follow = new Follow(new DriveToCloseSwitchFromCPath());
+        runner.add("control.PathFollower.update", () -> follow.tick());
+    }
+}
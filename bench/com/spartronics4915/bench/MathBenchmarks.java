@@ -0,0 +1,78 @@
+package com.spartronics4915.bench;
+
+import com.spartronics4915.lib.util.InterpolatingDouble;
+import com.spartronics4915.lib.util.InterpolatingPoseBuffer;
+import com.spartronics4915.lib.util.InterpolatingTreeMap;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+import com.spartronics4915.lib.util.math.Twist2d;
+
+/**
+ * RigidTransform2d exp/log and pose history lookups.
+ */
+public class MathBenchmarks
+{
+
+    private static final int kHistorySize = 100;
+    private static final double kDt = 0.005;
+
+    private static int sIndex = 0;
+
+    private static int next(int n)
+    {
+        sIndex = (sIndex + 1) % n;
+        return sIndex;
+    }
+
+    public static void register(BenchmarkRunner runner)
+    {
+        final Twist2d[] twists = new Twist2d[16];
+        final RigidTransform2d[] poses = new RigidTransform2d[16];
+        for (int i = 0; i < twists.length; i++)
+        {
+            twists[i] = new Twist2d(1.0 + i, 0.1 * i, 0.05 * (i - 8));
+            poses[i] = RigidTransform2d.exp(twists[i]);
+        }
+        final RigidTransform2d out = new RigidTransform2d();
+
+        runner.add("math.RigidTransform2d.exp", () -> RigidTransform2d.exp(twists[next(16)]).getTranslation().x());
+        runner.add("math.RigidTransform2d.exp(into)",
+                () -> RigidTransform2d.exp(twists[next(16)], out).getTranslation().x());
+        runner.add("math.RigidTransform2d.log", () -> RigidTransform2d.log(poses[next(16)]).dx);
+        runner.add("math.RigidTransform2d.transformBy",
+                () -> poses[next(16)].transformBy(poses[3]).getTranslation().y());
+        runner.add("math.RigidTransform2d.transformBy(into)",
+                () -> poses[next(16)].transformBy(poses[3], out).getTranslation().y());
+
+        // Same history RobotState keeps, in both representations.
+        final InterpolatingTreeMap<InterpolatingDouble, RigidTransform2d> treeMap =
+                new InterpolatingTreeMap<>(kHistorySize);
+        final InterpolatingPoseBuffer buffer = new InterpolatingPoseBuffer(kHistorySize);
+        RigidTransform2d pose = new RigidTransform2d();
+        for (int i = 0; i < kHistorySize; i++)
+        {
+            pose = pose.transformBy(RigidTransform2d.exp(new Twist2d(0.5, 0.0, 0.01)));
+            treeMap.put(new InterpolatingDouble(i * kDt), pose);
+            buffer.put(i * kDt, pose);
+        }
+        final InterpolatingDouble[] queries = new InterpolatingDouble[kHistorySize];
+        for (int i = 0; i < kHistorySize; i++)
+        {
+            queries[i] = new InterpolatingDouble((i + 0.37) * kDt);
+        }
+        final double[] result = new double[4];
+
+        runner.add("math.InterpolatingTreeMap.getInterpolated",
+                () -> treeMap.getInterpolated(queries[next(kHistorySize)]).getTranslation().x());
+        runner.add("math.InterpolatingPoseBuffer.getInterpolated", () ->
+        {
+            buffer.getInterpolated(queries[next(kHistorySize)].value, result);
+            return result[0];
+        });
+        runner.add("math.Rotation2d.rotateBy",
+                () -> poses[next(16)].getRotation().rotateBy(Rotation2d.fromDegrees(10)).cos());
+        runner.add("math.Translation2d.rotateBy",
+                () -> new Translation2d(1, 2).rotateBy(poses[next(16)].getRotation()).x());
+    }
+}
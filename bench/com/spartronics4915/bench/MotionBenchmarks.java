@@ -0,0 +1,53 @@
+package com.spartronics4915.bench;
+
+import com.spartronics4915.lib.util.motion.MotionProfile;
+import com.spartronics4915.lib.util.motion.MotionProfileConstraints;
+import com.spartronics4915.lib.util.motion.MotionProfileGenerator;
+import com.spartronics4915.lib.util.motion.MotionProfileGoal;
+import com.spartronics4915.lib.util.motion.MotionState;
+
+/**
+ * Trapezoidal profile generation, for a handful of representative goals
+ * (short, long, reversing and already-moving starts), and lookups in a
+ * profile with many segments.
+ */
+public class MotionBenchmarks
+{
+
+    private static int sIndex = 0;
+    private static double sTime = 0.0;
+
+    public static void register(BenchmarkRunner runner)
+    {
+        final MotionProfileConstraints constraints = new MotionProfileConstraints(120.0, 120.0);
+        final MotionProfileGoal[] goals = {
+                new MotionProfileGoal(10.0), new MotionProfileGoal(200.0, 30.0),
+                new MotionProfileGoal(-50.0), new MotionProfileGoal(100.0) };
+        final MotionState[] starts = {
+                new MotionState(0.0, 0.0, 0.0, 0.0), new MotionState(0.0, 0.0, 60.0, 0.0),
+                new MotionState(0.0, 0.0, 40.0, 0.0), new MotionState(0.0, 20.0, -20.0, 0.0) };
+
+        runner.add("motion.MotionProfileGenerator.generateProfile", () ->
+        {
+            sIndex = (sIndex + 1) % goals.length;
+            return MotionProfileGenerator.generateProfile(constraints, goals[sIndex], starts[sIndex]).duration();
+        });
+
+        final MotionProfile many = new MotionProfile();
+        many.reset(new MotionState(0.0, 0.0, 0.0, 0.0));
+        for (int i = 0; i < 200; i++)
+        {
+            many.appendControl((i % 2 == 0) ? 1.0 : -1.0, 0.1);
+        }
+        runner.add("motion.MotionProfile.stateByTime", () ->
+        {
+            sTime = (sTime + 0.37) % many.endTime();
+            return many.stateByTime(sTime).get().pos();
+        });
+        runner.add("motion.MotionProfile.firstStateByPos", () ->
+        {
+            sTime = (sTime + 0.37) % many.endTime();
+            return many.firstStateByPos(sTime * many.endPos() / many.endTime()).get().t();
+        });
+    }
+}
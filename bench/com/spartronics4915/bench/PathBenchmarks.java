@@ -0,0 +1,66 @@
+package com.spartronics4915.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.spartronics4915.frc2018.paths.PathCache;
+import com.spartronics4915.frc2018.paths.PathContainer;
+
+/**
+ * Building every registered auto path, as PathCache.precompile does at
+ * robotInit, on one thread versus a pool. One op builds the whole set;
+ * the speedup over one thread is printed after the run.
+ */
+public class PathBenchmarks
+{
+
+    private static double buildAll(ExecutorService executor)
+    {
+        // Fresh containers every op: mirrored containers mirror their
+        // waypoints in place, so each may only be built once.
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (PathContainer container : PathCache.getRegisteredPaths())
+        {
+            tasks.add(() -> container.buildPath().getRemainingSegmentCount());
+        }
+        double sink = 0.0;
+        try
+        {
+            for (Future<Integer> f : executor.invokeAll(tasks))
+            {
+                sink += f.get();
+            }
+        }
+        catch (InterruptedException | ExecutionException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return sink;
+    }
+
+    private static void addPool(BenchmarkRunner runner, String name, int threads)
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, (r) ->
+        {
+            Thread t = new Thread(r, "PathBenchmarks worker");
+            t.setDaemon(true);
+            return t;
+        });
+        runner.add(name, () -> buildAll(executor));
+    }
+
+    public static void register(BenchmarkRunner runner)
+    {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        addPool(runner, "paths.precompile.1thread", 1);
+        addPool(runner, "paths.precompile.2threads", 2); // PathCache, on the roboRIO's 2 cores
+        addPool(runner, "paths.precompile.allcores", cores);
+        runner.addComparison("paths.precompile.1thread", "paths.precompile.2threads");
+        runner.addComparison("paths.precompile.1thread", "paths.precompile.allcores");
+    }
+}
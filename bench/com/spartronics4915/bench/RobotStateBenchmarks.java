@@ -0,0 +1,49 @@
+package com.spartronics4915.bench;
+
+import com.spartronics4915.frc2018.RobotState;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Twist2d;
+
+/**
+ * RobotState updates, and reads racing a writer calling addObservations as
+ * fast as it can (standing in for RobotStateEstimator). Readers either take
+ * the RobotState monitor, as every accessor used to, or read the published
+ * snapshot. B/op on addObservations includes the Snapshot it publishes.
+ */
+public class RobotStateBenchmarks
+{
+
+    private static final Twist2d kVelocity = new Twist2d(0.1, 0, 0.001);
+
+    private static double sTime = 0;
+
+    private static void observe(RobotState state)
+    {
+        sTime += 0.005;
+        state.addObservations(sTime, kVelocity, kVelocity);
+    }
+
+    public static void register(BenchmarkRunner runner)
+    {
+        final RobotState state = RobotState.getInstance();
+        state.reset(0, new RigidTransform2d());
+
+        runner.add("robotstate.RobotState.addObservations", () ->
+        {
+            observe(state);
+            return sTime;
+        });
+        runner.add("robotstate.RobotState.getSnapshot.contended", () ->
+        {
+            RobotState.Snapshot s = state.getSnapshot();
+            return s.fieldToVehicle.getTranslation().x() + s.measuredVelocity.dx;
+        }, () -> observe(state));
+        runner.add("robotstate.RobotState.lockedRead.contended", () ->
+        {
+            synchronized (state)
+            {
+                return state.getLatestFieldToVehicle().getTranslation().x() + state.getMeasuredVelocity().dx;
+            }
+        }, () -> observe(state));
+    }
+}
@@ -0,0 +1,19 @@
+package com.spartronics4915.bench;
+
+import com.spartronics4915.frc2018.vision.VisionUpdate;
+
+/**
+ * Parsing of the JSON blobs the vision coprocessor sends.
+ */
+public class VisionBenchmarks
+{
+
+    private static final String kUpdate = "{\"capturedAgoMs\": 100, \"targets\": "
+            + "[{\"y\": 5.4, \"z\": 5.5}, {\"y\": -3.25, \"z\": 12.0}, {\"y\": 0.5, \"z\": -7.75}]}";
+
+    public static void register(BenchmarkRunner runner)
+    {
+        runner.add("vision.VisionUpdate.generateFromJsonString",
+                () -> VisionUpdate.generateFromJsonString(10.0, kUpdate).getTargets().size());
+    }
+}
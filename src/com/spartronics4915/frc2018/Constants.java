@@ -72,7 +72,13 @@ public class Constants extends ConstantsBase
     public static final int kGrabberCubeDistanceRangeFinderId = 2;
 
     // Software configuration constants ----------------------------------------------------------
-    public static final double kLooperDt = 0.005;
+    public static final double kLooperDt = 0.005; // drive, odometry
+    public static final double kLooperMechanismDt = 0.02; // superstructure, mechanisms
+    public static final double kLooperBackgroundDt = 0.1; // LED, connection monitor
+    // Keep 1: our subsystem loops are synchronized and call into each other
+    // (Drive -> RobotState, RobotStateEstimator -> Drive), so running them
+    // concurrently on workers can deadlock. See LooperTest for the parallel mode.
+    public static final int kLooperNumWorkers = 1;
     
     // Vision
     public static final int kAndroidAppTcpPort = 8254;
@@ -119,6 +125,16 @@ public class Constants extends ConstantsBase
     public static final double kDriveLowGearMaxAccel = 15*12*60 / (Math.PI * kDriveWheelDiameterInches); 
         // max accel is 15 fps/s, represented in RPM/s
 
+    // Gains for the Talons' motion profiles (Drive.PathController.TALON_PROFILE)
+    // The position loop servoes to each point, with the velocity loop's Kf on the
+    // point's velocity as feedforward (the position Kf is 0).
+    public static final double kDriveMotionProfileKp = kDrivePositionKp;
+    public static final double kDriveMotionProfileKi = 0;
+    public static final double kDriveMotionProfileKd = kDrivePositionKd;
+    public static final double kDriveMotionProfileKf = kDriveVelocityKf;
+    public static final int kDriveMotionProfileIZone = 0;
+    public static final double kDriveMotionProfileRampRate = kDrivePositionRampRate;
+
     public static final double kDriveVoltageCompensationRampRate = 0.0;
     
     // Drive ------------------------------------------------------
@@ -143,8 +159,11 @@ public class Constants extends ConstantsBase
     public static final double kInertiaSteeringGain = 0.0; 
         // angular velocity command is multiplied by this gain * our speed in ips
     public static final double kSegmentCompletionTolerance = 0.05; // inches
+    public static final double kPathSearchWindow = 48.0; // inches past the closest point (plus cross track error)
     public static final double kPathFollowingMaxAccel = 120.0; // inches per second^2
     public static final double kPathFollowingMaxVel = 120.0; // inches per second
+    public static final double kPathFollowingMaxJerk = Double.POSITIVE_INFINITY; // inches per second^3, finite for S-curves
+    public static final double kPathFollowingMaxLateralAccel = 120.0; // inches per second^2, spline paths only
     public static final double kPathFollowingProfileKp = 4;
     public static final double kPathFollowingProfileKi = 0.08;
     public static final double kPathFollowingProfileKv = 0;
@@ -153,6 +172,10 @@ public class Constants extends ConstantsBase
     public static final double kPathFollowingGoalPosTolerance = 0.75;
     public static final double kPathFollowingGoalVelTolerance = 12.0;
     public static final double kPathStopSteeringDistance = 9.0;
+    public static final double kRamseteB = 0.0013; // rad^2 per inch^2 (2.0 per m^2), larger converges harder
+    public static final double kRamseteZeta = 0.7; // damping, 0 to 1
+    public static final double kRamseteSettleTime = 0.5; // seconds past the end of the trajectory
+    public static final double kTalonProfileDt = 0.01; // seconds per point streamed to the drive Talons, whole ms
 
     // Goal tracker constants
     public static final double kMaxGoalTrackAge = 1.0;
@@ -163,6 +186,23 @@ public class Constants extends ConstantsBase
     public static final double kShooterOptimalRangeCeiling = 80.0; // unused
     public static final double kShooterOptimalRangeFloor = 70.0; // unused
 
+    // RobotState pose filter. When enabled, odometry is run through an EKF
+    // so that vision pose fixes (addVisionFieldToVehicleObservation) can
+    // correct drift. Variances grow per inch driven / radian turned.
+    public static final boolean kUsePoseKalmanFilter = false;
+    public static final double kPoseFilterTransVariancePerInch = 0.01;
+    public static final double kPoseFilterRotVariancePerRadian = 0.001;
+
+    // Vision pose fixes for the pose filter: RobotState.addVisionUpdate takes
+    // the range and bearing to a landmark at a known field position and
+    // height and fuses the implied robot position. NaN (not yet measured on
+    // the field) disables the fixes.
+    public static final double kVisionLandmarkX = Double.NaN; // inches, field frame
+    public static final double kVisionLandmarkY = Double.NaN;
+    public static final double kVisionLandmarkHeight = Double.NaN; // inches above the carpet
+    public static final double kVisionPositionVariance = 4.0; // in^2
+    public static final double kVisionHeadingVariance = 1.0; // rad^2, ie: leave heading to the gyro
+
     // Pose of the camera frame w.r.t. the robot frame, used by RobotState, but
     // not relied upon for POWERUP.
     public static final double kCameraXOffset = -3.3211;
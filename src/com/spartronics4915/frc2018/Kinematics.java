@@ -45,8 +45,10 @@ public class Kinematics
     public static Twist2d forwardKinematics(Rotation2d prev_heading, double left_wheel_delta, double right_wheel_delta,
             Rotation2d current_heading)
     {
-        return forwardKinematics(left_wheel_delta, right_wheel_delta,
-                prev_heading.inverse().rotateBy(current_heading).getRadians());
+        // prev_heading.inverse().rotateBy(current_heading), without allocating
+        final double cos = prev_heading.cos() * current_heading.cos() + prev_heading.sin() * current_heading.sin();
+        final double sin = prev_heading.cos() * current_heading.sin() - prev_heading.sin() * current_heading.cos();
+        return forwardKinematics(left_wheel_delta, right_wheel_delta, Math.atan2(sin, cos));
     }
 
     /** Append the result of forward kinematics to a previous pose. */
@@ -68,6 +70,16 @@ public class Kinematics
         return current_pose.transformBy(RigidTransform2d.exp(forward_kinematics));
     }
 
+    /**
+     * Allocation-free version of the above. scratch receives the exp of the
+     * twist; out may be current_pose.
+     */
+    public static RigidTransform2d integrateForwardKinematics(RigidTransform2d current_pose,
+            Twist2d forward_kinematics, RigidTransform2d scratch, RigidTransform2d out)
+    {
+        return current_pose.transformBy(RigidTransform2d.exp(forward_kinematics, scratch), out);
+    }
+
     /**
      * Class that contains left and right wheel velocities
      */
@@ -167,11 +167,12 @@ public class Robot extends IterativeRobot
             mCheesyDriveHelper = new CheesyDriveHelper();
             mControlBoard = new ControlBoard();
 
-            mEnabledLooper = new Looper();
+            mEnabledLooper = new Looper(Constants.kLooperNumWorkers);
 
             mSubsystemManager.registerEnabledLoops(mEnabledLooper);
-            mEnabledLooper.register(VisionProcessor.getInstance());
-            mEnabledLooper.register(RobotStateEstimator.getInstance());
+            mEnabledLooper.register(VisionProcessor.getInstance(), Constants.kLooperMechanismDt);
+            mEnabledLooper.register(RobotStateEstimator.getInstance(), Constants.kLooperDt,
+                    Looper.Priority.CRITICAL);
 
             AutoModeSelector.initAutoModeSelector();
             SmartDashboard.putString(kRobotTestModeOptions,
@@ -2,13 +2,12 @@ package com.spartronics4915.frc2018;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 import com.spartronics4915.frc2018.GoalTracker.TrackReport;
 import com.spartronics4915.frc2018.vision.TargetInfo;
-import com.spartronics4915.lib.util.InterpolatingDouble;
-import com.spartronics4915.lib.util.InterpolatingTreeMap;
+import com.spartronics4915.lib.util.InterpolatingPoseBuffer;
+import com.spartronics4915.lib.util.PoseKalmanFilter;
 import com.spartronics4915.lib.util.math.RigidTransform2d;
 import com.spartronics4915.lib.util.math.Rotation2d;
 import com.spartronics4915.lib.util.math.Translation2d;
@@ -47,6 +46,17 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
  *
  * 3. Camera-to-goal: This is a pure translation, and is measured by the vision
  * system.
+ *
+ * When Constants.kUsePoseKalmanFilter is set, field-to-vehicle is instead
+ * estimated by a PoseKalmanFilter: odometry drives the prediction and
+ * vision pose fixes are fused at their capture time, after which the
+ * buffered odometry is replayed and the pose history rewritten.
+ *
+ * The latest pose, velocities and distance driven are also published as an
+ * immutable Snapshot after every update. Accessors for those values read
+ * the snapshot rather than taking the RobotState lock, so dashboard output,
+ * path following and auto actions never block RobotStateEstimator. The
+ * price is a small allocation per update (see publishSnapshot).
  */
 
 public class RobotState
@@ -68,8 +78,14 @@ public class RobotState
     private static final RigidTransform2d kVehicleToCamera = new RigidTransform2d(
             new Translation2d(Constants.kCameraXOffset, Constants.kCameraYOffset), new Rotation2d());
 
-    // FPGATimestamp -> RigidTransform2d or Rotation2d
-    private InterpolatingTreeMap<InterpolatingDouble, RigidTransform2d> mFieldToVehicle;
+    // FPGATimestamp -> field to vehicle pose
+    private final InterpolatingPoseBuffer mFieldToVehicle = new InterpolatingPoseBuffer(kObservationBufferSize);
+    private final double[] mPoseScratch = new double[4];
+    private final RigidTransform2d mOdometryScratch = new RigidTransform2d();
+    private final RigidTransform2d mOdometryPose = new RigidTransform2d();
+    private final PoseKalmanFilter mPoseFilter = new PoseKalmanFilter(kObservationBufferSize,
+            Constants.kPoseFilterTransVariancePerInch, Constants.kPoseFilterRotVariancePerRadian);
+    private final boolean mUsePoseFilter = Constants.kUsePoseKalmanFilter;
     private Twist2d mVehicleVelocityPredicted;
     private Twist2d mVehicleVelocityMeasured;
     private double mDistanceDriven;
@@ -78,6 +94,30 @@ public class RobotState
     private Rotation2d mCameraYawCorrection;
     private double mDifferentialHeight;
     private ShooterAimingParameters mCachedShooterAimingParameters = null;
+    private volatile Snapshot mSnapshot;
+
+    /**
+     * An immutable, consistent view of the most recent estimate.
+     */
+    public static class Snapshot
+    {
+
+        public final double timestamp;
+        public final RigidTransform2d fieldToVehicle;
+        public final Twist2d predictedVelocity;
+        public final Twist2d measuredVelocity;
+        public final double distanceDriven;
+
+        Snapshot(double timestamp, RigidTransform2d fieldToVehicle, Twist2d predictedVelocity,
+                Twist2d measuredVelocity, double distanceDriven)
+        {
+            this.timestamp = timestamp;
+            this.fieldToVehicle = fieldToVehicle;
+            this.predictedVelocity = predictedVelocity;
+            this.measuredVelocity = measuredVelocity;
+            this.distanceDriven = distanceDriven;
+        }
+    }
 
     private RobotState()
     {
@@ -89,8 +129,10 @@ public class RobotState
      */
     public synchronized void reset(double start_time, RigidTransform2d initial_field_to_vehicle)
     {
-        mFieldToVehicle = new InterpolatingTreeMap<>(kObservationBufferSize);
-        mFieldToVehicle.put(new InterpolatingDouble(start_time), initial_field_to_vehicle);
+        mFieldToVehicle.clear();
+        mFieldToVehicle.put(start_time, initial_field_to_vehicle);
+        mPoseFilter.reset(start_time, initial_field_to_vehicle.getTranslation().x(),
+                initial_field_to_vehicle.getTranslation().y(), initial_field_to_vehicle.getRotation().getRadians());
         mVehicleVelocityPredicted = Twist2d.identity();
         mVehicleVelocityMeasured = Twist2d.identity();
         mGoalTracker = new GoalTracker();
@@ -98,11 +140,33 @@ public class RobotState
         mCameraYawCorrection = Rotation2d.fromDegrees(-Constants.kCameraYawAngleDegrees);
         // mDifferentialHeight = Constants.kBoilerTargetTopHeight - Constants.kCameraZOffset;
         mDistanceDriven = 0.0;
+        publishSnapshot();
     }
 
     public synchronized void resetDistanceDriven()
     {
         mDistanceDriven = 0.0;
+        publishSnapshot();
+    }
+
+    // must be called with the lock held, after every change to a value
+    // that the snapshot carries. This allocates one Snapshot (about 48
+    // bytes) per update, ie: ~10KB/s at 200Hz, on purpose: readers may keep
+    // a snapshot as long as they like, so reusing preallocated ones would
+    // need a sequence lock and a retry loop in every reader instead. See
+    // RobotStateBenchmarks for the cost per addObservations.
+    private void publishSnapshot()
+    {
+        mSnapshot = new Snapshot(mFieldToVehicle.getLatestTimestamp(), mFieldToVehicle.getLatest(),
+                mVehicleVelocityPredicted, mVehicleVelocityMeasured, mDistanceDriven);
+    }
+
+    /**
+     * @return the latest estimate; never blocks.
+     */
+    public Snapshot getSnapshot()
+    {
+        return mSnapshot;
     }
 
     /**
@@ -112,18 +176,21 @@ public class RobotState
      */
     public synchronized RigidTransform2d getFieldToVehicle(double timestamp)
     {
-        return mFieldToVehicle.getInterpolated(new InterpolatingDouble(timestamp));
+        mFieldToVehicle.getInterpolated(timestamp, mPoseScratch);
+        return new RigidTransform2d(new Translation2d(mPoseScratch[0], mPoseScratch[1]),
+                new Rotation2d(mPoseScratch[2], mPoseScratch[3], false));
     }
 
-    public synchronized Map.Entry<InterpolatingDouble, RigidTransform2d> getLatestFieldToVehicle()
+    public RigidTransform2d getLatestFieldToVehicle()
     {
-        return mFieldToVehicle.lastEntry();
+        return mSnapshot.fieldToVehicle;
     }
 
-    public synchronized RigidTransform2d getPredictedFieldToVehicle(double lookahead_time)
+    public RigidTransform2d getPredictedFieldToVehicle(double lookahead_time)
     {
-        return getLatestFieldToVehicle().getValue()
-                .transformBy(RigidTransform2d.exp(mVehicleVelocityPredicted.scaled(lookahead_time)));
+        Snapshot snapshot = mSnapshot;
+        return snapshot.fieldToVehicle
+                .transformBy(RigidTransform2d.exp(snapshot.predictedVelocity.scaled(lookahead_time)));
     }
 
     public synchronized RigidTransform2d getFieldToCamera(double timestamp)
@@ -143,22 +210,73 @@ public class RobotState
 
     public synchronized void addFieldToVehicleObservation(double timestamp, RigidTransform2d observation)
     {
-        mFieldToVehicle.put(new InterpolatingDouble(timestamp), observation);
+        mFieldToVehicle.put(timestamp, observation);
+        publishSnapshot();
     }
 
     public synchronized void addObservations(double timestamp, Twist2d measured_velocity,
             Twist2d predicted_velocity)
     {
-        addFieldToVehicleObservation(timestamp,
-                Kinematics.integrateForwardKinematics(getLatestFieldToVehicle().getValue(), measured_velocity));
         mVehicleVelocityMeasured = measured_velocity;
         mVehicleVelocityPredicted = predicted_velocity;
+        if (mUsePoseFilter)
+        {
+            mPoseFilter.predict(timestamp, measured_velocity.dx, measured_velocity.dy, measured_velocity.dtheta);
+            addFieldToVehicleObservation(timestamp, new RigidTransform2d(
+                    new Translation2d(mPoseFilter.getX(), mPoseFilter.getY()),
+                    Rotation2d.fromRadians(mPoseFilter.getTheta())));
+        }
+        else
+        {
+            // integrate in place and copy into the buffer; the only pose
+            // allocated is the one getLatest builds for the snapshot.
+            final RigidTransform2d pose = Kinematics.integrateForwardKinematics(mFieldToVehicle.getLatest(),
+                    measured_velocity, mOdometryScratch, mOdometryPose);
+            mFieldToVehicle.put(timestamp, pose.getTranslation().x(), pose.getTranslation().y(),
+                    pose.getRotation().cos(), pose.getRotation().sin());
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Fuses an absolute pose measurement, eg: from vision against a known
+     * field feature, into the pose estimate. The estimate is rewound to
+     * captured_timestamp, corrected, and the odometry since then replayed.
+     * Ignored unless the pose filter is enabled.
+     *
+     * @param position_variance variance (in^2) of the measured x and y
+     * @param heading_variance variance (rad^2) of the measured heading
+     */
+    public synchronized void addVisionFieldToVehicleObservation(double captured_timestamp,
+            RigidTransform2d observation, double position_variance, double heading_variance)
+    {
+        if (!mUsePoseFilter)
+            return;
+        if (!mPoseFilter.correct(captured_timestamp, observation.getTranslation().x(),
+                observation.getTranslation().y(), observation.getRotation().getRadians(),
+                position_variance, heading_variance))
+            return; // older than our history
+
+        // rewrite the pose history from the capture time on
+        double[] state = mPoseScratch;
+        for (int i = Math.max(0, mPoseFilter.floorIndex(captured_timestamp)); i < mPoseFilter.getHistorySize(); i++)
+        {
+            mPoseFilter.getHistoryState(i, state);
+            mFieldToVehicle.put(mPoseFilter.getHistoryTimestamp(i), state[0], state[1],
+                    Math.cos(state[2]), Math.sin(state[2]));
+        }
+        publishSnapshot();
     }
 
+    /**
+     * @param timestamp when the frame was captured
+     *            (VisionUpdate.getCapturedAtTimestamp)
+     */
     public void addVisionUpdate(double timestamp, List<TargetInfo> vision_update)
     {
         List<Translation2d> field_to_goals = new ArrayList<>();
         RigidTransform2d field_to_camera = getFieldToCamera(timestamp);
+        boolean use_landmark = mUsePoseFilter && !Double.isNaN(Constants.kVisionLandmarkX);
         if (!(vision_update == null || vision_update.isEmpty()))
         {
             for (TargetInfo target : vision_update)
@@ -176,6 +294,15 @@ public class RobotState
                 double yr = yyaw;
                 double zr = zyaw * mCameraPitchCorrection.cos() - xyaw * mCameraPitchCorrection.sin();
 
+                // the first target is the landmark
+                if (use_landmark && zr > 0)
+                {
+                    addVisionFieldToVehicleObservation(timestamp,
+                            getFieldToVehicleFromLandmark(field_to_camera, xr, yr, zr),
+                            Constants.kVisionPositionVariance, Constants.kVisionHeadingVariance);
+                    use_landmark = false;
+                }
+
 //                // find intersection with the goal
 //                if (zr > 0)
 //                {
@@ -195,6 +322,19 @@ public class RobotState
         }
     }
 
+    // Where the vehicle was for the camera to see the landmark in direction
+    // (x, y, z), keeping the heading we had at the time.
+    private static RigidTransform2d getFieldToVehicleFromLandmark(RigidTransform2d field_to_camera,
+            double x, double y, double z)
+    {
+        double scaling = (Constants.kVisionLandmarkHeight - Constants.kCameraZOffset) / z;
+        Translation2d camera_to_landmark = new Translation2d(x * scaling, y * scaling)
+                .rotateBy(field_to_camera.getRotation());
+        Translation2d field_to_landmark = new Translation2d(Constants.kVisionLandmarkX, Constants.kVisionLandmarkY);
+        return new RigidTransform2d(field_to_landmark.translateBy(camera_to_landmark.inverse()),
+                field_to_camera.getRotation()).transformBy(kVehicleToCamera.inverse());
+    }
+
     public synchronized Optional<ShooterAimingParameters> getCachedAimingParameters()
     {
         return mCachedShooterAimingParameters == null ? Optional.empty() : Optional.of(mCachedShooterAimingParameters);
@@ -206,7 +346,7 @@ public class RobotState
         if (!reports.isEmpty())
         {
             TrackReport report = reports.get(0);
-            Translation2d robot_to_goal = getLatestFieldToVehicle().getValue().getTranslation().inverse()
+            Translation2d robot_to_goal = getLatestFieldToVehicle().getTranslation().inverse()
                     .translateBy(report.field_to_goal);
             Rotation2d robot_to_goal_rotation = Rotation2d
                     .fromRadians(Math.atan2(robot_to_goal.y(), robot_to_goal.x()));
@@ -232,37 +372,39 @@ public class RobotState
     public synchronized Twist2d generateOdometryFromSensors(double left_encoder_delta_distance,
             double right_encoder_delta_distance, Rotation2d current_gyro_angle)
     {
-        final RigidTransform2d last_measurement = getLatestFieldToVehicle().getValue();
+        final RigidTransform2d last_measurement = mFieldToVehicle.getLatest();
         final Twist2d delta = Kinematics.forwardKinematics(last_measurement.getRotation(),
                 left_encoder_delta_distance, right_encoder_delta_distance, current_gyro_angle);
         mDistanceDriven += delta.dx;
         return delta;
     }
 
-    public synchronized double getDistanceDriven()
+    // Distance and velocities are as of the last addObservations
+    public double getDistanceDriven()
     {
-        return mDistanceDriven;
+        return mSnapshot.distanceDriven;
     }
 
-    public synchronized Twist2d getPredictedVelocity()
+    public Twist2d getPredictedVelocity()
     {
-        return mVehicleVelocityPredicted;
+        return mSnapshot.predictedVelocity;
     }
 
-    public synchronized Twist2d getMeasuredVelocity()
+    public Twist2d getMeasuredVelocity()
     {
-        return mVehicleVelocityMeasured;
+        return mSnapshot.measuredVelocity;
     }
 
     public void outputToSmartDashboard()
     {
-        RigidTransform2d odometry = getLatestFieldToVehicle().getValue();
+        Snapshot snapshot = mSnapshot;
+        RigidTransform2d odometry = snapshot.fieldToVehicle;
         SmartDashboard.putString("RobotState/pose",  
                             "" + odometry.getTranslation().x() + 
                             " " + odometry.getTranslation().y() +
                             " " + odometry.getRotation().getDegrees());
-        SmartDashboard.putNumber("RobotState/velocity", mVehicleVelocityMeasured.dx);
-        SmartDashboard.putNumber("RobotState/field_degrees", getLatestFieldToVehicle().getValue().getRotation().getDegrees());
+        SmartDashboard.putNumber("RobotState/velocity", snapshot.measuredVelocity.dx);
+        SmartDashboard.putNumber("RobotState/field_degrees", odometry.getRotation().getDegrees());
         List<RigidTransform2d> poses = getCaptureTimeFieldToGoal();
         for (RigidTransform2d pose : poses)
         {
@@ -4,6 +4,8 @@ import com.spartronics4915.frc2018.auto.actions.Action;
 import com.spartronics4915.lib.util.Logger;
 import com.spartronics4915.lib.util.Util;
 
+import edu.wpi.first.wpilibj.Timer;
+
 /**
  * An abstract class that is the basis of the robot's autonomous routines. This
  * is implemented in auto modes (which are
@@ -67,16 +69,9 @@ public abstract class AutoModeBase
         while (isActiveWithThrow() && !action.isFinished())
         {
             action.update();
-            long waitTime = (long) (m_update_rate * 1000.0);
-
-            try
-            {
-                Thread.sleep(waitTime);
-            }
-            catch (InterruptedException e)
-            {
-                e.printStackTrace();
-            }
+            // Timer.delay (rather than Thread.sleep) so auto modes follow
+            // a VirtualTimer when one is installed.
+            Timer.delay(m_update_rate);
         }
 
         action.done();
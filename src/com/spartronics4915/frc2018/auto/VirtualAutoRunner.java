@@ -0,0 +1,103 @@
+package com.spartronics4915.frc2018.auto;
+
+import com.spartronics4915.frc2018.loops.Looper;
+import com.spartronics4915.lib.util.CrashTrackingRunnable;
+import com.spartronics4915.lib.util.Logger;
+import com.spartronics4915.lib.util.Util;
+import com.spartronics4915.lib.util.VirtualTimer;
+
+/**
+ * Runs an auto mode on virtual time, as fast as the CPU allows: a whole
+ * 15 second autonomous (and the loops it depends on) in a fraction of a
+ * second. Intended for tests and simulation off the robot, so the looper's
+ * loops must not need hardware.
+ *
+ * The runner installs a VirtualTimer and steps the looper once per kPeriod
+ * of virtual time. The auto mode runs on its own thread, as it does under
+ * AutoModeExecuter, but the clock is only advanced once that thread is
+ * parked in Timer.delay, so it sees every pass in lockstep with the looper
+ * rather than racing ahead of it or falling behind.
+ */
+public class VirtualAutoRunner
+{
+
+    // real time to wait for the auto thread to park before stepping anyway,
+    // eg: when it is blocked on a subsystem rather than in Timer.delay
+    private static final double kParkTimeout = 1.0;
+
+    public static class Result
+    {
+
+        public final boolean finished;
+        public final double duration; // virtual seconds
+
+        Result(boolean finished, double duration)
+        {
+            this.finished = finished;
+            this.duration = duration;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s after %.3fs", finished ? "finished" : "timed out", duration);
+        }
+    }
+
+    /**
+     * Runs mode to completion or until timeout virtual seconds have passed,
+     * when it is stopped.
+     * @param looper registered but not yet started; it is stepped by the
+     *            runner and stopped on return.
+     * @param gameMessage the game specific message the mode should see
+     */
+    public static Result run(AutoModeBase mode, Looper looper, String gameMessage, double timeout)
+    {
+        VirtualTimer clock = new VirtualTimer();
+        clock.install();
+        Util.setGameSpecificMessage(gameMessage);
+        looper.setExternallyStepped(true);
+        looper.start();
+
+        Thread thread = new Thread(new CrashTrackingRunnable()
+        {
+
+            @Override
+            public void runCrashTracked()
+            {
+                mode.run();
+            }
+        }, "VirtualAutoRunner");
+        thread.setDaemon(true);
+        thread.start();
+
+        boolean finished = true;
+        while (waitForPark(clock, thread))
+        {
+            if (finished && clock.getFPGATimestamp() >= timeout)
+            {
+                Logger.warning("VirtualAutoRunner timed out after " + timeout + "s");
+                mode.stop(); // ends the mode at its next runAction check
+                finished = false;
+            }
+            clock.advance(looper.kPeriod);
+            looper.step();
+        }
+        double duration = finished ? clock.getFPGATimestamp() : timeout;
+        looper.stop();
+        Util.setGameSpecificMessage(null);
+        return new Result(finished, duration);
+    }
+
+    // @return whether the auto thread is still running
+    private static boolean waitForPark(VirtualTimer clock, Thread thread)
+    {
+        final double kPoll = 0.01;
+        for (double waited = 0; waited < kParkTimeout && thread.isAlive(); waited += kPoll)
+        {
+            if (clock.awaitDelayed(1, kPoll))
+                return true;
+        }
+        return thread.isAlive();
+    }
+}
@@ -1,14 +1,17 @@
 package com.spartronics4915.frc2018.auto.actions;
 
-import com.spartronics4915.frc2018.paths.PathBuilder.Waypoint;
+import com.spartronics4915.frc2018.paths.PathCache;
 import com.spartronics4915.frc2018.paths.PathContainer;
 import com.spartronics4915.frc2018.subsystems.Drive;
 import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.Trajectory;
+import com.spartronics4915.lib.util.control.WheelProfile;
 
 /**
  * Drives the robot along the Path defined in the PathContainer object. The
  * action finishes once the robot reaches the
- * end of the path.
+ * end of the path. Paths, and the trajectory or wheel profile the
+ * controller needs, come precompiled from the PathCache when possible.
  * 
  * @see PathContainer
  * @see Path
@@ -21,11 +24,14 @@ public class DrivePathAction implements Action
     private Path mPath;
     private Drive mDrive = Drive.getInstance();
     private String mStopMarker;
+    private Drive.PathController mController = Drive.PathController.PURE_PURSUIT;
+    private Trajectory mTrajectory = null; // RAMSETE
+    private WheelProfile mWheelProfile = null; // TALON_PROFILE
 
     public DrivePathAction(PathContainer p)
     {
         mPathContainer = p;
-        mPath = mPathContainer.buildPath();
+        mPath = PathCache.getInstance().getPath(mPathContainer);
         mStopMarker = "";
     }
     
@@ -34,10 +40,20 @@ public class DrivePathAction implements Action
         mStopMarker = stopMarker;
     }
 
+    public DrivePathAction(PathContainer p, Drive.PathController controller)
+    {
+        this(p);
+        mController = controller;
+        if (controller == Drive.PathController.RAMSETE)
+            mTrajectory = PathCache.getInstance().getTrajectory(mPathContainer);
+        else if (controller == Drive.PathController.TALON_PROFILE)
+            mWheelProfile = PathCache.getInstance().getWheelProfile(mPathContainer);
+    }
+
     @Override
     public void start()
     {
-        mDrive.setWantDrivePath(mPath, mPathContainer.isReversed());
+        mDrive.setWantDrivePath(mPath, mPathContainer.isReversed(), mController, mTrajectory, mWheelProfile);
     }
 
     @Override
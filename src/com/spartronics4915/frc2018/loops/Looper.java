@@ -2,10 +2,14 @@ package com.spartronics4915.frc2018.loops;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.spartronics4915.frc2018.Constants;
 import com.spartronics4915.lib.util.CrashTrackingRunnable;
 import com.spartronics4915.lib.util.Logger;
+import com.spartronics4915.lib.util.TimingHistogram;
 
 import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.Timer;
@@ -15,19 +19,145 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
  * This code runs all of the robot's loops. Loop objects are stored in a List
  * object. They are started when the robot
  * powers up and stopped after the match.
+ *
+ * Loops may be registered with a period that is a multiple of kPeriod,
+ * in which case they only run on every Nth pass (harmonic ticks). Slow
+ * loops with the same period are spread across phases so they don't all
+ * land on the same pass.
+ *
+ * Loops may declare dependencies via addDependency; a loop never starts
+ * before the loops it depends on have finished in the same pass. When
+ * constructed with more than one worker, loops whose dependencies are
+ * satisfied run concurrently on a small fixed thread pool and the pass
+ * completes when the whole graph has run. Loops that share state without
+ * a declared dependency must still protect it themselves (as all our
+ * subsystems already do via synchronized).
+ *
+ * Each loop also has a Priority. When passes overrun kPeriod the looper
+ * sheds load: LOW loops are skipped after a single overrun and NORMAL
+ * loops after kSustainedOverrunPasses consecutive overruns. CRITICAL
+ * loops (drive, odometry) always run. A shed loop is deferred to the
+ * next pass that isn't shedding it, and shed counts are reported so
+ * match logs show when the robot was CPU-starved.
+ *
+ * For faster-than-real-time runs (see VirtualTimer) the looper can be
+ * externally stepped: start() then skips the Notifier and the caller
+ * invokes step() once per kPeriod of virtual time.
+ *
+ * Each pass also records per-loop execution times, period jitter and
+ * overruns (passes that take longer than kPeriod). Recording happens
+ * in preallocated histograms; the (allocating) dashboard publishing
+ * is done from outputToSmartDashboard on the caller's thread.
  */
 public class Looper
 {
 
     public final double kPeriod = Constants.kLooperDt;
 
+    private static final int kSustainedOverrunPasses = 3;
+
+    public enum Priority
+    {
+        CRITICAL, // never shed
+        NORMAL, // shed only when overruns persist
+        LOW, // shed whenever the previous pass overran
+    }
+
+    // histograms cover 0-20ms in 50us buckets
+    private static final double kTimingBucketWidth = 0.00005;
+    private static final int kTimingNumBuckets = 400;
+
     private boolean running_;
 
-    private final Notifier notifier_;
-    private final List<Loop> loops_;
+    private Notifier notifier_ = null; // created on first real-time start
+    private boolean externallyStepped_ = false;
+    private final List<LoopRecord> loops_; // registration order
+    private final List<Loop[]> dependencies_; // {before, after} pairs
+    private LoopRecord[] schedule_ = new LoopRecord[0]; // dependency order
+    private final int numWorkers_;
+    private boolean parallel_ = false;
+    private ExecutorService executor_ = null;
+    private final AtomicInteger remaining_ = new AtomicInteger();
+    private final Object passDone_ = new Object();
+    private volatile double passTimestamp_ = 0;
+    private volatile Throwable workerFailure_ = null;
     private final Object taskRunningLock_ = new Object();
     private double timestamp_ = 0;
     private double dt_ = 0;
+    private long tick_ = 0;
+
+    private final TimingHistogram passTiming_ = new TimingHistogram(kTimingBucketWidth, kTimingNumBuckets);
+    private final TimingHistogram jitter_ = new TimingHistogram(kTimingBucketWidth, kTimingNumBuckets);
+    private final TimingHistogram snapshot_ = new TimingHistogram(kTimingBucketWidth, kTimingNumBuckets);
+    private int overruns_ = 0;
+    private int consecutiveOverruns_ = 0;
+    private int shedCount_ = 0;
+
+    /**
+     * Bookkeeping for a registered loop. In parallel mode the record is
+     * also the task handed to the worker pool, so dispatching a loop
+     * doesn't allocate.
+     */
+    private class LoopRecord implements Runnable
+    {
+
+        final Loop loop;
+        final String name;
+        final int divisor; // runs every divisor passes
+        final int phase;
+        final Priority priority;
+        boolean deferred = false; // shed on its tick, run at next opportunity
+        int shedCount = 0;
+        final TimingHistogram timing = new TimingHistogram(kTimingBucketWidth, kTimingNumBuckets);
+        final List<LoopRecord> predecessors = new ArrayList<>();
+        final List<LoopRecord> successors = new ArrayList<>();
+        final AtomicInteger pending = new AtomicInteger();
+        boolean due;
+        int numDuePredecessors;
+
+        LoopRecord(Loop l, int div, int ph, Priority pri)
+        {
+            loop = l;
+            priority = pri;
+            divisor = div;
+            phase = ph;
+            // anonymous loops are named after their enclosing class, ie: Drive$1
+            String nm = l.getClass().getName();
+            name = nm.substring(nm.lastIndexOf('.') + 1);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                runLoop(this, passTimestamp_);
+            }
+            catch (Throwable t)
+            {
+                Logger.logThrowableCrash("Looper " + name, t);
+                workerFailure_ = t;
+            }
+            finally
+            {
+                // release successors before counting ourselves done so
+                // remaining_ can't reach zero with work outstanding.
+                for (int i = 0; i < successors.size(); i++)
+                {
+                    LoopRecord s = successors.get(i);
+                    if (s.due && s.pending.decrementAndGet() == 0)
+                        executor_.execute(s);
+                }
+                if (remaining_.decrementAndGet() == 0)
+                {
+                    synchronized (passDone_)
+                    {
+                        passDone_.notifyAll();
+                    }
+                }
+            }
+        }
+    }
 
     private final CrashTrackingRunnable runnable_ = new CrashTrackingRunnable()
     {
@@ -40,14 +170,37 @@ public class Looper
                 if (running_)
                 {
                     double now = Timer.getFPGATimestamp();
+                    long passStart = System.nanoTime();
+
+                    if (parallel_)
+                    {
+                        runParallel(now);
+                    }
+                    else
+                    {
+                        for (LoopRecord r : schedule_)
+                        {
+                            if (shouldRun(r))
+                                runLoop(r, now);
+                        }
+                    }
 
-                    for (Loop loop : loops_)
+                    double passTime = (System.nanoTime() - passStart) * 1e-9;
+                    passTiming_.addSample(passTime);
+                    if (passTime > kPeriod)
+                    {
+                        overruns_++;
+                        consecutiveOverruns_++;
+                    }
+                    else
                     {
-                        loop.onLoop(now);
+                        consecutiveOverruns_ = 0;
                     }
 
                     dt_ = now - timestamp_;
+                    jitter_.addSample(Math.abs(dt_ - kPeriod));
                     timestamp_ = now;
+                    tick_++;
                 }
             }
         }
@@ -55,19 +208,251 @@ public class Looper
 
     public Looper()
     {
-        notifier_ = new Notifier(runnable_);
+        this(1);
+    }
+
+    /**
+     * @param numWorkers number of threads used to run independent loops
+     *            concurrently. 1 runs every loop serially on the Notifier
+     *            thread.
+     */
+    public Looper(int numWorkers)
+    {
         running_ = false;
         loops_ = new ArrayList<>();
+        dependencies_ = new ArrayList<>();
+        numWorkers_ = numWorkers;
+    }
+
+    // Decides whether r runs this pass, applying load shedding. Must be
+    // called exactly once per record per pass.
+    private boolean shouldRun(LoopRecord r)
+    {
+        boolean due = r.deferred || (tick_ + r.phase) % r.divisor == 0;
+        if (!due)
+            return false;
+        boolean shed;
+        switch (r.priority)
+        {
+            case LOW:
+                shed = consecutiveOverruns_ > 0;
+                break;
+            case NORMAL:
+                shed = consecutiveOverruns_ >= kSustainedOverrunPasses;
+                break;
+            default:
+                shed = false;
+                break;
+        }
+        if (shed)
+        {
+            if (!r.deferred)
+            {
+                // count each missed tick once, not every pass it waits
+                r.shedCount++;
+                shedCount_++;
+            }
+            r.deferred = true;
+            return false;
+        }
+        r.deferred = false;
+        return true;
+    }
+
+    private void runLoop(LoopRecord r, double now)
+    {
+        long loopStart = System.nanoTime();
+        r.loop.onLoop(now);
+        r.timing.addSample((System.nanoTime() - loopStart) * 1e-9);
+    }
+
+    // runs one pass of the dependency graph on the worker pool and waits
+    // for it to finish. Called with taskRunningLock_ held.
+    private void runParallel(double now)
+    {
+        int numDue = 0;
+        for (LoopRecord r : schedule_)
+        {
+            r.due = shouldRun(r);
+            if (r.due)
+                numDue++;
+        }
+        if (numDue == 0)
+            return;
+        for (LoopRecord r : schedule_)
+        {
+            if (!r.due)
+                continue;
+            r.numDuePredecessors = 0;
+            for (int i = 0; i < r.predecessors.size(); i++)
+            {
+                if (r.predecessors.get(i).due)
+                    r.numDuePredecessors++;
+            }
+            r.pending.set(r.numDuePredecessors);
+        }
+        passTimestamp_ = now;
+        remaining_.set(numDue);
+        for (LoopRecord r : schedule_)
+        {
+            if (r.due && r.numDuePredecessors == 0)
+                executor_.execute(r);
+        }
+        boolean interrupted = false;
+        synchronized (passDone_)
+        {
+            while (remaining_.get() > 0)
+            {
+                try
+                {
+                    passDone_.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        Throwable failure = workerFailure_;
+        if (failure != null)
+        {
+            workerFailure_ = null;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+            throw new RuntimeException(failure);
+        }
     }
 
     public synchronized void register(Loop loop)
     {
+        register(loop, kPeriod);
+    }
+
+    public synchronized void register(Loop loop, double period)
+    {
+        register(loop, period, Priority.NORMAL);
+    }
+
+    /**
+     * Registers a loop that only needs to run every period seconds.
+     * The period is rounded to the nearest multiple of kPeriod.
+     */
+    public synchronized void register(Loop loop, double period, Priority priority)
+    {
+        int divisor = (int) Math.max(1, Math.round(period / kPeriod));
         synchronized (taskRunningLock_)
         {
-            loops_.add(loop);
+            int phase = 0;
+            for (LoopRecord r : loops_)
+            {
+                if (r.divisor == divisor)
+                    phase++;
+            }
+            LoopRecord r = new LoopRecord(loop, divisor, phase % divisor, priority);
+            loops_.add(r);
+            Logger.notice("Looper registered " + r.name + " every " + divisor * kPeriod + "s, " +
+                    priority + " priority");
+            buildSchedule();
         }
     }
 
+    /**
+     * Declares that after reads state written by before, so within a pass
+     * after won't start until before has finished. The loops needn't be
+     * registered yet; dependencies on unregistered loops are ignored.
+     */
+    public synchronized void addDependency(Loop before, Loop after)
+    {
+        synchronized (taskRunningLock_)
+        {
+            dependencies_.add(new Loop[] {before, after});
+            buildSchedule();
+        }
+    }
+
+    private LoopRecord findRecord(Loop loop)
+    {
+        for (LoopRecord r : loops_)
+        {
+            if (r.loop == loop)
+                return r;
+        }
+        return null;
+    }
+
+    // Orders the loops so that each runs after its dependencies, keeping
+    // registration order otherwise. Called with taskRunningLock_ held.
+    private void buildSchedule()
+    {
+        for (LoopRecord r : loops_)
+        {
+            r.predecessors.clear();
+            r.successors.clear();
+        }
+        for (Loop[] dep : dependencies_)
+        {
+            LoopRecord before = findRecord(dep[0]);
+            LoopRecord after = findRecord(dep[1]);
+            if (before == null || after == null || before == after)
+                continue;
+            after.predecessors.add(before);
+            before.successors.add(after);
+        }
+
+        List<LoopRecord> ordered = new ArrayList<>();
+        List<LoopRecord> unplaced = new ArrayList<>(loops_);
+        boolean progress = true;
+        while (!unplaced.isEmpty() && progress)
+        {
+            progress = false;
+            for (int i = 0; i < unplaced.size(); i++)
+            {
+                LoopRecord r = unplaced.get(i);
+                if (ordered.containsAll(r.predecessors))
+                {
+                    ordered.add(r);
+                    unplaced.remove(i);
+                    progress = true;
+                    break;
+                }
+            }
+        }
+        if (!unplaced.isEmpty())
+        {
+            Logger.error("Looper dependency cycle, ignoring dependencies");
+            for (LoopRecord r : loops_)
+            {
+                r.predecessors.clear();
+                r.successors.clear();
+            }
+            ordered = loops_;
+        }
+        schedule_ = ordered.toArray(new LoopRecord[ordered.size()]);
+    }
+
+    /**
+     * When stepped externally the looper doesn't start its Notifier;
+     * instead the owner calls step() to run each pass. Must be set
+     * before start().
+     */
+    public synchronized void setExternallyStepped(boolean stepped)
+    {
+        externallyStepped_ = stepped;
+    }
+
+    /**
+     * Runs a single pass at the current Timer timestamp. Intended for
+     * externally stepped loopers; a no-op when the looper isn't running.
+     */
+    public void step()
+    {
+        runnable_.run();
+    }
+
     public synchronized void start()
     {
         if (!running_)
@@ -76,13 +461,37 @@ public class Looper
             synchronized (taskRunningLock_)
             {
                 timestamp_ = Timer.getFPGATimestamp();
-                for (Loop loop : loops_)
+                for (LoopRecord r : loops_)
                 {
-                    loop.onStart(timestamp_);
+                    r.timing.clear();
+                    r.deferred = false;
+                    r.shedCount = 0;
+                    r.loop.onStart(timestamp_);
                 }
+                if (numWorkers_ > 1)
+                {
+                    executor_ = Executors.newFixedThreadPool(numWorkers_, (r) ->
+                    {
+                        Thread t = new Thread(r, "Looper worker");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    parallel_ = true;
+                }
+                tick_ = 0;
+                passTiming_.clear();
+                jitter_.clear();
+                overruns_ = 0;
+                consecutiveOverruns_ = 0;
+                shedCount_ = 0;
                 running_ = true;
             }
-            notifier_.startPeriodic(kPeriod);
+            if (!externallyStepped_)
+            {
+                if (notifier_ == null)
+                    notifier_ = new Notifier(runnable_);
+                notifier_.startPeriodic(kPeriod);
+            }
         }
     }
 
@@ -91,22 +500,107 @@ public class Looper
         if (running_)
         {
             Logger.notice("Looper stopping subsystem loops");
-            notifier_.stop();
+            if (notifier_ != null)
+                notifier_.stop();
             synchronized (taskRunningLock_)
             {
                 running_ = false;
+                if (executor_ != null)
+                {
+                    executor_.shutdown();
+                    executor_ = null;
+                    parallel_ = false;
+                }
                 timestamp_ = Timer.getFPGATimestamp();
-                for (Loop loop : loops_)
+                for (LoopRecord r : loops_)
                 {
-                    Logger.notice("Looper stopping " + loop);
-                    loop.onStop(timestamp_);
+                    Logger.notice("Looper stopping " + r.loop);
+                    r.loop.onStop(timestamp_);
                 }
             }
+            logTimingSummary();
+        }
+    }
+
+    public int getOverrunCount()
+    {
+        synchronized (taskRunningLock_)
+        {
+            return overruns_;
+        }
+    }
+
+    /**
+     * @return number of loop runs skipped by load shedding since start
+     */
+    public int getShedCount()
+    {
+        synchronized (taskRunningLock_)
+        {
+            return shedCount_;
+        }
+    }
+
+    private int getShedCount(LoopRecord r)
+    {
+        synchronized (taskRunningLock_)
+        {
+            return r.shedCount;
         }
     }
 
-    public void outputToSmartDashboard()
+    public synchronized void outputToSmartDashboard()
     {
         SmartDashboard.putNumber("looper_dt", dt_);
+        SmartDashboard.putNumber("Looper/overruns", getOverrunCount());
+        SmartDashboard.putNumber("Looper/shed", getShedCount());
+        publish("Looper/pass", passTiming_);
+        publish("Looper/jitter", jitter_);
+        for (int i = 0; i < loops_.size(); i++)
+        {
+            LoopRecord r = loops_.get(i);
+            publish("Looper/" + r.name, r.timing);
+            if (r.priority != Priority.CRITICAL)
+                SmartDashboard.putNumber("Looper/" + r.name + "/shed", getShedCount(r));
+        }
+    }
+
+    // snapshot under the lock so the loop thread is only held off for the
+    // copy, then do the string-building and NetworkTables work without it.
+    private void takeSnapshot(TimingHistogram h)
+    {
+        synchronized (taskRunningLock_)
+        {
+            snapshot_.copyFrom(h);
+        }
+    }
+
+    private void publish(String key, TimingHistogram h)
+    {
+        takeSnapshot(h);
+        SmartDashboard.putNumber(key + "/p50", snapshot_.getPercentile(.5));
+        SmartDashboard.putNumber(key + "/p99", snapshot_.getPercentile(.99));
+        SmartDashboard.putNumber(key + "/max", snapshot_.getMax());
+    }
+
+    private void logTimingSummary()
+    {
+        Logger.notice("Looper overruns: " + getOverrunCount() + " shed: " + getShedCount());
+        logTiming("pass", passTiming_);
+        logTiming("jitter", jitter_);
+        for (LoopRecord r : loops_)
+        {
+            logTiming(r.name, r.timing);
+            if (getShedCount(r) > 0)
+                Logger.notice("Looper " + r.name + " shed: " + getShedCount(r));
+        }
+    }
+
+    private void logTiming(String name, TimingHistogram h)
+    {
+        takeSnapshot(h);
+        Logger.notice(String.format("Looper %s (ms) n:%d p50:%.3f p99:%.3f max:%.3f", name,
+                snapshot_.getNumSamples(), snapshot_.getPercentile(.5) * 1000,
+                snapshot_.getPercentile(.99) * 1000, snapshot_.getMax() * 1000));
     }
 }
@@ -35,7 +35,7 @@ public class CrossBaselinePath implements PathContainer {
     @Override
     public RigidTransform2d getStartPose()
     {
-        return new RigidTransform2d(new Translation2d(18, 45), Rotation2d.fromDegrees(90.0));
+        return new RigidTransform2d(new Translation2d(18, 45), Rotation2d.fromDegrees(0.0));
     }
 
     @Override
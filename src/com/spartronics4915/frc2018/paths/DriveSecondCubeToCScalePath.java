@@ -36,7 +36,7 @@ public class DriveSecondCubeToCScalePath implements PathContainer {
     @Override
     public RigidTransform2d getStartPose()
     {
-        return new RigidTransform2d(new Translation2d(213, 90), Rotation2d.fromDegrees(180.0));
+        return new RigidTransform2d(new Translation2d(213, 90), new Rotation2d(40, -17, true));
     }
 
     @Override
@@ -36,7 +36,7 @@ public class DriveSecondCubeToCSwitchPath implements PathContainer {
     @Override
     public RigidTransform2d getStartPose()
     {
-        return new RigidTransform2d(new Translation2d(240, 114), Rotation2d.fromDegrees(90.0));
+        return new RigidTransform2d(new Translation2d(240, 114), Rotation2d.fromDegrees(180.0));
     }
 
     @Override
@@ -37,7 +37,7 @@ public class DriveToFarSwitchFromBPath implements PathContainer {
     @Override
     public RigidTransform2d getStartPose()
     {
-        return new RigidTransform2d(new Translation2d(18, 158), Rotation2d.fromDegrees(90.0));
+        return new RigidTransform2d(new Translation2d(18, 158), Rotation2d.fromDegrees(0.0));
     }
 
     @Override
@@ -0,0 +1,360 @@
+package com.spartronics4915.frc2018.paths;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.frc2018.paths.PathBuilder.Waypoint;
+import com.spartronics4915.frc2018.paths.profiles.PathAdapter;
+import com.spartronics4915.lib.util.Logger;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.PathFile;
+import com.spartronics4915.lib.util.control.Trajectory;
+import com.spartronics4915.lib.util.control.TrajectoryGenerator;
+import com.spartronics4915.lib.util.control.WheelProfile;
+
+/**
+ * Builds every auto path ahead of time so DrivePathAction doesn't pay for
+ * PathBuilder (segment construction, verifySpeeds and the per-segment
+ * motion profiles) in the first milliseconds of autonomous. Each path's
+ * Trajectory (for Drive.PathController.RAMSETE) and WheelProfile (for
+ * TALON_PROFILE) are generated right after it, for the same reason.
+ *
+ * Paths are keyed by PathContainer class and field profile, and built in
+ * parallel on a small pool of daemon threads so robotInit isn't held up.
+ * A Path is consumed as it's followed, so getPath hands out a fresh copy of
+ * the compiled path each time. If a container's waypoints no longer match
+ * what we built from (eg: Util.truncatePathContainerUntilMarker), or the
+ * container was never registered, we fall back to building it on the spot.
+ *
+ * If there's a compiled path file on the robot (written offline by main(),
+ * see BuildNotes.md) paths in it are loaded from there instead of being
+ * built. Each entry records a hash of the waypoints, direction, profile
+ * limits and builder version it was built from (getSourceHash); entries
+ * that don't match the container and constants in the jar are stale,
+ * so they are ignored (with a warning) and the path is built instead.
+ */
+public class PathCache
+{
+
+    private static final int kNumWorkers = 2;
+    // Bump whenever PathBuilder, PathSegment's speed profiles (verifySpeeds)
+    // or PathTransformHelper change what gets built from the same
+    // waypoints, so compiled path files from older code are rebuilt.
+    private static final int kBuilderVersion = 1;
+    public static final String kCompiledPathFile = "/home/lvuser/paths.bin";
+
+    private static PathCache sInstance = null;
+
+    public static PathCache getInstance()
+    {
+        if (sInstance == null)
+        {
+            sInstance = new PathCache();
+        }
+        return sInstance;
+    }
+
+    /**
+     * The containers we drive in auto, including the mirrored (A side)
+     * variants.
+     */
+    public static List<PathContainer> getRegisteredPaths()
+    {
+        return Arrays.asList(
+                new CrossBaselinePath(),
+                new DriveToCloseSwitchFromAPath(), new DriveToCloseSwitchFromBPath(),
+                new DriveToCloseSwitchFromCPath(),
+                new DriveToFarSwitchFromAPath(), new DriveToFarSwitchFromBPath(),
+                new DriveToFarSwitchFromCPath(),
+                new DriveToCloseScaleFromAPath(), new DriveToCloseScaleFromCPath(),
+                new DriveToFarScaleFromAPath(), new DriveToFarScaleFromCPath(),
+                new DriveReverseToSecondCubeFromASwitchPath(), new DriveReverseToSecondCubeFromCSwitchPath(),
+                new DriveSecondCubeToASwitchPath(), new DriveSecondCubeToCSwitchPath(),
+                new DriveSecondCubeToAScalePath(), new DriveSecondCubeToCScalePath(),
+                new TestPath());
+    }
+
+    private static class Entry
+    {
+
+        final List<Waypoint> waypoints; // what the path was built from
+        final Future<Path> path;
+        // Both are immutable, so every DrivePathAction can share them.
+        final Future<Trajectory> trajectory;
+        final Future<WheelProfile> wheelProfile;
+
+        Entry(List<Waypoint> waypoints, Future<Path> path, Future<Trajectory> trajectory,
+                Future<WheelProfile> wheelProfile)
+        {
+            this.waypoints = waypoints;
+            this.path = path;
+            this.trajectory = trajectory;
+            this.wheelProfile = wheelProfile;
+        }
+    }
+
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+    private ExecutorService mExecutor = null;
+    private PathFile mPathFile = null;
+    private boolean mTriedPathFile = false;
+
+    private PathCache()
+    {
+    }
+
+    /**
+     * Starts building the given paths in the background. Safe to call again
+     * (eg: from disabledInit), paths that are already cached are skipped.
+     */
+    public synchronized void precompile(List<PathContainer> containers)
+    {
+        if (mExecutor == null)
+        {
+            mExecutor = Executors.newFixedThreadPool(kNumWorkers, (r) ->
+            {
+                Thread t = new Thread(r, "PathCache worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        if (!mTriedPathFile)
+        {
+            mTriedPathFile = true;
+            File file = new File(kCompiledPathFile);
+            if (file.exists())
+            {
+                try
+                {
+                    mPathFile = PathFile.open(file);
+                    Logger.notice("PathCache loaded " + mPathFile.getNames().size() + " paths from " + file);
+                }
+                catch (IOException e)
+                {
+                    Logger.warning("PathCache can't use " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        for (PathContainer container : containers)
+        {
+            final String key = getKey(container);
+            if (mEntries.containsKey(key))
+                continue;
+            // Snapshot the waypoints: truncation mutates the container's
+            // list, and mirroring (PathTransformHelper) mutates the
+            // waypoints themselves.
+            final List<Waypoint> waypoints = new ArrayList<>();
+            for (Waypoint w : container.getWaypoints())
+            {
+                waypoints.add(new Waypoint(w));
+            }
+            final Path compiled = loadCompiledPath(key, getSourceHash(container));
+            final CompletableFuture<Path> path = (compiled != null) ? CompletableFuture.completedFuture(compiled)
+                    : CompletableFuture.supplyAsync(() -> container.buildPath(), mExecutor);
+            // Chained rather than blocking on the path, so a worker never
+            // waits on another.
+            final boolean reversed = container.isReversed();
+            final CompletableFuture<Trajectory> trajectory = path.thenApplyAsync(
+                    (p) -> TrajectoryGenerator.generate(p, TrajectoryGenerator.Constraints.getDefault()), mExecutor);
+            final CompletableFuture<WheelProfile> wheelProfile = trajectory.thenApplyAsync(
+                    (t) -> new WheelProfile(path.join(), t, reversed, Constants.kTalonProfileDt), mExecutor);
+            mEntries.put(key, new Entry(waypoints, path, trajectory, wheelProfile));
+        }
+    }
+
+    /**
+     * @return a fresh Path for the container, from the cache if we have it
+     */
+    public Path getPath(PathContainer container)
+    {
+        final Path cached = getCached(container, (entry) -> entry.path);
+        return (cached != null) ? cached.copy() : container.buildPath();
+    }
+
+    /**
+     * @return the Trajectory for the container's path (under the default
+     *         TrajectoryGenerator constraints), from the cache if we have it
+     */
+    public Trajectory getTrajectory(PathContainer container)
+    {
+        final Trajectory cached = getCached(container, (entry) -> entry.trajectory);
+        return (cached != null) ? cached
+                : TrajectoryGenerator.generate(getPath(container), TrajectoryGenerator.Constraints.getDefault());
+    }
+
+    /**
+     * @return the WheelProfile for the container's path, sampled at
+     *         kTalonProfileDt, from the cache if we have it
+     */
+    public WheelProfile getWheelProfile(PathContainer container)
+    {
+        final WheelProfile cached = getCached(container, (entry) -> entry.wheelProfile);
+        if (cached != null)
+            return cached;
+        final Path path = getPath(container);
+        return new WheelProfile(path, TrajectoryGenerator.generate(path, TrajectoryGenerator.Constraints.getDefault()),
+                container.isReversed(), Constants.kTalonProfileDt);
+    }
+
+    /**
+     * @return what field picks out of the container's entry, or null if we
+     *         don't have it (the caller builds it instead)
+     */
+    private <T> T getCached(PathContainer container, Function<Entry, Future<T>> field)
+    {
+        final Entry entry = mEntries.get(getKey(container));
+        if (entry != null && sameWaypoints(entry.waypoints, container.getWaypoints()))
+        {
+            try
+            {
+                // If it's still building, waiting beats starting over.
+                return field.apply(entry).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                Logger.logThrowableCrash("PathCache failed to build " + getKey(container), e.getCause());
+            }
+        }
+        else
+        {
+            Logger.notice("PathCache miss for " + getKey(container));
+        }
+        return null;
+    }
+
+    /**
+     * @return true if every registered path (and its Trajectory and
+     *         WheelProfile) has finished building
+     */
+    public boolean isReady()
+    {
+        for (Entry entry : mEntries.values())
+        {
+            if (!entry.path.isDone() || !entry.trajectory.isDone() || !entry.wheelProfile.isDone())
+                return false;
+        }
+        return true;
+    }
+
+    private Path loadCompiledPath(String key, long sourceHash)
+    {
+        if (mPathFile == null || !mPathFile.getNames().contains(key))
+            return null;
+        if (!isCurrent(mPathFile, key, sourceHash))
+        {
+            Logger.warning("PathCache " + key + " in " + kCompiledPathFile
+                    + " doesn't match its waypoints, building it instead");
+            return null;
+        }
+        try
+        {
+            return mPathFile.getPath(key);
+        }
+        catch (RuntimeException e)
+        {
+            Logger.warning("PathCache can't decode " + key + ", building it instead: " + e);
+            return null;
+        }
+    }
+
+    private static String getKey(PathContainer container)
+    {
+        return container.getClass().getName() + "@"
+                + PathAdapter.getFieldProfile().getClass().getSimpleName();
+    }
+
+    /**
+     * Hash of what a path is built from, so a compiled path file written
+     * from older waypoints, older profile limits or an older builder isn't
+     * mistaken for the current ones. Only uses values whose hashes are
+     * stable across JVMs.
+     */
+    public static long getSourceHash(PathContainer container)
+    {
+        return getSourceHash(container.getWaypoints(), container.isReversed(), Constants.kPathFollowingMaxAccel,
+                Constants.kPathFollowingMaxJerk);
+    }
+
+    /**
+     * getSourceHash with explicit speed profile limits (those PathSegment
+     * builds its profiles with), eg: to check what a retune would do.
+     * Waypoints are hashed as given, ie: after any mirroring.
+     */
+    public static long getSourceHash(List<Waypoint> waypoints, boolean reversed, double maxAccel, double maxJerk)
+    {
+        long h = kBuilderVersion;
+        h = 31 * h + (reversed ? 1 : 0);
+        h = 31 * h + Double.doubleToLongBits(maxAccel);
+        h = 31 * h + Double.doubleToLongBits(maxJerk);
+        for (Waypoint w : waypoints)
+        {
+            h = 31 * h + Double.doubleToLongBits(w.position.x());
+            h = 31 * h + Double.doubleToLongBits(w.position.y());
+            h = 31 * h + Double.doubleToLongBits(w.radius);
+            h = 31 * h + Double.doubleToLongBits(w.speed);
+            h = 31 * h + (w.marker == null ? 0 : w.marker.hashCode());
+        }
+        return h;
+    }
+
+    /**
+     * @return whether file has a path for key that was built from the
+     *         source with sourceHash (see getSourceHash)
+     */
+    public static boolean isCurrent(PathFile file, String key, long sourceHash)
+    {
+        return file.getNames().contains(key) && file.getSourceHash(key) == sourceHash;
+    }
+
+    private static boolean sameWaypoints(List<Waypoint> a, List<Waypoint> b)
+    {
+        if (a.size() != b.size())
+            return false;
+        for (int i = 0; i < a.size(); i++)
+        {
+            final Waypoint wa = a.get(i);
+            final Waypoint wb = b.get(i);
+            if (wa.position.x() != wb.position.x() || wa.position.y() != wb.position.y()
+                    || wa.radius != wb.radius || wa.speed != wb.speed
+                    || (wa.marker == null ? wb.marker != null : !wa.marker.equals(wb.marker)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Offline tool that builds every registered path and writes them to a
+     * compiled path file. Copy the result to kCompiledPathFile on the robot.
+     *
+     * usage: PathCache [output file]
+     */
+    public static void main(String[] args) throws IOException
+    {
+        File file = new File(args.length > 0 ? args[0] : "paths.bin");
+        Map<String, Path> paths = new LinkedHashMap<>();
+        Map<String, Long> hashes = new LinkedHashMap<>();
+        for (PathContainer container : getRegisteredPaths())
+        {
+            hashes.put(getKey(container), getSourceHash(container));
+            paths.put(getKey(container), container.buildPath());
+        }
+        PathFile.write(file, paths, hashes);
+        System.out.println("Wrote " + paths.size() + " paths to " + file + " (" + file.length() + " bytes)");
+    }
+}
@@ -0,0 +1,319 @@
+package com.spartronics4915.frc2018.paths;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.frc2018.Kinematics;
+import com.spartronics4915.frc2018.paths.PathBuilder.Waypoint;
+import com.spartronics4915.frc2018.subsystems.Drive;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.PathFollower;
+import com.spartronics4915.lib.util.control.RamseteController;
+import com.spartronics4915.lib.util.control.TrajectoryGenerator;
+import com.spartronics4915.lib.util.control.WheelProfile;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Twist2d;
+
+/**
+ * Headless simulation of PathFollower driving our paths, so path or
+ * controller changes can be checked without a robot (and without digging
+ * through PATH-FOLLOWER-LOGS.csv).
+ *
+ * The robot is a kinematic differential drive. Wheel velocity commands take
+ * effect after a configurable latency, wheels slip by a random fraction of
+ * their travel (which the encoders don't see) and the encoders and gyro are
+ * noisy. PathFollower sees the odometry estimate, built the same way
+ * RobotStateEstimator does, while errors are measured from the true pose.
+ * Each run is seeded, so results are repeatable.
+ *
+ * With -talon the Talons run a WheelProfile themselves: each wheel turns
+ * exactly as profiled (no command latency) and nothing corrects for slip.
+ *
+ * A path passes if it finishes within the cross track and end error limits
+ * and crosses all of its markers. main exits 1 if any path fails, so it
+ * can be run as a regression check (ant sim).
+ *
+ * usage: PathFollowerSimulator [-align] [-ramsete | -talon] [latency seconds] [slip fraction]
+ * [encoder noise inches] [gyro noise degrees]
+ */
+public class PathFollowerSimulator
+{
+
+    public static class Config
+    {
+
+        public double dt = Constants.kLooperDt;
+        public double latency = 0.02; // seconds before a command reaches the wheels
+        public double wheelSlip = 0.02; // mean fraction of wheel travel lost to slip
+        public double encoderNoise = 0.01; // inches per tick, standard deviation
+        public double gyroNoise = 0.1; // degrees, standard deviation
+        public double timeout = 20.0; // seconds
+        public double maxCrossTrackError = 10.0; // inches, to pass
+        public double maxEndError = 10.0; // inches, to pass
+        // Start facing along the path instead of at getStartPose's heading
+        // (eg: for a new path whose start pose isn't filled in yet).
+        public boolean alignStartHeading = false;
+        public long seed = 4915;
+        public Drive.PathController controller = Drive.PathController.PURE_PURSUIT;
+    }
+
+    public static class Result
+    {
+
+        public String name;
+        public boolean finished;
+        public String failure; // why it didn't pass, null if it did
+        public double completionTime;
+        public double maxCrossTrackError;
+        public double meanCrossTrackError;
+        public double endError; // true end position to path end
+        public Map<String, Double> markerTimes = new LinkedHashMap<>(); // NaN if never crossed
+
+        @Override
+        public String toString()
+        {
+            String markers = "";
+            for (Map.Entry<String, Double> e : markerTimes.entrySet())
+            {
+                markers += " " + e.getKey() + "@" + String.format("%.2f", e.getValue());
+            }
+            return String.format("%-44s %-4s %7.2f s  cte max %5.2f mean %5.2f  end %5.2f in%s%s", name,
+                    passed() ? "ok" : "FAIL", completionTime, maxCrossTrackError, meanCrossTrackError, endError,
+                    markers, passed() ? "" : "  (" + failure + ")");
+        }
+
+        public boolean passed()
+        {
+            return failure == null;
+        }
+
+        /**
+         * Sets failure if this run missed config's limits or a marker. NaN
+         * errors (a robot that went nowhere sensible) fail too.
+         */
+        public void check(Config config)
+        {
+            failure = null;
+            if (!finished)
+                failure = "didn't finish";
+            else if (!(maxCrossTrackError <= config.maxCrossTrackError))
+                failure = "cross track error over " + config.maxCrossTrackError + " in";
+            else if (!(endError <= config.maxEndError))
+                failure = "end error over " + config.maxEndError + " in";
+            for (Map.Entry<String, Double> e : markerTimes.entrySet())
+            {
+                if (failure == null && Double.isNaN(e.getValue()))
+                    failure = "never crossed " + e.getKey();
+            }
+        }
+    }
+
+    /**
+     * Drives one path from its start pose until the follower finishes (or
+     * the timeout).
+     */
+    public static Result simulate(PathContainer container, Config config)
+    {
+        final Result result = new Result();
+        result.name = container.getClass().getSimpleName();
+        for (Waypoint w : container.getWaypoints())
+        {
+            if (w.getMarker() != null)
+                result.markerTimes.put(w.getMarker(), Double.NaN);
+        }
+
+        // Build once: mirrored containers mirror their waypoints in place.
+        final Path path = container.buildPath();
+        final Path reference = path.copy();
+        final PathFollower follower = (config.controller == Drive.PathController.PURE_PURSUIT)
+                ? new PathFollower(path, container.isReversed(), Drive.getPathFollowerParameters()) : null;
+        final RamseteController ramsete = (config.controller == Drive.PathController.RAMSETE)
+                ? new RamseteController(path, container.isReversed(), Drive.getRamseteParameters()) : null;
+        final WheelProfile profile = (config.controller == Drive.PathController.TALON_PROFILE)
+                ? new WheelProfile(path, TrajectoryGenerator.generate(path, TrajectoryGenerator.Constraints.getDefault()),
+                        container.isReversed(), Constants.kTalonProfileDt)
+                : null;
+        final Random random = new Random(config.seed);
+
+        // The Talons run a profile without waiting on us.
+        final int delayTicks = (profile != null) ? 0 : Math.max(0, (int) Math.round(config.latency / config.dt));
+        final double[] leftCommands = new double[delayTicks + 1];
+        final double[] rightCommands = new double[delayTicks + 1];
+
+        RigidTransform2d start = container.getStartPose();
+        if (config.alignStartHeading)
+        {
+            Rotation2d heading = reference.getStartHeading();
+            start = new RigidTransform2d(start.getTranslation(),
+                    container.isReversed() ? heading.rotateBy(Rotation2d.fromDegrees(180)) : heading);
+        }
+        RigidTransform2d truth = new RigidTransform2d(start);
+        RigidTransform2d estimate = new RigidTransform2d(start);
+        double displacement = 0.0;
+        double velocity = 0.0;
+        double cteSum = 0.0;
+        int ticks = 0;
+        double t = 0.0;
+        while (!isFinished(follower, ramsete, profile, t) && t < config.timeout)
+        {
+            final Kinematics.DriveVelocity setpoint;
+            if (profile != null)
+            {
+                setpoint = new Kinematics.DriveVelocity(
+                        (getPosition(profile, true, t + config.dt) - getPosition(profile, true, t)) / config.dt,
+                        (getPosition(profile, false, t + config.dt) - getPosition(profile, false, t)) / config.dt);
+            }
+            else
+            {
+                final Twist2d command = (follower != null) ? follower.update(t, estimate, displacement, velocity)
+                        : ramsete.update(t, estimate);
+                setpoint = isFinished(follower, ramsete, profile, t)
+                        ? new Kinematics.DriveVelocity(0, 0) : Kinematics.inverseKinematics(command);
+            }
+            leftCommands[ticks % leftCommands.length] = setpoint.left;
+            rightCommands[ticks % rightCommands.length] = setpoint.right;
+
+            // The wheels run the command from delayTicks ago.
+            final int applied = (ticks + 1) % leftCommands.length;
+            final double left = (ticks >= delayTicks) ? leftCommands[applied] * config.dt : 0.0;
+            final double right = (ticks >= delayTicks) ? rightCommands[applied] * config.dt : 0.0;
+
+            // Slip moves the robot less than the wheels turned.
+            final double leftGround = left * (1 - 2 * config.wheelSlip * random.nextDouble());
+            final double rightGround = right * (1 - 2 * config.wheelSlip * random.nextDouble());
+            truth = truth.transformBy(RigidTransform2d.exp(Kinematics.forwardKinematics(leftGround, rightGround)));
+
+            // Odometry sees the wheels (and a noisy gyro), not the ground.
+            final double leftMeasured = left + random.nextGaussian() * config.encoderNoise;
+            final double rightMeasured = right + random.nextGaussian() * config.encoderNoise;
+            final Rotation2d heading = truth.getRotation()
+                    .rotateBy(Rotation2d.fromDegrees(random.nextGaussian() * config.gyroNoise));
+            estimate = Kinematics.integrateForwardKinematics(estimate, leftMeasured, rightMeasured, heading);
+            displacement += (leftMeasured + rightMeasured) / 2;
+            velocity = (leftMeasured + rightMeasured) / 2 / config.dt;
+
+            final double cte = reference.getDistanceFromPath(truth.getTranslation());
+            result.maxCrossTrackError = Math.max(result.maxCrossTrackError, cte);
+            cteSum += cte;
+            for (Map.Entry<String, Double> e : result.markerTimes.entrySet())
+            {
+                if (Double.isNaN(e.getValue()) && hasPassedMarker(follower, ramsete, profile, t, e.getKey()))
+                    e.setValue(t);
+            }
+            ticks++;
+            t += config.dt;
+        }
+        result.finished = isFinished(follower, ramsete, profile, t);
+        result.completionTime = t;
+        result.meanCrossTrackError = cteSum / Math.max(1, ticks);
+        result.endError = Math.hypot(truth.getTranslation().x() - reference.getEndPosition().x(),
+                truth.getTranslation().y() - reference.getEndPosition().y());
+        result.check(config);
+        return result;
+    }
+
+    private static boolean isFinished(PathFollower follower, RamseteController ramsete, WheelProfile profile,
+            double t)
+    {
+        if (profile != null)
+            return t >= profile.getDuration();
+        return (follower != null) ? follower.isFinished() : ramsete.isFinished();
+    }
+
+    private static boolean hasPassedMarker(PathFollower follower, RamseteController ramsete, WheelProfile profile,
+            double t, String marker)
+    {
+        if (profile != null)
+            return profile.hasPassedMarker(marker, t);
+        return (follower != null) ? follower.hasPassedMarker(marker) : ramsete.hasPassedMarker(marker);
+    }
+
+    // A wheel's profiled position at t, the Talon servoes linearly between
+    // points.
+    private static double getPosition(WheelProfile profile, boolean left, double t)
+    {
+        final int i = profile.getIndex(t);
+        if (i == profile.size() - 1)
+            return left ? profile.getLeftPosition(i) : profile.getRightPosition(i);
+        final double x = t / profile.getDt() - i;
+        final double a = left ? profile.getLeftPosition(i) : profile.getRightPosition(i);
+        final double b = left ? profile.getLeftPosition(i + 1) : profile.getRightPosition(i + 1);
+        return a + (b - a) * x;
+    }
+
+    /**
+     * Simulates every path in parallel.
+     *
+     * @return results in the same order as <code>containers</code>
+     */
+    public static List<Result> simulateAll(List<PathContainer> containers, Config config)
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try
+        {
+            final List<Callable<Result>> tasks = new ArrayList<>();
+            for (PathContainer container : containers)
+            {
+                tasks.add(() -> simulate(container, config));
+            }
+            final List<Result> results = new ArrayList<>();
+            for (Future<Result> f : executor.invokeAll(tasks))
+            {
+                results.add(f.get());
+            }
+            return results;
+        }
+        catch (InterruptedException | ExecutionException e)
+        {
+            throw new RuntimeException("PathFollowerSimulator failed", e);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        final Config config = new Config();
+        while (args.length > 0 && args[0].startsWith("-"))
+        {
+            if (args[0].equals("-align"))
+                config.alignStartHeading = true;
+            else if (args[0].equals("-ramsete"))
+                config.controller = Drive.PathController.RAMSETE;
+            else if (args[0].equals("-talon"))
+                config.controller = Drive.PathController.TALON_PROFILE;
+            else
+                break;
+            args = java.util.Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length > 0)
+            config.latency = Double.parseDouble(args[0]);
+        if (args.length > 1)
+            config.wheelSlip = Double.parseDouble(args[1]);
+        if (args.length > 2)
+            config.encoderNoise = Double.parseDouble(args[2]);
+        if (args.length > 3)
+            config.gyroNoise = Double.parseDouble(args[3]);
+        System.out.println(String.format(config.controller + ", latency %.3f s, slip %.3f, encoder noise %.3f in, gyro noise %.2f deg",
+                config.latency, config.wheelSlip, config.encoderNoise, config.gyroNoise));
+        boolean ok = true;
+        for (Result r : simulateAll(PathCache.getRegisteredPaths(), config))
+        {
+            System.out.println(r);
+            ok &= r.passed();
+        }
+        System.exit(ok ? 0 : 1);
+    }
+}
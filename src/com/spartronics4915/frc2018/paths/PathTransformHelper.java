@@ -6,6 +6,7 @@ import com.spartronics4915.frc2018.Constants;
 import com.spartronics4915.frc2018.paths.PathBuilder.Waypoint;
 import com.spartronics4915.lib.util.Logger;
 import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
 import com.spartronics4915.lib.util.math.Translation2d;
 
 public class PathTransformHelper
@@ -19,11 +20,24 @@ public class PathTransformHelper
         return waypoints;
     }
     
+    /**
+     * Mirrors the pose's position and heading, so a robot that started on
+     * the original path facing along it faces along the mirrored path.
+     */
     public static RigidTransform2d mirrorRigidTransformAboutAxis(RigidTransform2d rt, boolean mirrorX, boolean mirrorY)
     {
         rt.setTranslation(mirrorTranslationAboutAxis(rt.getTranslation(), mirrorX, mirrorY));
+        rt.setRotation(mirrorRotationAboutAxis(rt.getRotation(), mirrorX, mirrorY));
         return rt;
     }
+
+    public static Rotation2d mirrorRotationAboutAxis(Rotation2d rotation, boolean mirrorX, boolean mirrorY)
+    {
+        // Mirroring x flips the heading's x component, mirroring y its y
+        // component.
+        return new Rotation2d(mirrorX ? -rotation.cos() : rotation.cos(), mirrorY ? -rotation.sin() : rotation.sin(),
+                false);
+    }
     
     public static Translation2d mirrorTranslationAboutAxis(Translation2d translation, boolean mirrorX, boolean mirrorY)
     {
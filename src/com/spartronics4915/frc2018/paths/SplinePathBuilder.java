@@ -0,0 +1,150 @@
+package com.spartronics4915.frc2018.paths;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.PathSegment;
+import com.spartronics4915.lib.util.math.QuinticHermiteSpline;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+import com.spartronics4915.lib.util.motion.MotionState;
+
+/**
+ * Builds a Path through a list of poses using quintic Hermite splines, as an
+ * alternative to PathBuilder's lines and arcs. The splines are curvature
+ * continuous, waypoints included (see QuinticHermiteSpline.chain), so the
+ * path has no steps in curvature where a line meets an arc.
+ *
+ * The Path itself is a sampled approximation of the splines: a polyline of
+ * kSegmentLength line segments that PathFollower can follow as-is, which
+ * strays from the splines by at most ~L^2/8R between samples. The pure
+ * pursuit lookahead spans many samples, so it sees the splines' curvature
+ * rather than the corners between samples. Speeds are time parameterized
+ * along the samples: each is capped by the waypoint speed and by
+ * kPathFollowingMaxLateralAccel at the splines' curvature there, then a
+ * forward and a backward pass limit them to kPathFollowingMaxAccel. The
+ * path starts and ends stopped.
+ *
+ * Every sample is a PathSegment with its own MotionProfile, so a spline
+ * path has several times as many segments as a PathBuilder one and takes
+ * longer to build; build it ahead of time (PathCache) rather than in auto.
+ *
+ * @see QuinticHermiteSpline
+ * @see PathBuilder
+ */
+public class SplinePathBuilder
+{
+
+    private static final double kSegmentLength = 3.0; // inches, chord error is ~L^2/8R
+    private static final int kLengthSamples = 100;
+
+    /**
+     * A pose the path passes through, the speed to approach it at and an
+     * optional marker (crossed on reaching this waypoint).
+     */
+    public static class Waypoint
+    {
+
+        final RigidTransform2d pose;
+        final double speed;
+        final String marker;
+
+        public Waypoint(RigidTransform2d pose, double speed)
+        {
+            this(pose, speed, null);
+        }
+
+        public Waypoint(RigidTransform2d pose, double speed, String marker)
+        {
+            this.pose = pose;
+            this.speed = speed;
+            this.marker = marker;
+        }
+    }
+
+    public static Path buildPathFromWaypoints(List<Waypoint> w)
+    {
+        if (w.size() < 2)
+            throw new Error("Path must contain at least 2 waypoints");
+
+        // Sample every spline at roughly kSegmentLength spacing.
+        final List<Translation2d> points = new ArrayList<>();
+        final List<Double> limits = new ArrayList<>(); // speed limit at each point
+        final List<String> markers = new ArrayList<>(); // marker for the segment ending at each point
+        points.add(w.get(0).pose.getTranslation());
+        limits.add(0.0);
+        markers.add(null);
+        final List<RigidTransform2d> poses = new ArrayList<>();
+        for (Waypoint waypoint : w)
+        {
+            poses.add(waypoint.pose);
+        }
+        final List<QuinticHermiteSpline> splines = QuinticHermiteSpline.chain(poses);
+        for (int i = 0; i < w.size() - 1; i++)
+        {
+            final Waypoint b = w.get(i + 1);
+            final QuinticHermiteSpline spline = splines.get(i);
+            final int n = Math.max(1, (int) Math.ceil(getLength(spline) / kSegmentLength));
+            for (int j = 1; j <= n; j++)
+            {
+                final double t = (double) j / n;
+                final double curvature = Math.abs(spline.getCurvature(t));
+                double limit = b.speed;
+                if (curvature > 1E-9)
+                    limit = Math.min(limit, Math.sqrt(Constants.kPathFollowingMaxLateralAccel / curvature));
+                points.add(spline.getPoint(t));
+                limits.add(limit);
+                markers.add(j == n ? b.marker : null);
+            }
+        }
+
+        final int n = points.size();
+        final double[] speeds = new double[n];
+        final double accel = Constants.kPathFollowingMaxAccel;
+        for (int i = 1; i < n; i++)
+        {
+            final double ds = distance(points.get(i - 1), points.get(i));
+            speeds[i] = Math.min(limits.get(i), Math.sqrt(speeds[i - 1] * speeds[i - 1] + 2 * accel * ds));
+        }
+        speeds[n - 1] = 0.0;
+        for (int i = n - 2; i >= 0; i--)
+        {
+            final double ds = distance(points.get(i), points.get(i + 1));
+            speeds[i] = Math.min(speeds[i], Math.sqrt(speeds[i + 1] * speeds[i + 1] + 2 * accel * ds));
+        }
+
+        Path p = new Path();
+        for (int i = 0; i < n - 1; i++)
+        {
+            final Translation2d start = points.get(i);
+            final Translation2d end = points.get(i + 1);
+            final double maxSpeed = Math.max(speeds[i], speeds[i + 1]);
+            if (distance(start, end) < 1E-9 || maxSpeed < 1E-9)
+                continue;
+            p.addSegment(new PathSegment(start.x(), start.y(), end.x(), end.y(), maxSpeed,
+                    new MotionState(0, 0, speeds[i], 0), speeds[i + 1], markers.get(i + 1)));
+        }
+        p.extrapolateLast();
+        return p;
+    }
+
+    private static double getLength(QuinticHermiteSpline spline)
+    {
+        double length = 0.0;
+        Translation2d last = spline.getPoint(0.0);
+        for (int i = 1; i <= kLengthSamples; i++)
+        {
+            final Translation2d next = spline.getPoint((double) i / kLengthSamples);
+            length += distance(last, next);
+            last = next;
+        }
+        return length;
+    }
+
+    private static double distance(Translation2d a, Translation2d b)
+    {
+        return Math.hypot(b.x() - a.x(), b.y() - a.y());
+    }
+}
@@ -36,7 +36,7 @@ public class TestPath implements PathContainer {
     @Override
     public RigidTransform2d getStartPose()
     {
-        return new RigidTransform2d(new Translation2d(50, 50), Rotation2d.fromDegrees(90.0));
+        return new RigidTransform2d(new Translation2d(50, 50), Rotation2d.fromDegrees(0.0));
     }
 
     @Override
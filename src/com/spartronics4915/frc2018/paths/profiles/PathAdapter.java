@@ -1,5 +1,7 @@
 package com.spartronics4915.frc2018.paths.profiles;
 
+import com.spartronics4915.frc2018.paths.PathCache;
+
 /**
  * Uses a field and robot profile to calculate Waypoints for the paths used by
  * the GearThenHopperShoot auto modes.
@@ -26,9 +28,14 @@ public class PathAdapter
         // You can put print the path out here
     }
 
+    /**
+     * Starts building all our auto paths in the background.
+     * 
+     * @see PathCache
+     */
     public static void calculatePaths()
     {
-        // TODO?
+        PathCache.getInstance().precompile(PathCache.getRegisteredPaths());
     }
 
 }
@@ -477,7 +477,7 @@ public class ArticulatedGrabber extends Subsystem
     @Override
     public void registerEnabledLoops(Looper enabledLooper)
     {
-        enabledLooper.register(mLoop);
+        enabledLooper.register(mLoop, Constants.kLooperMechanismDt);
     }
 
     public boolean checkSystem(String variant) //SYSTEM CHECKS FOR TESTING ONLY
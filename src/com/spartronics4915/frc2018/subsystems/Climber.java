@@ -227,7 +227,7 @@ public class Climber extends Subsystem
     @Override
     public void registerEnabledLoops(Looper enabledLooper)
     {
-        enabledLooper.register(mLoop);
+        enabledLooper.register(mLoop, Constants.kLooperMechanismDt);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package com.spartronics4915.frc2018.subsystems;
 
+import com.spartronics4915.frc2018.Constants;
 import com.spartronics4915.frc2018.loops.Loop;
 import com.spartronics4915.frc2018.loops.Looper;
 import com.spartronics4915.lib.util.LatchedBoolean;
@@ -88,7 +89,7 @@ public class ConnectionMonitor extends Subsystem
             {
 
             }
-        });
+        }, Constants.kLooperBackgroundDt, Looper.Priority.LOW);
     }
 
     @Override
@@ -8,12 +8,17 @@ import com.spartronics4915.frc2018.RobotState;
 import com.spartronics4915.frc2018.ShooterAimingParameters;
 import com.spartronics4915.frc2018.loops.Loop;
 import com.spartronics4915.frc2018.loops.Looper;
+import com.spartronics4915.frc2018.loops.RobotStateEstimator;
 import com.spartronics4915.lib.util.DriveSignal;
 import com.spartronics4915.lib.util.ReflectingCSVWriter;
 import com.spartronics4915.lib.util.Util;
 import com.spartronics4915.lib.util.control.Lookahead;
 import com.spartronics4915.lib.util.control.Path;
 import com.spartronics4915.lib.util.control.PathFollower;
+import com.spartronics4915.lib.util.control.RamseteController;
+import com.spartronics4915.lib.util.control.Trajectory;
+import com.spartronics4915.lib.util.control.TrajectoryGenerator;
+import com.spartronics4915.lib.util.control.WheelProfile;
 import com.spartronics4915.lib.util.drivers.TalonSRX4915Drive;
 import com.spartronics4915.lib.util.math.RigidTransform2d;
 import com.spartronics4915.lib.util.math.Rotation2d;
@@ -41,6 +46,7 @@ public class Drive extends Subsystem
 
     private static final int kPositionControlSlot = 0;
     private static final int kVelocityControlSlot = 1;
+    private static final int kMotionProfileSlot = 2;
     private static final double kOpenLoopRampRate = .5;
     private static final double kOpenLoopNominalOutput = 0.0; // fwd & rev
     private static final double kOpenLoopPeakOutput = 1; // fwd: 1, rev: -1
@@ -71,6 +77,14 @@ public class Drive extends Subsystem
         FIND_CUBE //Spin until we find the cube!
     }
 
+    // How PATH_FOLLOWING steers, see setWantDrivePath.
+    public enum PathController
+    {
+        PURE_PURSUIT, // PathFollower: adaptive pure pursuit steering, ProfileFollower speed
+        RAMSETE, // RamseteController: pose feedback along a time optimal Trajectory
+        TALON_PROFILE // WheelProfile streamed to the Talons, no pose feedback
+    }
+
     // Control states
     private DriveControlState mDriveControlState;
 
@@ -79,12 +93,15 @@ public class Drive extends Subsystem
 
     private RobotState mRobotState = RobotState.getInstance();
     private PathFollower mPathFollower;
+    private RamseteController mRamseteController;
+    private WheelProfile mWheelProfile; // being run by the Talons
     private Rotation2d mTargetHeading = new Rotation2d();
     private Path mCurrentPath = null;
     private NetworkTableEntry mVisionTargetAngleEntry = null;
     private boolean mIsOnTarget = false;
     private boolean mIsApproaching = false;
     private boolean mIsSaturated = false;
+    private boolean mLoggedUnderrun = false;
 
     // Logging
     private final ReflectingCSVWriter<PathFollower.DebugOutput> mCSVWriter;
@@ -124,7 +141,15 @@ public class Drive extends Subsystem
                     case POSITION_SETPOINT:
                         return;
                     case PATH_FOLLOWING:
-                        if (mPathFollower != null)
+                        if (mWheelProfile != null)
+                        {
+                            updateWheelProfile(timestamp);
+                        }
+                        else if (mRamseteController != null)
+                        {
+                            updateRamseteController(timestamp);
+                        }
+                        else if (mPathFollower != null)
                         {
                             updatePathFollower(timestamp);
                             mCSVWriter.add(mPathFollower.getDebug());
@@ -205,7 +230,9 @@ public class Drive extends Subsystem
         if (!this.isInitialized())
             return;
 
-        in.register(mLoop);
+        in.register(mLoop, Constants.kLooperDt, Looper.Priority.CRITICAL);
+        // path following reads the pose that the estimator writes
+        in.addDependency(RobotStateEstimator.getInstance(), mLoop);
     }
 
     /**
@@ -237,7 +264,12 @@ public class Drive extends Subsystem
         synchronized (this)
         {
             dashboardPutState(mDriveControlState.toString());
-            if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null)
+            if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mRamseteController != null)
+            {
+                dashboardPutNumber("CTE", mRamseteController.getCrossTrackError());
+                dashboardPutNumber("ATE", mRamseteController.getAlongTrackError());
+            }
+            else if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null)
             {
                 dashboardPutNumber("CTE", mPathFollower.getCrossTrackError());
                 dashboardPutNumber("ATE", mPathFollower.getAlongTrackError());
@@ -360,6 +392,7 @@ public class Drive extends Subsystem
         if (!this.isInitialized())
             return;
         logNotice("beginOpenLoop");
+        mWheelProfile = null; // nb: beginOpenLoop ends the Talons' profile
         mMotorGroup.beginOpenLoop(kOpenLoopRampRate, kOpenLoopNominalOutput, kOpenLoopPeakOutput);
         mMotorGroup.enableBraking(true); // drivers like to stop on a dime
         mDriveControlState = DriveControlState.OPEN_LOOP;
@@ -374,10 +407,11 @@ public class Drive extends Subsystem
     {
         if (!this.isInitialized())
             return;
-        if (!usesTalonVelocityControl(mDriveControlState))
+        if (!usesTalonVelocityControl(mDriveControlState) || mWheelProfile != null)
         {
             // We entered a velocity control state.
             logNotice("beginSpeedControl");
+            mWheelProfile = null; // ended by beginClosedLoopVelocity
             mMotorGroup.resetIntegralAccumulator();
             mMotorGroup.beginClosedLoopVelocity(kVelocityControlSlot,
                     Constants.kDriveHighGearNominalOutput);
@@ -396,6 +430,7 @@ public class Drive extends Subsystem
         {
             // We entered a position control state.
             logNotice("beginPositionControl");
+            mWheelProfile = null; // ended by beginClosedLoopPosition
             mMotorGroup.resetIntegralAccumulator();
             mMotorGroup.beginClosedLoopPosition(kPositionControlSlot,
                     Constants.kDriveLowGearNominalOutput,
@@ -503,7 +538,7 @@ public class Drive extends Subsystem
             return;
         // We need the field frame because mTargetHeading is specified in field coordinates, not robot ones
         final Rotation2d fieldToRobot =
-                mRobotState.getLatestFieldToVehicle().getValue().getRotation();
+                mRobotState.getLatestFieldToVehicle().getRotation();
         // Figure out the rotation necessary to turn to face the goal.
         final Rotation2d robotToTarget = fieldToRobot.inverse().rotateBy(mTargetHeading);
 
@@ -658,7 +693,7 @@ public class Drive extends Subsystem
     {
         if (!this.isInitialized())
             return;
-        RigidTransform2d robot_pose = mRobotState.getLatestFieldToVehicle().getValue();
+        RigidTransform2d robot_pose = mRobotState.getLatestFieldToVehicle();
         Twist2d command = mPathFollower.update(timestamp, robot_pose,
                 RobotState.getInstance().getDistanceDriven(),
                 RobotState.getInstance().getPredictedVelocity().dx);
@@ -674,6 +709,42 @@ public class Drive extends Subsystem
         }
     }
 
+    /**
+     * Called periodically when the robot is following a path with the
+     * RamseteController. Like updatePathFollower, but the controller only
+     * needs the latest pose.
+     */
+    private void updateRamseteController(double timestamp)
+    {
+        if (!this.isInitialized())
+            return;
+        Twist2d command = mRamseteController.update(timestamp, mRobotState.getLatestFieldToVehicle());
+        if (!mRamseteController.isFinished())
+        {
+            Kinematics.DriveVelocity setpoint = Kinematics.inverseKinematics(command);
+            updateVelocitySetpoint(setpoint.left, setpoint.right);
+        }
+        else
+        {
+            updateVelocitySetpoint(0, 0);
+        }
+    }
+
+    /**
+     * Called periodically while the Talons run a WheelProfile. There's
+     * nothing to command, we only report underruns.
+     */
+    private void updateWheelProfile(double timestamp)
+    {
+        if (!this.isInitialized())
+            return;
+        if (mMotorGroup.hasMotionProfileUnderrun() && !mLoggedUnderrun)
+        {
+            logWarning("drive motion profile underrun");
+            mLoggedUnderrun = true;
+        }
+    }
+
     public synchronized boolean isOnTarget()
     {
         // return true;
@@ -771,29 +842,113 @@ public class Drive extends Subsystem
         }
     }
 
+    /**
+     * @return the PathFollower tuning we drive paths with (also used by the
+     *         PathFollowerSimulator)
+     */
+    public static PathFollower.Parameters getPathFollowerParameters()
+    {
+        return new PathFollower.Parameters(
+                new Lookahead(Constants.kMinLookAhead, Constants.kMaxLookAhead,
+                        Constants.kMinLookAheadSpeed, Constants.kMaxLookAheadSpeed),
+                Constants.kInertiaSteeringGain, Constants.kPathFollowingProfileKp,
+                Constants.kPathFollowingProfileKi, Constants.kPathFollowingProfileKv,
+                Constants.kPathFollowingProfileKffv,
+                Constants.kPathFollowingProfileKffa,
+                Constants.kPathFollowingMaxVel, Constants.kPathFollowingMaxAccel,
+                Constants.kPathFollowingMaxJerk,
+                Constants.kPathFollowingGoalPosTolerance,
+                Constants.kPathFollowingGoalVelTolerance,
+                Constants.kPathStopSteeringDistance);
+    }
+
+    /**
+     * @return the RamseteController tuning we drive paths with
+     */
+    public static RamseteController.Parameters getRamseteParameters()
+    {
+        return new RamseteController.Parameters(Constants.kRamseteB, Constants.kRamseteZeta,
+                Constants.kPathFollowingGoalPosTolerance, Constants.kRamseteSettleTime);
+    }
+
     /**
      * Configures the drivebase to drive a path. Used for autonomous driving
      *
      * @see Path
      */
     public synchronized void setWantDrivePath(Path path, boolean reversed)
+    {
+        setWantDrivePath(path, reversed, PathController.PURE_PURSUIT);
+    }
+
+    /**
+     * Configures the drivebase to drive a path with the given controller.
+     * RAMSETE and TALON_PROFILE generate the path's Trajectory (and
+     * WheelProfile) here, which allocates in proportion to the path length,
+     * so auto should pass PathCache's precompiled ones to the overload below
+     * instead (see DrivePathAction).
+     *
+     * @see Path
+     * @see RamseteController
+     * @see WheelProfile
+     */
+    public void setWantDrivePath(Path path, boolean reversed, PathController controller)
+    {
+        // Generated outside the lock, so the loop isn't held up meanwhile.
+        Trajectory trajectory = null;
+        WheelProfile wheelProfile = null;
+        if (controller != PathController.PURE_PURSUIT)
+            trajectory = TrajectoryGenerator.generate(path, TrajectoryGenerator.Constraints.getDefault());
+        if (controller == PathController.TALON_PROFILE)
+            wheelProfile = new WheelProfile(path, trajectory, reversed, Constants.kTalonProfileDt);
+        setWantDrivePath(path, reversed, controller, trajectory, wheelProfile);
+    }
+
+    /**
+     * Configures the drivebase to drive a path with the given controller,
+     * using an already generated trajectory (RAMSETE) or wheel profile
+     * (TALON_PROFILE) for it. TALON_PROFILE streams the profile to the
+     * Talons, which run it using the motion profile gains.
+     *
+     * @param trajectory
+     *        path's Trajectory, only used by RAMSETE
+     * @param wheelProfile
+     *        path's WheelProfile, only used by TALON_PROFILE
+     */
+    public synchronized void setWantDrivePath(Path path, boolean reversed, PathController controller,
+            Trajectory trajectory, WheelProfile wheelProfile)
     {
         if (mCurrentPath != path || mDriveControlState != DriveControlState.PATH_FOLLOWING)
         {
-            configureTalonsForSpeedControl();
             RobotState.getInstance().resetDistanceDriven();
-            mPathFollower = new PathFollower(path, reversed,
-                    new PathFollower.Parameters(
-                            new Lookahead(Constants.kMinLookAhead, Constants.kMaxLookAhead,
-                                    Constants.kMinLookAheadSpeed, Constants.kMaxLookAheadSpeed),
-                            Constants.kInertiaSteeringGain, Constants.kPathFollowingProfileKp,
-                            Constants.kPathFollowingProfileKi, Constants.kPathFollowingProfileKv,
-                            Constants.kPathFollowingProfileKffv,
-                            Constants.kPathFollowingProfileKffa,
-                            Constants.kPathFollowingMaxVel, Constants.kPathFollowingMaxAccel,
-                            Constants.kPathFollowingGoalPosTolerance,
-                            Constants.kPathFollowingGoalVelTolerance,
-                            Constants.kPathStopSteeringDistance));
+            if (controller == PathController.TALON_PROFILE)
+            {
+                mPathFollower = null;
+                mRamseteController = null;
+                final int corners = TrajectoryGenerator.countCorners(path);
+                if (corners > 0)
+                {
+                    // Nothing corrects the heading after a turn in place.
+                    logWarning("path has " + corners + " radius 0 corners, the Talons will stop and turn in place");
+                }
+                mWheelProfile = wheelProfile;
+                logNotice("beginMotionProfile");
+                mLoggedUnderrun = false;
+                mMotorGroup.beginMotionProfile(kMotionProfileSlot, mWheelProfile);
+                mMotorGroup.enableBraking(true);
+            }
+            else if (controller == PathController.RAMSETE)
+            {
+                configureTalonsForSpeedControl();
+                mPathFollower = null;
+                mRamseteController = new RamseteController(path, trajectory, reversed, getRamseteParameters());
+            }
+            else
+            {
+                configureTalonsForSpeedControl();
+                mRamseteController = null;
+                mPathFollower = new PathFollower(path, reversed, getPathFollowerParameters());
+            }
             mDriveControlState = DriveControlState.PATH_FOLLOWING;
             mCurrentPath = path;
         }
@@ -805,7 +960,15 @@ public class Drive extends Subsystem
 
     public synchronized boolean isDoneWithPath()
     {
-        if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null)
+        if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mWheelProfile != null)
+        {
+            return mMotorGroup.isMotionProfileFinished();
+        }
+        else if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mRamseteController != null)
+        {
+            return mRamseteController.isFinished();
+        }
+        else if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null)
         {
             return mPathFollower.isFinished();
         }
@@ -818,7 +981,15 @@ public class Drive extends Subsystem
 
     public synchronized void forceDoneWithPath()
     {
-        if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null)
+        if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mWheelProfile != null)
+        {
+            mMotorGroup.endMotionProfile(); // neutral until the next command
+        }
+        else if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mRamseteController != null)
+        {
+            mRamseteController.forceFinish();
+        }
+        else if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null)
         {
             mPathFollower.forceFinish();
         }
@@ -848,7 +1019,15 @@ public class Drive extends Subsystem
 
     public synchronized boolean hasPassedMarker(String marker)
     {
-        if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null)
+        if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mWheelProfile != null)
+        {
+            return mWheelProfile.hasPassedMarker(marker, mMotorGroup.getMotionProfileTime());
+        }
+        else if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mRamseteController != null)
+        {
+            return mRamseteController.hasPassedMarker(marker);
+        }
+        else if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null)
         {
             return mPathFollower.hasPassedMarker(marker);
         }
@@ -859,7 +1038,7 @@ public class Drive extends Subsystem
         }
     }
 
-    // fill our two slots with gains...
+    // fill our three slots with gains...
     public synchronized void reloadGains()
     {
         if (mMotorGroup.isInitialized())
@@ -883,6 +1062,16 @@ public class Drive extends Subsystem
                     Constants.kDriveVelocityIZone, 
                     Constants.kDriveVelocityMaxIAccum,
                     Constants.kDriveVelocityRampRate);
+
+            mMotorGroup.reloadGains(kMotionProfileSlot,
+                    Constants.kDriveMotionProfileKp,
+                    Constants.kDriveMotionProfileKi,
+                    Constants.kDriveMotionProfileKd,
+                    Constants.kDriveMotionProfileKf, // left
+                    Constants.kDriveMotionProfileKf, // right
+                    Constants.kDriveMotionProfileIZone,
+                    0, // max integral accumulator, n/a
+                    Constants.kDriveMotionProfileRampRate);
             
             // old Kf notes (when we'd forgotten to set up correct initial pose):
             //      +1.05 on right at 10 ips is pretty good on the 2nd robot, 
@@ -891,6 +1080,7 @@ public class Drive extends Subsystem
             logNotice("reloaded PID gains");
             logDebug("reloaded position gains:" + mMotorGroup.dumpPIDState(kPositionControlSlot));
             logDebug("reloaded velocity gains:" + mMotorGroup.dumpPIDState(kVelocityControlSlot));
+            logDebug("reloaded motion profile gains:" + mMotorGroup.dumpPIDState(kMotionProfileSlot));
             // nb: motionMagic velocity and accel aren't slot-based, so should be established
             //   when we enter the control mode.
         }
@@ -375,7 +375,7 @@ public class Harvester extends Subsystem
     @Override
     public void registerEnabledLoops(Looper enabledLooper)
     {
-        enabledLooper.register(mLoop);
+        enabledLooper.register(mLoop, Constants.kLooperMechanismDt);
     }
 
     @Override
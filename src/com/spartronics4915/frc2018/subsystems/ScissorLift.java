@@ -271,7 +271,7 @@ public class ScissorLift extends Subsystem
     @Override
     public void registerEnabledLoops(Looper enabledLooper)
     {
-        enabledLooper.register(mLoop);
+        enabledLooper.register(mLoop, Constants.kLooperMechanismDt);
     }
 
     // based on the combination of wanted state, current state and the current potentiometer value,
@@ -1,5 +1,6 @@
 package com.spartronics4915.frc2018.subsystems;
 
+import com.spartronics4915.frc2018.Constants;
 import com.spartronics4915.frc2018.loops.Loop;
 import com.spartronics4915.frc2018.loops.Looper;
 import com.spartronics4915.lib.util.DriveSignal;
@@ -327,7 +328,7 @@ public class Superstructure extends Subsystem
     @Override
     public void registerEnabledLoops(Looper enabledLooper)
     {
-        enabledLooper.register(mLoop);
+        enabledLooper.register(mLoop, Constants.kLooperMechanismDt);
     }
 
     @Override
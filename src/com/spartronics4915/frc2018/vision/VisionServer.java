@@ -241,14 +241,7 @@ public class VisionServer extends CrashTrackingRunnable
             }
             finally
             {
-                try
-                {
-                    Thread.sleep(100);
-                }
-                catch (InterruptedException e)
-                {
-                    e.printStackTrace();
-                }
+                delay(0.1);
             }
         }
     }
@@ -276,16 +269,30 @@ public class VisionServer extends CrashTrackingRunnable
                     adb.restartApp();
                     mWantsAppRestart = false;
                 }
-                try
-                {
-                    Thread.sleep(200);
-                }
-                catch (InterruptedException e)
-                {
-                    e.printStackTrace();
-                }
+                delay(0.2);
+            }
+        }
+    }
+
+    // Timer.delay follows a VirtualTimer when one is installed, but
+    // needs a Timer implementation, which we don't have in java time mode.
+    private void delay(double seconds)
+    {
+        if (m_use_java_time)
+        {
+            try
+            {
+                Thread.sleep((long) (seconds * 1000));
+            }
+            catch (InterruptedException e)
+            {
+                e.printStackTrace();
             }
         }
+        else
+        {
+            Timer.delay(seconds);
+        }
     }
 
     private double getTimestamp()
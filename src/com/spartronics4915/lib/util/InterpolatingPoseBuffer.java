@@ -0,0 +1,283 @@
+package com.spartronics4915.lib.util;
+
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+
+/**
+ * A fixed-capacity history of timestamped poses, stored in primitive
+ * ring buffers (timestamp, x, y, cos, sin). It replaces an
+ * InterpolatingTreeMap<InterpolatingDouble, RigidTransform2d> for pose
+ * history: adding a pose doesn't allocate or rebalance anything and the
+ * oldest entry is dropped by bumping an index. Lookups binary search the
+ * timestamps and interpolate assuming constant curvature, exactly like
+ * RigidTransform2d.interpolate, but in primitive math.
+ *
+ * Poses are expected to arrive in timestamp order. An out-of-order pose
+ * is still inserted in the right place (at the cost of a shift), and a
+ * pose with an existing timestamp replaces it.
+ */
+public class InterpolatingPoseBuffer
+{
+
+    private static final double kEpsilon = 1E-9;
+
+    private final int mCapacity;
+    private final double[] mTimestamps;
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mCos;
+    private final double[] mSin;
+    private int mHead; // physical index of the oldest entry
+    private int mSize;
+    private RigidTransform2d mLatest; // newest pose as it was added
+
+    public InterpolatingPoseBuffer(int capacity)
+    {
+        mCapacity = capacity;
+        mTimestamps = new double[capacity];
+        mX = new double[capacity];
+        mY = new double[capacity];
+        mCos = new double[capacity];
+        mSin = new double[capacity];
+        clear();
+    }
+
+    public void clear()
+    {
+        mHead = 0;
+        mSize = 0;
+        mLatest = null;
+    }
+
+    public int size()
+    {
+        return mSize;
+    }
+
+    private int physical(int logical)
+    {
+        int i = mHead + logical;
+        return i >= mCapacity ? i - mCapacity : i;
+    }
+
+    private void set(int logical, double timestamp, double x, double y, double cos, double sin)
+    {
+        int p = physical(logical);
+        mTimestamps[p] = timestamp;
+        mX[p] = x;
+        mY[p] = y;
+        mCos[p] = cos;
+        mSin[p] = sin;
+    }
+
+    private void copy(int fromLogical, int toLogical)
+    {
+        int from = physical(fromLogical);
+        int to = physical(toLogical);
+        mTimestamps[to] = mTimestamps[from];
+        mX[to] = mX[from];
+        mY[to] = mY[from];
+        mCos[to] = mCos[from];
+        mSin[to] = mSin[from];
+    }
+
+    public void put(double timestamp, RigidTransform2d pose)
+    {
+        put(timestamp, pose.getTranslation().x(), pose.getTranslation().y(),
+                pose.getRotation().cos(), pose.getRotation().sin());
+        if (getLatestTimestamp() == timestamp)
+            mLatest = pose;
+    }
+
+    public void put(double timestamp, double x, double y, double cos, double sin)
+    {
+        if (mSize > 0 && timestamp <= getLatestTimestamp())
+        {
+            insertOutOfOrder(timestamp, x, y, cos, sin);
+            return;
+        }
+        if (mSize == mCapacity)
+        {
+            // drop the oldest entry
+            mHead = physical(1);
+            mSize--;
+        }
+        mSize++;
+        set(mSize - 1, timestamp, x, y, cos, sin);
+        mLatest = null;
+    }
+
+    private void insertOutOfOrder(double timestamp, double x, double y, double cos, double sin)
+    {
+        int i = floorIndex(timestamp);
+        if (i >= 0 && mTimestamps[physical(i)] == timestamp)
+        {
+            set(i, timestamp, x, y, cos, sin);
+            if (i == mSize - 1)
+                mLatest = null;
+            return;
+        }
+        if (mSize == mCapacity)
+        {
+            if (i < 0)
+                return; // older than everything we are keeping
+            mHead = physical(1);
+            mSize--;
+            i--;
+        }
+        mSize++;
+        for (int j = mSize - 1; j > i + 1; j--)
+        {
+            copy(j - 1, j);
+        }
+        set(i + 1, timestamp, x, y, cos, sin);
+    }
+
+    /**
+     * @return the logical index of the newest entry at or before timestamp,
+     *         or -1 if timestamp precedes every entry.
+     */
+    private int floorIndex(double timestamp)
+    {
+        int lo = 0;
+        int hi = mSize - 1;
+        int result = -1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (mTimestamps[physical(mid)] <= timestamp)
+            {
+                result = mid;
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    public double getLatestTimestamp()
+    {
+        return mTimestamps[physical(mSize - 1)];
+    }
+
+    /**
+     * @return the newest pose, or null if empty. Doesn't allocate when
+     *         the newest pose was added as a RigidTransform2d.
+     */
+    public RigidTransform2d getLatest()
+    {
+        if (mSize == 0)
+            return null;
+        if (mLatest == null)
+        {
+            int p = physical(mSize - 1);
+            mLatest = new RigidTransform2d(new Translation2d(mX[p], mY[p]),
+                    new Rotation2d(mCos[p], mSin[p], false));
+        }
+        return mLatest;
+    }
+
+    /**
+     * Interpolates the pose at timestamp into out, as {x, y, cos, sin}.
+     * Timestamps outside the buffer return the nearest entry.
+     *
+     * @return false if the buffer is empty
+     */
+    public boolean getInterpolated(double timestamp, double[] out)
+    {
+        if (mSize == 0)
+            return false;
+        int i = floorIndex(timestamp);
+        if (i < 0)
+            i = 0;
+        int a = physical(i);
+        if (i == mSize - 1 || mTimestamps[a] >= timestamp)
+        {
+            out[0] = mX[a];
+            out[1] = mY[a];
+            out[2] = mCos[a];
+            out[3] = mSin[a];
+            return true;
+        }
+        int b = physical(i + 1);
+        double f = (timestamp - mTimestamps[a]) / (mTimestamps[b] - mTimestamps[a]);
+        interpolate(mX[a], mY[a], mCos[a], mSin[a], mX[b], mY[b], mCos[b], mSin[b], f, out);
+        return true;
+    }
+
+    /**
+     * @return the pose at timestamp, or null if the buffer is empty
+     */
+    public RigidTransform2d getInterpolated(double timestamp)
+    {
+        double[] out = new double[4];
+        if (!getInterpolated(timestamp, out))
+            return null;
+        return new RigidTransform2d(new Translation2d(out[0], out[1]), new Rotation2d(out[2], out[3], false));
+    }
+
+    /**
+     * Primitive version of a.transformBy(exp(log(a.inverse().transformBy(b))
+     * .scaled(f))), the constant curvature interpolation used by
+     * RigidTransform2d.
+     */
+    static void interpolate(double xa, double ya, double ca, double sa,
+            double xb, double yb, double cb, double sb, double f, double[] out)
+    {
+        // relative transform a^-1 * b
+        double dx = xb - xa;
+        double dy = yb - ya;
+        double rx = ca * dx + sa * dy;
+        double ry = -sa * dx + ca * dy;
+        double rc = ca * cb + sa * sb;
+        double rs = ca * sb - sa * cb;
+
+        // log
+        double dtheta = Math.atan2(rs, rc);
+        double half_dtheta = 0.5 * dtheta;
+        double cos_minus_one = rc - 1.0;
+        double h;
+        if (Math.abs(cos_minus_one) < kEpsilon)
+            h = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        else
+            h = -(half_dtheta * rs) / cos_minus_one;
+        double tx = (rx * h + ry * half_dtheta) * f;
+        double ty = (-rx * half_dtheta + ry * h) * f;
+        double theta = dtheta * f;
+
+        // exp
+        double sin_theta = Math.sin(theta);
+        double cos_theta = Math.cos(theta);
+        double s, c;
+        if (Math.abs(theta) < kEpsilon)
+        {
+            s = 1.0 - 1.0 / 6.0 * theta * theta;
+            c = .5 * theta;
+        }
+        else
+        {
+            s = sin_theta / theta;
+            c = (1.0 - cos_theta) / theta;
+        }
+        double ex = tx * s - ty * c;
+        double ey = tx * c + ty * s;
+
+        // a * exp
+        out[0] = xa + ca * ex - sa * ey;
+        out[1] = ya + sa * ex + ca * ey;
+        double oc = ca * cos_theta - sa * sin_theta;
+        double os = sa * cos_theta + ca * sin_theta;
+        double mag = Math.hypot(oc, os);
+        if (mag > kEpsilon)
+        {
+            oc /= mag;
+            os /= mag;
+        }
+        out[2] = oc;
+        out[3] = os;
+    }
+}
@@ -0,0 +1,356 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * Extended Kalman filter over a 2d pose (x, y, theta) for a robot whose
+ * motion is measured by odometry and whose pose is occasionally observed
+ * directly (eg: by vision against known field features).
+ *
+ * predict() applies an odometry delta (a twist in the robot frame, as
+ * produced by Kinematics.forwardKinematics) and grows the covariance in
+ * proportion to the distance and angle moved. correct() fuses a pose
+ * observation taken at some earlier capture time: the filter rewinds to
+ * the state at that time, applies the update, then replays the buffered
+ * odometry deltas to bring the estimate back to the present. The corrected
+ * history can be read back so callers can rewrite their own pose buffers.
+ *
+ * All state lives in preallocated primitive arrays, so neither predict
+ * nor correct allocates.
+ */
+public class PoseKalmanFilter
+{
+
+    private static final double kEpsilon = 1E-9;
+
+    private final double mTransVariancePerInch;
+    private final double mRotVariancePerRadian;
+
+    // history ring, one entry per predict (plus the reset entry). Each
+    // entry holds the odometry delta that produced it and the posterior
+    // state and covariance after applying it.
+    private final int mCapacity;
+    private final double[] mTimestamps;
+    private final double[] mDeltaX;
+    private final double[] mDeltaY;
+    private final double[] mDeltaTheta;
+    private final double[] mStateX;
+    private final double[] mStateY;
+    private final double[] mStateTheta;
+    private final double[] mCovariance; // 9 per entry, row major
+    private int mHead;
+    private int mSize;
+
+    // current estimate
+    private double mX, mY, mTheta;
+    private final double[] mP = new double[9];
+
+    // scratch
+    private final double[] mS = new double[9];
+    private final double[] mSInv = new double[9];
+    private final double[] mK = new double[9];
+    private final double[] mTmp = new double[9];
+
+    /**
+     * @param historySize number of odometry updates that can be replayed,
+     *            which bounds how late a correction can arrive.
+     * @param transVariancePerInch position variance (in^2) added per inch
+     *            driven
+     * @param rotVariancePerRadian heading variance (rad^2) added per radian
+     *            turned
+     */
+    public PoseKalmanFilter(int historySize, double transVariancePerInch, double rotVariancePerRadian)
+    {
+        mCapacity = historySize;
+        mTransVariancePerInch = transVariancePerInch;
+        mRotVariancePerRadian = rotVariancePerRadian;
+        mTimestamps = new double[historySize];
+        mDeltaX = new double[historySize];
+        mDeltaY = new double[historySize];
+        mDeltaTheta = new double[historySize];
+        mStateX = new double[historySize];
+        mStateY = new double[historySize];
+        mStateTheta = new double[historySize];
+        mCovariance = new double[historySize * 9];
+        reset(0, 0, 0, 0);
+    }
+
+    /**
+     * Resets to a known pose with zero uncertainty.
+     */
+    public void reset(double timestamp, double x, double y, double theta)
+    {
+        mHead = 0;
+        mSize = 0;
+        mX = x;
+        mY = y;
+        mTheta = theta;
+        for (int i = 0; i < 9; i++)
+            mP[i] = 0.0;
+        record(timestamp, 0, 0, 0);
+    }
+
+    public void predict(double timestamp, double dx, double dy, double dtheta)
+    {
+        propagate(dx, dy, dtheta);
+        record(timestamp, dx, dy, dtheta);
+    }
+
+    /**
+     * Fuses a pose observation captured at timestamp.
+     *
+     * @param variancePosition variance (in^2) of the observed x and y
+     * @param varianceTheta variance (rad^2) of the observed heading
+     * @return false if the capture time is older than the history we keep,
+     *         in which case the observation is ignored.
+     */
+    public boolean correct(double timestamp, double x, double y, double theta,
+            double variancePosition, double varianceTheta)
+    {
+        int k = floorIndex(timestamp);
+        if (k < 0)
+            return false;
+
+        restore(k);
+        update(x, y, theta, variancePosition, varianceTheta);
+        store(k);
+        for (int i = k + 1; i < mSize; i++)
+        {
+            int p = physical(i);
+            propagate(mDeltaX[p], mDeltaY[p], mDeltaTheta[p]);
+            store(i);
+        }
+        return true;
+    }
+
+    public double getX()
+    {
+        return mX;
+    }
+
+    public double getY()
+    {
+        return mY;
+    }
+
+    public double getTheta()
+    {
+        return mTheta;
+    }
+
+    /**
+     * @param row in x, y, theta order
+     * @param col in x, y, theta order
+     */
+    public double getCovariance(int row, int col)
+    {
+        return mP[row * 3 + col];
+    }
+
+    /**
+     * History accessors, in timestamp order, oldest first. Used to rewrite
+     * downstream pose histories after a correction.
+     */
+    public int getHistorySize()
+    {
+        return mSize;
+    }
+
+    public double getHistoryTimestamp(int i)
+    {
+        return mTimestamps[physical(i)];
+    }
+
+    /**
+     * @param out receives {x, y, theta}
+     */
+    public void getHistoryState(int i, double[] out)
+    {
+        int p = physical(i);
+        out[0] = mStateX[p];
+        out[1] = mStateY[p];
+        out[2] = mStateTheta[p];
+    }
+
+    /**
+     * @return index of the newest history entry at or before timestamp, or
+     *         -1 if there is none.
+     */
+    public int floorIndex(double timestamp)
+    {
+        int lo = 0;
+        int hi = mSize - 1;
+        int result = -1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (mTimestamps[physical(mid)] <= timestamp)
+            {
+                result = mid;
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private int physical(int logical)
+    {
+        int i = mHead + logical;
+        return i >= mCapacity ? i - mCapacity : i;
+    }
+
+    private void record(double timestamp, double dx, double dy, double dtheta)
+    {
+        if (mSize == mCapacity)
+        {
+            mHead = physical(1);
+            mSize--;
+        }
+        mSize++;
+        int p = physical(mSize - 1);
+        mTimestamps[p] = timestamp;
+        mDeltaX[p] = dx;
+        mDeltaY[p] = dy;
+        mDeltaTheta[p] = dtheta;
+        store(mSize - 1);
+    }
+
+    private void store(int logical)
+    {
+        int p = physical(logical);
+        mStateX[p] = mX;
+        mStateY[p] = mY;
+        mStateTheta[p] = mTheta;
+        System.arraycopy(mP, 0, mCovariance, p * 9, 9);
+    }
+
+    private void restore(int logical)
+    {
+        int p = physical(logical);
+        mX = mStateX[p];
+        mY = mStateY[p];
+        mTheta = mStateTheta[p];
+        System.arraycopy(mCovariance, p * 9, mP, 0, 9);
+    }
+
+    // state = state * exp(delta), P = F P F^T + Q
+    private void propagate(double dx, double dy, double dtheta)
+    {
+        double s, c;
+        if (Math.abs(dtheta) < kEpsilon)
+        {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = .5 * dtheta;
+        }
+        else
+        {
+            s = Math.sin(dtheta) / dtheta;
+            c = (1.0 - Math.cos(dtheta)) / dtheta;
+        }
+        double ex = dx * s - dy * c;
+        double ey = dx * c + dy * s;
+        double cos = Math.cos(mTheta);
+        double sin = Math.sin(mTheta);
+        double fieldDx = cos * ex - sin * ey;
+        double fieldDy = sin * ex + cos * ey;
+        mX += fieldDx;
+        mY += fieldDy;
+        mTheta = normalizeAngle(mTheta + dtheta);
+
+        // F = [[1, 0, -fieldDy], [0, 1, fieldDx], [0, 0, 1]]
+        double a = -fieldDy;
+        double b = fieldDx;
+        double[] p = mP;
+        // FP
+        double fp0 = p[0] + a * p[6], fp1 = p[1] + a * p[7], fp2 = p[2] + a * p[8];
+        double fp3 = p[3] + b * p[6], fp4 = p[4] + b * p[7], fp5 = p[5] + b * p[8];
+        // (FP)F^T
+        p[0] = fp0 + fp2 * a;
+        p[1] = fp1 + fp2 * b;
+        p[3] = fp3 + fp5 * a;
+        p[4] = fp4 + fp5 * b;
+        p[2] = fp2;
+        p[5] = fp5;
+        p[6] = fp2; // symmetric
+        p[7] = fp5;
+
+        double dist = Math.hypot(dx, dy);
+        p[0] += mTransVariancePerInch * dist;
+        p[4] += mTransVariancePerInch * dist;
+        p[8] += mRotVariancePerRadian * Math.abs(dtheta);
+    }
+
+    // measurement z = state + noise (H = I)
+    private void update(double zx, double zy, double ztheta, double varPos, double varTheta)
+    {
+        System.arraycopy(mP, 0, mS, 0, 9);
+        mS[0] += varPos;
+        mS[4] += varPos;
+        mS[8] += varTheta;
+        if (!invert3x3(mS, mSInv))
+            return;
+        multiply3x3(mP, mSInv, mK);
+
+        double ix = zx - mX;
+        double iy = zy - mY;
+        double itheta = normalizeAngle(ztheta - mTheta);
+        mX += mK[0] * ix + mK[1] * iy + mK[2] * itheta;
+        mY += mK[3] * ix + mK[4] * iy + mK[5] * itheta;
+        mTheta = normalizeAngle(mTheta + mK[6] * ix + mK[7] * iy + mK[8] * itheta);
+
+        // P = (I - K) P
+        for (int i = 0; i < 9; i++)
+            mTmp[i] = -mK[i];
+        mTmp[0] += 1;
+        mTmp[4] += 1;
+        mTmp[8] += 1;
+        multiply3x3(mTmp, mP, mS);
+        // symmetrize to keep rounding from accumulating
+        for (int r = 0; r < 3; r++)
+        {
+            for (int col = 0; col < 3; col++)
+            {
+                mP[r * 3 + col] = 0.5 * (mS[r * 3 + col] + mS[col * 3 + r]);
+            }
+        }
+    }
+
+    private static void multiply3x3(double[] a, double[] b, double[] out)
+    {
+        for (int r = 0; r < 3; r++)
+        {
+            for (int c = 0; c < 3; c++)
+            {
+                out[r * 3 + c] = a[r * 3] * b[c] + a[r * 3 + 1] * b[3 + c] + a[r * 3 + 2] * b[6 + c];
+            }
+        }
+    }
+
+    private static boolean invert3x3(double[] m, double[] out)
+    {
+        double c0 = m[4] * m[8] - m[5] * m[7];
+        double c1 = m[5] * m[6] - m[3] * m[8];
+        double c2 = m[3] * m[7] - m[4] * m[6];
+        double det = m[0] * c0 + m[1] * c1 + m[2] * c2;
+        if (Math.abs(det) < kEpsilon * kEpsilon)
+            return false;
+        double inv = 1.0 / det;
+        out[0] = c0 * inv;
+        out[1] = (m[2] * m[7] - m[1] * m[8]) * inv;
+        out[2] = (m[1] * m[5] - m[2] * m[4]) * inv;
+        out[3] = c1 * inv;
+        out[4] = (m[0] * m[8] - m[2] * m[6]) * inv;
+        out[5] = (m[2] * m[3] - m[0] * m[5]) * inv;
+        out[6] = c2 * inv;
+        out[7] = (m[1] * m[6] - m[0] * m[7]) * inv;
+        out[8] = (m[0] * m[4] - m[1] * m[3]) * inv;
+        return true;
+    }
+
+    private static double normalizeAngle(double theta)
+    {
+        return Math.atan2(Math.sin(theta), Math.cos(theta));
+    }
+}
@@ -0,0 +1,111 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * Fixed-bucket histogram of durations (in seconds). All storage is
+ * allocated up front so addSample can be called from inside a control
+ * loop without generating garbage. Samples larger than the histogram
+ * range land in the last bucket, but the true max is still tracked.
+ */
+public class TimingHistogram
+{
+
+    private final double mBucketWidth;
+    private final int[] mCounts;
+    private int mNumSamples;
+    private double mSum;
+    private double mMax;
+
+    /**
+     * @param bucketWidth width of each bucket in seconds
+     * @param numBuckets number of buckets, so range is bucketWidth * numBuckets
+     */
+    public TimingHistogram(double bucketWidth, int numBuckets)
+    {
+        mBucketWidth = bucketWidth;
+        mCounts = new int[numBuckets];
+        clear();
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < mCounts.length; i++)
+        {
+            mCounts[i] = 0;
+        }
+        mNumSamples = 0;
+        mSum = 0.0;
+        mMax = 0.0;
+    }
+
+    public void addSample(double seconds)
+    {
+        int bucket = (int) (seconds / mBucketWidth);
+        if (bucket < 0)
+            bucket = 0;
+        else if (bucket >= mCounts.length)
+            bucket = mCounts.length - 1;
+        mCounts[bucket]++;
+        mNumSamples++;
+        mSum += seconds;
+        if (seconds > mMax)
+            mMax = seconds;
+    }
+
+    /**
+     * Copies the contents of other into this histogram. Used to take a
+     * snapshot of a histogram that is being written by another thread,
+     * so the caller should hold whatever lock guards other.
+     */
+    public void copyFrom(TimingHistogram other)
+    {
+        int n = Math.min(mCounts.length, other.mCounts.length);
+        System.arraycopy(other.mCounts, 0, mCounts, 0, n);
+        mNumSamples = other.mNumSamples;
+        mSum = other.mSum;
+        mMax = other.mMax;
+    }
+
+    public int getNumSamples()
+    {
+        return mNumSamples;
+    }
+
+    public double getMax()
+    {
+        return mMax;
+    }
+
+    public double getMean()
+    {
+        if (mNumSamples == 0)
+            return 0.0;
+        return mSum / mNumSamples;
+    }
+
+    /**
+     * @param fraction in the range [0, 1], eg: .99 for the 99th percentile
+     * @return the upper edge of the bucket containing the requested
+     *         percentile, clamped to the observed max.
+     */
+    public double getPercentile(double fraction)
+    {
+        if (mNumSamples == 0)
+            return 0.0;
+        int threshold = (int) Math.ceil(fraction * mNumSamples);
+        if (threshold < 1)
+            threshold = 1;
+        int accum = 0;
+        for (int i = 0; i < mCounts.length; i++)
+        {
+            accum += mCounts[i];
+            if (accum >= threshold)
+            {
+                // the last bucket also holds everything past the range
+                if (i == mCounts.length - 1)
+                    return mMax;
+                return Math.min((i + 1) * mBucketWidth, mMax);
+            }
+        }
+        return mMax;
+    }
+}
@@ -16,6 +16,8 @@ import edu.wpi.first.wpilibj.Timer;
 public class Util
 {
 
+    private static String sGameSpecificMessage = null; // overrides the DriverStation
+
     /** Prevent this class from being instantiated. */
     private Util()
     {
@@ -76,8 +78,20 @@ public class Util
         return result;
     }
     
+    /**
+     * Supplies the game specific message when there is no DriverStation,
+     * eg: when running an auto mode on a VirtualTimer. null reverts to the
+     * DriverStation.
+     */
+    public static void setGameSpecificMessage(String msg)
+    {
+        sGameSpecificMessage = msg;
+    }
+
     public static String getGameSpecificMessage()
     {
+        if (sGameSpecificMessage != null)
+            return sGameSpecificMessage;
         Timer t = new Timer();
         String result = "";
         DriverStation ds = DriverStation.getInstance();
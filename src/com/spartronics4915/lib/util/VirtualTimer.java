@@ -0,0 +1,177 @@
+package com.spartronics4915.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * A Timer implementation driven by a virtual clock rather than the FPGA.
+ * Once installed, every Timer.getFPGATimestamp, Timer.delay and Timer
+ * instance in the robot code reads virtual time, which only moves when
+ * advance is called. Combined with Looper.step this lets us run the
+ * control stack (loops, auto modes and their actions) as fast as the CPU
+ * allows, eg: a full 15 second autonomous in a fraction of a second on a
+ * dev box.
+ *
+ * Threads blocked in Timer.delay wake up once the virtual clock passes
+ * their deadline. A thread stepping the clock can use awaitDelayed to
+ * wait for them to park again, so they don't fall behind virtual time.
+ */
+public class VirtualTimer implements Timer.StaticInterface
+{
+
+    private double mTimestamp;
+    private final List<Double> mDeadlines = new ArrayList<>(); // threads in delay
+
+    public VirtualTimer()
+    {
+        this(0.0);
+    }
+
+    public VirtualTimer(double startTimestamp)
+    {
+        mTimestamp = startTimestamp;
+    }
+
+    /**
+     * Routes all of WPILib's Timer calls through this clock. Note that
+     * RobotBase installs the hardware timer when it is constructed, so
+     * this must be called afterwards (or without a RobotBase at all).
+     */
+    public void install()
+    {
+        Timer.SetImplementation(this);
+    }
+
+    public synchronized void advance(double dt)
+    {
+        mTimestamp += dt;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized double getFPGATimestamp()
+    {
+        return mTimestamp;
+    }
+
+    @Override
+    public double getMatchTime()
+    {
+        return -1.0; // no field connection
+    }
+
+    @Override
+    public synchronized void delay(double seconds)
+    {
+        Double wakeTime = mTimestamp + seconds;
+        mDeadlines.add(wakeTime);
+        notifyAll(); // for awaitDelayed
+        try
+        {
+            while (mTimestamp < wakeTime)
+                wait();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            mDeadlines.remove(wakeTime);
+        }
+    }
+
+    /**
+     * Waits (in real time) until at least numThreads threads are blocked in
+     * delay with a deadline still ahead of the virtual clock.
+     * @return false if that didn't happen within timeoutSeconds
+     */
+    public synchronized boolean awaitDelayed(int numThreads, double timeoutSeconds)
+    {
+        long deadline = System.nanoTime() + (long) (timeoutSeconds * 1e9);
+        while (getNumDelayed() < numThreads)
+        {
+            long remaining = (deadline - System.nanoTime()) / 1000000;
+            if (remaining <= 0)
+                return false;
+            try
+            {
+                wait(remaining);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getNumDelayed()
+    {
+        int n = 0;
+        for (int i = 0; i < mDeadlines.size(); i++)
+        {
+            if (mDeadlines.get(i) > mTimestamp)
+                n++;
+        }
+        return n;
+    }
+
+    @Override
+    public Timer.Interface newTimer()
+    {
+        return new Timer.Interface()
+        {
+
+            private double mStartTime = getFPGATimestamp();
+            private double mAccumulatedTime = 0.0;
+            private boolean mRunning = false;
+
+            @Override
+            public synchronized double get()
+            {
+                if (mRunning)
+                    return mAccumulatedTime + getFPGATimestamp() - mStartTime;
+                return mAccumulatedTime;
+            }
+
+            @Override
+            public synchronized void reset()
+            {
+                mAccumulatedTime = 0.0;
+                mStartTime = getFPGATimestamp();
+            }
+
+            @Override
+            public synchronized void start()
+            {
+                mStartTime = getFPGATimestamp();
+                mRunning = true;
+            }
+
+            @Override
+            public synchronized void stop()
+            {
+                mAccumulatedTime = get();
+                mRunning = false;
+            }
+
+            @Override
+            public synchronized boolean hasPeriodPassed(double period)
+            {
+                if (get() > period)
+                {
+                    // advance the start time by the period, like the
+                    // hardware timer, so the next period is measured
+                    // from the end of this one
+                    mStartTime += period;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+}
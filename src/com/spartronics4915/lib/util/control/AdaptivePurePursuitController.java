@@ -1,7 +1,6 @@
 package com.spartronics4915.lib.util.control;
 
 import com.spartronics4915.lib.util.math.RigidTransform2d;
-import com.spartronics4915.lib.util.math.Rotation2d;
 import com.spartronics4915.lib.util.math.Translation2d;
 import com.spartronics4915.lib.util.math.Twist2d;
 
@@ -22,6 +21,7 @@ public class AdaptivePurePursuitController
 {
 
     private static final double kReallyBigNumber = 1E6;
+    private static final double kEpsilon = 1E-9;
 
     public static class Command
     {
@@ -32,6 +32,7 @@ public class AdaptivePurePursuitController
         public double end_velocity;
         public Translation2d lookahead_point;
         public double remaining_path_length;
+        public int path_segment; // the segment we're tracking, see Path.TargetPointReport
 
         public Command()
         {
@@ -54,6 +55,10 @@ public class AdaptivePurePursuitController
     final boolean mReversed;
     final Lookahead mLookahead;
 
+    // scratch for update(), so steering doesn't allocate per call
+    private final RigidTransform2d mReversedPose = new RigidTransform2d();
+    private final Arc mArc = new Arc();
+
     public AdaptivePurePursuitController(Path path, boolean reversed, Lookahead lookahead)
     {
         mPath = path;
@@ -73,19 +78,22 @@ public class AdaptivePurePursuitController
     {
         if (mReversed)
         {
-            pose = new RigidTransform2d(pose.getTranslation(),
-                    pose.getRotation().rotateBy(Rotation2d.fromRadians(Math.PI)));
+            // rotate by pi
+            pose = mReversedPose.set(pose.getTranslation().x(), pose.getTranslation().y(),
+                    -pose.getRotation().cos(), -pose.getRotation().sin());
         }
 
         final Path.TargetPointReport report = mPath.getTargetPoint(pose.getTranslation(), mLookahead);
         if (isFinished())
         {
             // Stop.
-            return new Command(Twist2d.identity(), report.closest_point_distance, report.max_speed, 0.0,
+            Command stop = new Command(Twist2d.identity(), report.closest_point_distance, report.max_speed, 0.0,
                     report.lookahead_point, report.remaining_path_distance);
+            stop.path_segment = report.closest_segment;
+            return stop;
         }
 
-        final Arc arc = new Arc(pose, report.lookahead_point);
+        final Arc arc = mArc.set(pose, report.lookahead_point);
         double scale_factor = 1.0;
         // Ensure we don't overshoot the end of the path (once the lookahead speed drops to zero).
         if (report.lookahead_point_speed < 1E-6 && report.remaining_path_distance < arc.length)
@@ -102,12 +110,24 @@ public class AdaptivePurePursuitController
             scale_factor *= -1;
         }
 
-        return new Command(
+        Command rv = new Command(
                 new Twist2d(scale_factor * arc.length, 0.0,
                         arc.length * getDirection(pose, report.lookahead_point) * Math.abs(scale_factor) / arc.radius),
                 report.closest_point_distance, report.max_speed,
                 report.lookahead_point_speed * Math.signum(scale_factor), report.lookahead_point,
                 report.remaining_path_distance);
+        rv.path_segment = report.closest_segment;
+        return rv;
+    }
+
+    /**
+     * Tracks the robot along the path (crossing its markers) without
+     * steering, for a robot still coasting in after isFinished.
+     */
+    public void updateProgress(RigidTransform2d pose)
+    {
+        if (mPath.getRemainingSegmentCount() > 0)
+            mPath.getTargetPoint(pose.getTranslation(), mLookahead);
     }
 
     public boolean hasPassedMarker(String marker)
@@ -115,18 +135,35 @@ public class AdaptivePurePursuitController
         return mPath.hasPassedMarker(marker);
     }
 
+    /**
+     * The arc joining the robot pose and the lookahead point. Arcs can be
+     * reused via set() so computing one per update doesn't allocate.
+     */
     public static class Arc
     {
 
-        public Translation2d center;
+        public Translation2d center = new Translation2d();
         public double radius;
         public double length;
 
+        public Arc()
+        {
+        }
+
         public Arc(RigidTransform2d pose, Translation2d point)
         {
-            center = getCenter(pose, point);
-            radius = new Translation2d(center, point).norm();
+            set(pose, point);
+        }
+
+        /**
+         * @return this
+         */
+        public Arc set(RigidTransform2d pose, Translation2d point)
+        {
+            computeCenter(pose, point, center);
+            radius = Math.hypot(point.x() - center.x(), point.y() - center.y());
             length = getLength(pose, point, center, radius);
+            return this;
         }
     }
 
@@ -141,17 +178,38 @@ public class AdaptivePurePursuitController
      */
     public static Translation2d getCenter(RigidTransform2d pose, Translation2d point)
     {
-        final Translation2d poseToPointHalfway = pose.getTranslation().interpolate(point, 0.5);
-        final Rotation2d normal = pose.getTranslation().inverse().translateBy(poseToPointHalfway).direction().normal();
-        final RigidTransform2d perpendicularBisector = new RigidTransform2d(poseToPointHalfway, normal);
-        final RigidTransform2d normalFromPose = new RigidTransform2d(pose.getTranslation(),
-                pose.getRotation().normal());
-        if (normalFromPose.isColinear(perpendicularBisector.normal()))
+        return computeCenter(pose, point, new Translation2d());
+    }
+
+    /**
+     * The center lies on the line through the pose normal to its heading, at
+     * signed distance t where |t| is also the distance to point:
+     * t = |d|^2 / (2 * (normal . d)) with d = point - pose. If point is
+     * straight ahead (or behind) the circle is a line and the center is at
+     * infinity; if point is at the robot the center is the robot.
+     */
+    private static Translation2d computeCenter(RigidTransform2d pose, Translation2d point, Translation2d out)
+    {
+        final double px = pose.getTranslation().x();
+        final double py = pose.getTranslation().y();
+        final double dx = point.x() - px;
+        final double dy = point.y() - py;
+        final double nx = -pose.getRotation().sin();
+        final double ny = pose.getRotation().cos();
+        final double norm2 = dx * dx + dy * dy;
+        final double normal_dot_d = nx * dx + ny * dy;
+        if (norm2 < kEpsilon)
+        {
+            // Point is at the robot.
+            return out.set(px, py);
+        }
+        if (Math.abs(normal_dot_d) < kEpsilon * Math.sqrt(norm2))
         {
-            // Special case: center is poseToPointHalfway.
-            return poseToPointHalfway;
+            // Lines are parallel.
+            return out.set(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
         }
-        return normalFromPose.intersection(perpendicularBisector);
+        final double t = norm2 / (2.0 * normal_dot_d);
+        return out.set(px + nx * t, py + ny * t);
     }
 
     /**
@@ -188,21 +246,26 @@ public class AdaptivePurePursuitController
 
     public static double getLength(RigidTransform2d pose, Translation2d point, Translation2d center, double radius)
     {
+        final double px = pose.getTranslation().x();
+        final double py = pose.getTranslation().y();
         if (radius < kReallyBigNumber)
         {
-            final Translation2d centerToPoint = new Translation2d(center, point);
-            final Translation2d centerToPose = new Translation2d(center, pose.getTranslation());
+            final double ctpx = point.x() - center.x();
+            final double ctpy = point.y() - center.y();
+            final double ctrx = px - center.x();
+            final double ctry = py - center.y();
             // If the point is behind pose, we want the opposite of this angle. To determine if the point is behind,
             // check the sign of the cross-product between the normal vector and the vector from pose to point.
-            final boolean behind = Math.signum(
-                    Translation2d.cross(pose.getRotation().normal().toTranslation(),
-                            new Translation2d(pose.getTranslation(), point))) > 0.0;
-            final Rotation2d angle = Translation2d.getAngle(centerToPose, centerToPoint);
-            return radius * (behind ? 2.0 * Math.PI - Math.abs(angle.getRadians()) : Math.abs(angle.getRadians()));
+            // normal x (point - pose) reduces to -(heading . (point - pose)).
+            final boolean behind = -(pose.getRotation().cos() * (point.x() - px)
+                    + pose.getRotation().sin() * (point.y() - py)) > 0.0;
+            double cos_angle = (ctrx * ctpx + ctry * ctpy) / (Math.hypot(ctrx, ctry) * Math.hypot(ctpx, ctpy));
+            final double angle = Double.isNaN(cos_angle) ? 0.0 : Math.acos(Math.min(1.0, Math.max(cos_angle, -1.0)));
+            return radius * (behind ? 2.0 * Math.PI - angle : angle);
         }
         else
         {
-            return new Translation2d(pose.getTranslation(), point).norm();
+            return Math.hypot(point.x() - px, point.y() - py);
         }
     }
 
@@ -217,9 +280,9 @@ public class AdaptivePurePursuitController
      */
     public static int getDirection(RigidTransform2d pose, Translation2d point)
     {
-        Translation2d poseToPoint = new Translation2d(pose.getTranslation(), point);
-        Translation2d robot = pose.getRotation().toTranslation();
-        double cross = robot.x() * poseToPoint.y() - robot.y() * poseToPoint.x();
+        final double dx = point.x() - pose.getTranslation().x();
+        final double dy = point.y() - pose.getTranslation().y();
+        double cross = pose.getRotation().cos() * dy - pose.getRotation().sin() * dx;
         return (cross < 0) ? -1 : 1; // if robot < pose turn left
     }
 
@@ -5,6 +5,7 @@ import java.util.HashSet;
 import java.util.List;
 
 import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.lib.util.math.Rotation2d;
 import com.spartronics4915.lib.util.math.Translation2d;
 import com.spartronics4915.lib.util.motion.MotionState;
 
@@ -24,6 +25,15 @@ public class Path
     List<PathSegment> segments;
     PathSegment prevSegment;
     HashSet<String> mMarkersCrossed = new HashSet<String>();
+    private final Translation2d mScratchPoint = new Translation2d();
+
+    // Segments are never removed from the list, retiring one just bumps
+    // mCurrentSegment. mSegmentEnds[i] is the arc length from the start of
+    // the path to the end of segment i, built lazily after the last
+    // addSegment, so remaining distance and the lookahead segment don't
+    // need a walk over the path.
+    int mCurrentSegment = 0;
+    private double[] mSegmentEnds;
 
     public void extrapolateLast()
     {
@@ -31,6 +41,14 @@ public class Path
         last.extrapolateLookahead(true);
     }
 
+    /**
+     * @return direction of travel at the start of the path
+     */
+    public Rotation2d getStartHeading()
+    {
+        return segments.get(0).getHeadingByDistance(0.0);
+    }
+
     public Translation2d getEndPosition()
     {
         return segments.get(segments.size() - 1).getEnd();
@@ -41,6 +59,19 @@ public class Path
         segments = new ArrayList<PathSegment>();
     }
 
+    /**
+     * @return a new, unfollowed Path over the same segments. Following a
+     *         path never modifies its segments, so a built path can be
+     *         handed out any number of times without rebuilding it.
+     */
+    public Path copy()
+    {
+        Path rv = new Path();
+        rv.segments.addAll(segments);
+        rv.mSegmentEnds = getSegmentEnds();
+        return rv;
+    }
+
     /**
      * add a segment to the Path
      * 
@@ -50,6 +81,65 @@ public class Path
     public void addSegment(PathSegment segment)
     {
         segments.add(segment);
+        mSegmentEnds = null;
+    }
+
+    /**
+     * @return the arc length prefix sums, (re)building them if segments were
+     *         added since the last call
+     */
+    private double[] getSegmentEnds()
+    {
+        if (mSegmentEnds == null)
+        {
+            double[] ends = new double[segments.size()];
+            double total = 0.0;
+            for (int i = 0; i < ends.length; i++)
+            {
+                total += segments.get(i).getLength();
+                ends[i] = total;
+            }
+            mSegmentEnds = ends;
+        }
+        return mSegmentEnds;
+    }
+
+    /**
+     * @return arc length from the start of the path to the start of segment
+     *         <code>i</code>
+     */
+    private double getSegmentStartDistance(int i)
+    {
+        return (i == 0) ? 0.0 : getSegmentEnds()[i - 1];
+    }
+
+    /**
+     * Finds the segment containing the point <code>distance</code> along the
+     * path, searching from the current segment. Distances beyond the end of
+     * the path resolve to the last segment (which may extrapolate).
+     */
+    private int getSegmentIndexByDistance(double distance)
+    {
+        final double[] ends = getSegmentEnds();
+        int lo = mCurrentSegment;
+        int hi = ends.length - 1;
+        while (lo < hi)
+        {
+            final int mid = (lo + hi) >>> 1;
+            if (ends[mid] < distance)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @return the number of segments not yet retired
+     */
+    public int getRemainingSegmentCount()
+    {
+        return segments.size() - mCurrentSegment;
     }
 
     /**
@@ -57,7 +147,7 @@ public class Path
      */
     public MotionState getLastMotionState()
     {
-        if (segments.size() > 0)
+        if (segments.size() > mCurrentSegment)
         {
             MotionState endState = segments.get(segments.size() - 1).getEndState();
             return new MotionState(0.0, 0.0, endState.vel(), endState.acc());
@@ -78,16 +168,31 @@ public class Path
      */
     public double getSegmentRemainingDist(Translation2d robotPos)
     {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         return currentSegment.getRemainingDistance(currentSegment.getClosestPoint(robotPos));
     }
 
+    /**
+     * @return distance from <code>point</code> to the closest point on the
+     *         whole path, including segments we've already passed
+     */
+    public double getDistanceFromPath(Translation2d point)
+    {
+        double rv = Double.POSITIVE_INFINITY;
+        for (PathSegment segment : segments)
+        {
+            final Translation2d closest = segment.getClosestPoint(point, mScratchPoint);
+            rv = Math.min(rv, Math.hypot(closest.x() - point.x(), closest.y() - point.y()));
+        }
+        return rv;
+    }
+
     /**
      * @return the length of the current segment
      */
     public double getSegmentLength()
     {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         return currentSegment.getLength();
     }
 
@@ -96,6 +201,7 @@ public class Path
 
         public Translation2d closest_point;
         public double closest_point_distance;
+        public int closest_segment; // index of the segment closest_point is on
         public double closest_point_speed;
         public Translation2d lookahead_point;
         public double max_speed;
@@ -110,7 +216,8 @@ public class Path
 
     /**
      * Gives the position of the lookahead point (and removes any segments prior
-     * to this point).
+     * to the closest point, which may be on any segment within
+     * kPathSearchWindow of the current one).
      * 
      * @param robot
      *        Translation of the current robot pose.
@@ -120,55 +227,50 @@ public class Path
     public TargetPointReport getTargetPoint(Translation2d robot, Lookahead lookahead)
     {
         TargetPointReport rv = new TargetPointReport();
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         rv.closest_point = currentSegment.getClosestPoint(robot);
-        rv.closest_point_distance = new Translation2d(robot, rv.closest_point).norm();
-        /*
-         * if (segments.size() > 1) { // Check next segment to see if it is
-         * closer. final Translation2d
-         * next_segment_closest_point = segments.get(1).getClosestPoint(robot);
-         * final double
-         * next_segment_closest_point_distance = new Translation2d(robot,
-         * next_segment_closest_point) .norm(); if
-         * (next_segment_closest_point_distance < rv.closest_point_distance) {
-         * rv.closest_point =
-         * next_segment_closest_point; rv.closest_point_distance =
-         * next_segment_closest_point_distance;
-         * removeCurrentSegment(); currentSegment = segments.get(0); } }
-         */
-        rv.remaining_segment_distance = currentSegment.getRemainingDistance(rv.closest_point);
-        rv.remaining_path_distance = rv.remaining_segment_distance;
-        for (int i = 1; i < segments.size(); ++i)
-        {
-            rv.remaining_path_distance += segments.get(i).getLength();
-        }
-        rv.closest_point_speed = currentSegment
-                .getSpeedByDistance(currentSegment.getLength() - rv.remaining_segment_distance);
-        double lookahead_distance = lookahead.getLookaheadForSpeed(rv.closest_point_speed) + rv.closest_point_distance;
-        if (rv.remaining_segment_distance < lookahead_distance && segments.size() > 1)
+        rv.closest_point_distance = Math.hypot(rv.closest_point.x() - robot.x(), rv.closest_point.y() - robot.y());
+        rv.closest_segment = mCurrentSegment;
+        // Look for a closer point on the segments just ahead, so a robot
+        // that's been knocked off course doesn't stay locked onto the
+        // current segment. The window grows with the cross track error,
+        // since that's when the projection onto the current segment is
+        // least trustworthy. We never search backwards.
+        final double[] ends = getSegmentEnds();
+        final double window_end = ends[mCurrentSegment] - currentSegment.getRemainingDistance(rv.closest_point)
+                + Constants.kPathSearchWindow + rv.closest_point_distance;
+        final int last_candidate = getSegmentIndexByDistance(window_end);
+        for (int i = mCurrentSegment + 1; i <= last_candidate; ++i)
         {
-            lookahead_distance -= rv.remaining_segment_distance;
-            for (int i = 1; i < segments.size(); ++i)
+            final Translation2d candidate = segments.get(i).getClosestPoint(robot, mScratchPoint);
+            final double distance = Math.hypot(candidate.x() - robot.x(), candidate.y() - robot.y());
+            if (distance < rv.closest_point_distance)
             {
-                currentSegment = segments.get(i);
-                final double length = currentSegment.getLength();
-                if (length < lookahead_distance && i < segments.size() - 1)
-                {
-                    lookahead_distance -= length;
-                }
-                else
-                {
-                    break;
-                }
+                rv.closest_point.set(candidate);
+                rv.closest_point_distance = distance;
+                rv.closest_segment = i;
             }
         }
-        else
+        while (mCurrentSegment < rv.closest_segment)
         {
-            lookahead_distance += (currentSegment.getLength() - rv.remaining_segment_distance);
+            removeCurrentSegment();
         }
+        currentSegment = segments.get(mCurrentSegment);
+        rv.remaining_segment_distance = currentSegment.getRemainingDistance(rv.closest_point);
+        rv.remaining_path_distance = rv.remaining_segment_distance + ends[ends.length - 1] - ends[mCurrentSegment];
+        rv.closest_point_speed = currentSegment
+                .getSpeedByDistance(currentSegment.getLength() - rv.remaining_segment_distance);
+        final double lookahead_distance = lookahead.getLookaheadForSpeed(rv.closest_point_speed)
+                + rv.closest_point_distance;
+        final double lookahead_path_distance = ends[mCurrentSegment] - rv.remaining_segment_distance
+                + lookahead_distance;
+        final int lookahead_segment = getSegmentIndexByDistance(lookahead_path_distance);
+        currentSegment = segments.get(lookahead_segment);
+        final double lookahead_segment_distance = lookahead_path_distance
+                - getSegmentStartDistance(lookahead_segment);
         rv.max_speed = currentSegment.getMaxSpeed();
-        rv.lookahead_point = currentSegment.getPointByDistance(lookahead_distance);
-        rv.lookahead_point_speed = currentSegment.getSpeedByDistance(lookahead_distance);
+        rv.lookahead_point = currentSegment.getPointByDistance(lookahead_segment_distance);
+        rv.lookahead_point_speed = currentSegment.getSpeedByDistance(lookahead_segment_distance);
         checkSegmentDone(rv.closest_point);
         return rv;
     }
@@ -182,7 +284,7 @@ public class Path
      */
     public double getSpeed(Translation2d robotPos)
     {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         return currentSegment.getSpeedByClosestPoint(robotPos);
     }
 
@@ -195,8 +297,9 @@ public class Path
      */
     public void checkSegmentDone(Translation2d robotPos)
     {
-        PathSegment currentSegment = segments.get(0);
-        double remainingDist = currentSegment.getRemainingDistance(currentSegment.getClosestPoint(robotPos));
+        PathSegment currentSegment = segments.get(mCurrentSegment);
+        double remainingDist = currentSegment
+                .getRemainingDistance(currentSegment.getClosestPoint(robotPos, mScratchPoint));
         if (remainingDist < Constants.kSegmentCompletionTolerance)
         {
             removeCurrentSegment();
@@ -205,7 +308,7 @@ public class Path
 
     public void removeCurrentSegment()
     {
-        prevSegment = segments.remove(0);
+        prevSegment = segments.get(mCurrentSegment++);
         String marker = prevSegment.getMarker();
         if (marker != null)
             mMarkersCrossed.add(marker);
@@ -252,9 +355,9 @@ public class Path
     public String toString()
     {
         String str = "";
-        for (PathSegment s : segments)
+        for (int i = mCurrentSegment; i < segments.size(); i++)
         {
-            str += s.toString() + "\n";
+            str += segments.get(i).toString() + "\n";
         }
         return str;
     }
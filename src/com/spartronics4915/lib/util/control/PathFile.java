@@ -0,0 +1,261 @@
+package com.spartronics4915.lib.util.control;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.spartronics4915.lib.util.math.Translation2d;
+import com.spartronics4915.lib.util.motion.MotionProfile;
+import com.spartronics4915.lib.util.motion.MotionSegment;
+import com.spartronics4915.lib.util.motion.MotionState;
+
+/**
+ * A compact binary file of fully built Paths: segment geometry, markers and
+ * the per-segment speed profiles, so loading one costs a few reads instead
+ * of PathBuilder plus verifySpeeds. Files are written offline (see
+ * PathCache.main) and memory-mapped on the robot. Each path carries a hash
+ * of whatever it was built from, so readers can reject stale entries.
+ *
+ * Layout (big endian):
+ *
+ * <pre>
+ * int magic, int version, int pathCount
+ * pathCount x { string name, long sourceHash, int offset }   offsets are from the end of this index
+ * per path: int segmentCount
+ *   per segment: byte flags (kArc, kExtrapolate, kMarker)
+ *                double startX, startY, endX, endY, [centerX, centerY], maxSpeed
+ *                [string marker]
+ *                int profileSegmentCount
+ *                profileSegmentCount x { start t, pos, vel, acc, end t, pos, vel, acc }
+ * string: short byteCount, UTF-8 bytes
+ * </pre>
+ */
+public class PathFile
+{
+
+    private static final int kMagic = 0x50415448; // "PATH"
+    private static final int kVersion = 2;
+
+    private static final int kArc = 1;
+    private static final int kExtrapolate = 2;
+    private static final int kMarker = 4;
+
+    private final ByteBuffer mBuffer;
+    private final Map<String, Integer> mOffsets;
+    private final Map<String, Long> mSourceHashes;
+
+    private PathFile(ByteBuffer buffer, Map<String, Integer> offsets, Map<String, Long> sourceHashes)
+    {
+        mBuffer = buffer;
+        mOffsets = offsets;
+        mSourceHashes = sourceHashes;
+    }
+
+    /**
+     * Memory-maps a path file and reads its index. Paths are decoded on
+     * demand by getPath.
+     *
+     * @throws IOException
+     *         if the file can't be read or isn't a path file we understand
+     */
+    public static PathFile open(File file) throws IOException
+    {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try
+        {
+            if (buffer.getInt() != kMagic)
+                throw new IOException(file + " is not a path file");
+            final int version = buffer.getInt();
+            if (version != kVersion)
+                throw new IOException(file + " has version " + version + ", expected " + kVersion);
+            final int count = buffer.getInt();
+            final Map<String, Integer> offsets = new LinkedHashMap<>();
+            final Map<String, Long> sourceHashes = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++)
+            {
+                final String name = getString(buffer);
+                sourceHashes.put(name, buffer.getLong());
+                offsets.put(name, buffer.getInt());
+            }
+            // Make offsets absolute.
+            final int dataStart = buffer.position();
+            for (Map.Entry<String, Integer> e : offsets.entrySet())
+            {
+                e.setValue(e.getValue() + dataStart);
+            }
+            return new PathFile(buffer, offsets, sourceHashes);
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException(file + " is corrupt", e);
+        }
+    }
+
+    /**
+     * @return the names of the paths in the file, in the order written
+     */
+    public Set<String> getNames()
+    {
+        return Collections.unmodifiableSet(mOffsets.keySet());
+    }
+
+    /**
+     * @return the hash the path was written with (0 if none was given), or
+     *         0 if the file doesn't have <code>name</code>
+     */
+    public long getSourceHash(String name)
+    {
+        final Long hash = mSourceHashes.get(name);
+        return (hash != null) ? hash : 0;
+    }
+
+    /**
+     * Decodes a path. Safe to call from several threads.
+     *
+     * @return a new Path, or null if the file doesn't have <code>name</code>
+     */
+    public Path getPath(String name)
+    {
+        final Integer offset = mOffsets.get(name);
+        if (offset == null)
+            return null;
+        final ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(offset);
+        final Path path = new Path();
+        final int numSegments = buffer.getInt();
+        for (int i = 0; i < numSegments; i++)
+        {
+            final int flags = buffer.get();
+            final Translation2d start = new Translation2d(buffer.getDouble(), buffer.getDouble());
+            final Translation2d end = new Translation2d(buffer.getDouble(), buffer.getDouble());
+            final Translation2d center = ((flags & kArc) != 0)
+                    ? new Translation2d(buffer.getDouble(), buffer.getDouble()) : null;
+            final double maxSpeed = buffer.getDouble();
+            final String marker = ((flags & kMarker) != 0) ? getString(buffer) : null;
+            final int numProfileSegments = buffer.getInt();
+            final List<MotionSegment> profile = new ArrayList<>(numProfileSegments);
+            for (int j = 0; j < numProfileSegments; j++)
+            {
+                profile.add(new MotionSegment(getState(buffer), getState(buffer)));
+            }
+            path.addSegment(new PathSegment(start, end, center, maxSpeed, marker, (flags & kExtrapolate) != 0,
+                    new MotionProfile(profile)));
+        }
+        return path;
+    }
+
+    /**
+     * Writes paths (which shouldn't have been followed yet) to a file.
+     */
+    public static void write(File file, Map<String, Path> paths) throws IOException
+    {
+        write(file, paths, Collections.emptyMap());
+    }
+
+    /**
+     * Writes paths along with a hash of the source each was built from (eg:
+     * its waypoints), for getSourceHash. Paths missing from sourceHashes get 0.
+     */
+    public static void write(File file, Map<String, Path> paths, Map<String, Long> sourceHashes) throws IOException
+    {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final DataOutputStream dataOut = new DataOutputStream(data);
+        final Map<String, Integer> offsets = new LinkedHashMap<>();
+        for (Map.Entry<String, Path> e : paths.entrySet())
+        {
+            offsets.put(e.getKey(), dataOut.size());
+            writePath(dataOut, e.getValue());
+        }
+        dataOut.flush();
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file)))
+        {
+            out.writeInt(kMagic);
+            out.writeInt(kVersion);
+            out.writeInt(offsets.size());
+            for (Map.Entry<String, Integer> e : offsets.entrySet())
+            {
+                final Long hash = sourceHashes.get(e.getKey());
+                putString(out, e.getKey());
+                out.writeLong((hash != null) ? hash : 0);
+                out.writeInt(e.getValue());
+            }
+            data.writeTo(out);
+        }
+    }
+
+    private static void writePath(DataOutputStream out, Path path) throws IOException
+    {
+        out.writeInt(path.segments.size());
+        for (PathSegment segment : path.segments)
+        {
+            final Translation2d center = segment.getCenter();
+            final String marker = segment.getMarker();
+            out.writeByte((segment.isLine() ? 0 : kArc) | (segment.getExtrapolateLookahead() ? kExtrapolate : 0)
+                    | (marker != null ? kMarker : 0));
+            out.writeDouble(segment.getStart().x());
+            out.writeDouble(segment.getStart().y());
+            out.writeDouble(segment.getEnd().x());
+            out.writeDouble(segment.getEnd().y());
+            if (!segment.isLine())
+            {
+                out.writeDouble(center.x());
+                out.writeDouble(center.y());
+            }
+            out.writeDouble(segment.getMaxSpeed());
+            if (marker != null)
+                putString(out, marker);
+            final List<MotionSegment> profile = segment.getSpeedProfile().segments();
+            out.writeInt(profile.size());
+            for (MotionSegment s : profile)
+            {
+                putState(out, s.start());
+                putState(out, s.end());
+            }
+        }
+    }
+
+    private static MotionState getState(ByteBuffer buffer)
+    {
+        return new MotionState(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    private static void putState(DataOutputStream out, MotionState state) throws IOException
+    {
+        out.writeDouble(state.t());
+        out.writeDouble(state.pos());
+        out.writeDouble(state.vel());
+        out.writeDouble(state.acc());
+    }
+
+    private static String getString(ByteBuffer buffer)
+    {
+        final byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(DataOutputStream out, String s) throws IOException
+    {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -42,6 +42,7 @@ public class PathFollower
         public double lookahead_point_x;
         public double lookahead_point_y;
         public double lookahead_point_velocity;
+        public int path_segment;
     }
 
     public static class Parameters
@@ -56,6 +57,7 @@ public class PathFollower
         public final double profile_kffa;
         public final double profile_max_abs_vel;
         public final double profile_max_abs_acc;
+        public final double profile_max_abs_jerk;
         public final double goal_pos_tolerance;
         public final double goal_vel_tolerance;
         public final double stop_steering_distance;
@@ -64,6 +66,20 @@ public class PathFollower
                 double profile_kv, double profile_kffv, double profile_kffa, double profile_max_abs_vel,
                 double profile_max_abs_acc, double goal_pos_tolerance, double goal_vel_tolerance,
                 double stop_steering_distance)
+        {
+            this(lookahead, inertia_gain, profile_kp, profile_ki, profile_kv, profile_kffv, profile_kffa,
+                    profile_max_abs_vel, profile_max_abs_acc, Double.POSITIVE_INFINITY, goal_pos_tolerance,
+                    goal_vel_tolerance, stop_steering_distance);
+        }
+
+        /**
+         * @param profile_max_abs_jerk
+         *        finite for jerk limited (S-curve) speed profiles
+         */
+        public Parameters(Lookahead lookahead, double inertia_gain, double profile_kp, double profile_ki,
+                double profile_kv, double profile_kffv, double profile_kffa, double profile_max_abs_vel,
+                double profile_max_abs_acc, double profile_max_abs_jerk, double goal_pos_tolerance,
+                double goal_vel_tolerance, double stop_steering_distance)
         {
             this.lookahead = lookahead;
             this.inertia_gain = inertia_gain;
@@ -74,6 +90,7 @@ public class PathFollower
             this.profile_kffa = profile_kffa;
             this.profile_max_abs_vel = profile_max_abs_vel;
             this.profile_max_abs_acc = profile_max_abs_acc;
+            this.profile_max_abs_jerk = profile_max_abs_jerk;
             this.goal_pos_tolerance = goal_pos_tolerance;
             this.goal_vel_tolerance = goal_vel_tolerance;
             this.stop_steering_distance = stop_steering_distance;
@@ -90,6 +107,7 @@ public class PathFollower
 
     double mMaxProfileVel;
     double mMaxProfileAcc;
+    double mMaxProfileJerk;
     final double mGoalPosTolerance;
     final double mGoalVelTolerance;
     final double mStopSteeringDistance;
@@ -106,9 +124,11 @@ public class PathFollower
         mVelocityController = new ProfileFollower(parameters.profile_kp, parameters.profile_ki, parameters.profile_kv,
                 parameters.profile_kffv, parameters.profile_kffa);
         mVelocityController.setConstraints(
-                new MotionProfileConstraints(parameters.profile_max_abs_vel, parameters.profile_max_abs_acc));
+                new MotionProfileConstraints(parameters.profile_max_abs_vel, parameters.profile_max_abs_acc,
+                        parameters.profile_max_abs_jerk));
         mMaxProfileVel = parameters.profile_max_abs_vel;
         mMaxProfileAcc = parameters.profile_max_abs_acc;
+        mMaxProfileJerk = parameters.profile_max_abs_jerk;
         mGoalPosTolerance = parameters.goal_pos_tolerance;
         mGoalVelTolerance = parameters.goal_vel_tolerance;
         mInertiaGain = parameters.inertia_gain;
@@ -136,6 +156,7 @@ public class PathFollower
             mDebugOutput.lookahead_point_x = steering_command.lookahead_point.x();
             mDebugOutput.lookahead_point_y = steering_command.lookahead_point.y();
             mDebugOutput.lookahead_point_velocity = steering_command.end_velocity;
+            mDebugOutput.path_segment = steering_command.path_segment;
             mDebugOutput.steering_command_dx = steering_command.delta.dx;
             mDebugOutput.steering_command_dy = steering_command.delta.dy;
             mDebugOutput.steering_command_dtheta = steering_command.delta.dtheta;
@@ -146,13 +167,19 @@ public class PathFollower
                             Math.abs(steering_command.end_velocity), CompletionBehavior.VIOLATE_MAX_ACCEL,
                             mGoalPosTolerance, mGoalVelTolerance),
                     new MotionProfileConstraints(Math.min(mMaxProfileVel, steering_command.max_velocity),
-                            mMaxProfileAcc));
+                            mMaxProfileAcc, mMaxProfileJerk));
 
             if (steering_command.remaining_path_length < mStopSteeringDistance)
             {
                 doneSteering = true;
             }
         }
+        else
+        {
+            // Steering is done but the robot is still coasting in, keep the
+            // path's progress (and so its markers) current.
+            mSteeringController.updateProgress(pose);
+        }
 
         final double velocity_command = mVelocityController.update(new MotionState(t, displacement, velocity, 0.0), t);
         mAlongTrackError = mVelocityController.getPosError();
@@ -29,6 +29,10 @@ public class PathSegment
     private MotionProfile speedController;
     private boolean extrapolateLookahead;
     private String marker;
+    // Cached at construction, the segment's geometry never changes.
+    private double length;
+    private double totalAngle; // unsigned, arcs only
+    private double arcDirection; // +1 ccw, -1 cw, arcs only
 
     /**
      * Constructor for a linear segment
@@ -55,6 +59,7 @@ public class PathSegment
         this.maxSpeed = maxSpeed;
         extrapolateLookahead = false;
         isLine = true;
+        cacheGeometry();
         createMotionProfiler(startState, endSpeed);
     }
 
@@ -70,6 +75,7 @@ public class PathSegment
         extrapolateLookahead = false;
         isLine = true;
         this.marker = marker;
+        cacheGeometry();
         createMotionProfiler(startState, endSpeed);
     }
 
@@ -104,6 +110,7 @@ public class PathSegment
         this.maxSpeed = maxSpeed;
         extrapolateLookahead = false;
         isLine = false;
+        cacheGeometry();
         createMotionProfiler(startState, endSpeed);
     }
 
@@ -121,9 +128,37 @@ public class PathSegment
         extrapolateLookahead = false;
         isLine = false;
         this.marker = marker;
+        cacheGeometry();
         createMotionProfiler(startState, endSpeed);
     }
 
+    /**
+     * Constructor for a segment whose speed profile was computed ahead of
+     * time (see PathFile). <code>center</code> is null for a line.
+     */
+    PathSegment(Translation2d start, Translation2d end, Translation2d center, double maxSpeed, String marker,
+            boolean extrapolateLookahead, MotionProfile speedController)
+    {
+        this.start = start;
+        this.end = end;
+        this.center = center;
+        this.isLine = (center == null);
+        if (isLine)
+        {
+            this.deltaStart = new Translation2d(start, end);
+        }
+        else
+        {
+            this.deltaStart = new Translation2d(center, start);
+            this.deltaEnd = new Translation2d(center, end);
+        }
+        this.maxSpeed = maxSpeed;
+        this.marker = marker;
+        this.extrapolateLookahead = extrapolateLookahead;
+        this.speedController = speedController;
+        cacheGeometry();
+    }
+
     /**
      * @return max speed of the segment
      */
@@ -135,7 +170,7 @@ public class PathSegment
     public void createMotionProfiler(MotionState start_state, double end_speed)
     {
         MotionProfileConstraints motionConstraints = new MotionProfileConstraints(maxSpeed,
-                Constants.kPathFollowingMaxAccel);
+                Constants.kPathFollowingMaxAccel, Constants.kPathFollowingMaxJerk);
         MotionProfileGoal goal_state = new MotionProfileGoal(getLength(), end_speed);
         speedController = MotionProfileGenerator.generateProfile(motionConstraints, goal_state, start_state);
         // Logger.notice(speedController);
@@ -157,18 +192,54 @@ public class PathSegment
         return end;
     }
 
+    private void cacheGeometry()
+    {
+        if (isLine)
+        {
+            length = deltaStart.norm();
+        }
+        else
+        {
+            totalAngle = Translation2d.getAngle(deltaStart, deltaEnd).getRadians();
+            arcDirection = (Translation2d.cross(deltaStart, deltaEnd) >= 0) ? 1 : -1;
+            length = deltaStart.norm() * totalAngle;
+        }
+    }
+
     /**
      * @return the total length of the segment
      */
     public double getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return signed curvature (1 / radius, positive turning left), zero for
+     *         a line
+     */
+    public double getCurvature()
+    {
+        return isLine ? 0.0 : arcDirection / deltaStart.norm();
+    }
+
+    /**
+     * @return direction of travel <code>dist</code> from the starting point
+     */
+    public Rotation2d getHeadingByDistance(double dist)
     {
         if (isLine)
         {
-            return deltaStart.norm();
+            return new Rotation2d(deltaStart.x(), deltaStart.y(), true);
         }
         else
         {
-            return deltaStart.norm() * Translation2d.getAngle(deltaStart, deltaEnd).getRadians();
+            final double deltaAngle = totalAngle * arcDirection * dist / length;
+            final double cos = Math.cos(deltaAngle);
+            final double sin = Math.sin(deltaAngle);
+            final double rx = deltaStart.x() * cos - deltaStart.y() * sin;
+            final double ry = deltaStart.x() * sin + deltaStart.y() * cos;
+            return new Rotation2d(-ry * arcDirection, rx * arcDirection, true);
         }
     }
 
@@ -191,29 +262,44 @@ public class PathSegment
      * @return the point on the segment closest to the robot
      */
     public Translation2d getClosestPoint(Translation2d position)
+    {
+        return getClosestPoint(position, new Translation2d());
+    }
+
+    /**
+     * Allocation-free version of getClosestPoint.
+     * 
+     * @return out
+     */
+    public Translation2d getClosestPoint(Translation2d position, Translation2d out)
     {
         if (isLine)
         {
-            Translation2d delta = new Translation2d(start, end);
-            double u = ((position.x() - start.x()) * delta.x() + (position.y() - start.y()) * delta.y())
-                    / (delta.x() * delta.x() + delta.y() * delta.y());
+            final double dx = end.x() - start.x();
+            final double dy = end.y() - start.y();
+            double u = ((position.x() - start.x()) * dx + (position.y() - start.y()) * dy) / (dx * dx + dy * dy);
             if (u >= 0 && u <= 1)
-                return new Translation2d(start.x() + u * delta.x(), start.y() + u * delta.y());
-            return (u < 0) ? start : end;
+                return out.set(start.x() + u * dx, start.y() + u * dy);
+            return out.set((u < 0) ? start : end);
         }
         else
         {
-            Translation2d deltaPosition = new Translation2d(center, position);
-            deltaPosition = deltaPosition.scale(deltaStart.norm() / deltaPosition.norm());
-            if (Translation2d.cross(deltaPosition, deltaStart) * Translation2d.cross(deltaPosition, deltaEnd) < 0)
+            double px = position.x() - center.x();
+            double py = position.y() - center.y();
+            final double scale = deltaStart.norm() / Math.hypot(px, py);
+            px *= scale;
+            py *= scale;
+            final double crossStart = px * deltaStart.y() - py * deltaStart.x();
+            final double crossEnd = px * deltaEnd.y() - py * deltaEnd.x();
+            if (crossStart * crossEnd < 0)
             {
-                return center.translateBy(deltaPosition);
+                return out.set(center.x() + px, center.y() + py);
             }
             else
             {
-                Translation2d startDist = new Translation2d(position, start);
-                Translation2d endDist = new Translation2d(position, end);
-                return (endDist.norm() < startDist.norm()) ? end : start;
+                final double startDist = Math.hypot(start.x() - position.x(), start.y() - position.y());
+                final double endDist = Math.hypot(end.x() - position.x(), end.y() - position.y());
+                return out.set((endDist < startDist) ? end : start);
             }
         }
     }
@@ -229,22 +315,32 @@ public class PathSegment
      */
     public Translation2d getPointByDistance(double dist)
     {
-        double length = getLength();
+        return getPointByDistance(dist, new Translation2d());
+    }
+
+    /**
+     * Allocation-free version of getPointByDistance.
+     * 
+     * @return out
+     */
+    public Translation2d getPointByDistance(double dist, Translation2d out)
+    {
         if (!extrapolateLookahead && dist > length)
         {
             dist = length;
         }
         if (isLine)
         {
-            return start.translateBy(deltaStart.scale(dist / length));
+            final double scale = dist / length;
+            return out.set(start.x() + deltaStart.x() * scale, start.y() + deltaStart.y() * scale);
         }
         else
         {
-            double deltaAngle = Translation2d.getAngle(deltaStart, deltaEnd).getRadians()
-                    * ((Translation2d.cross(deltaStart, deltaEnd) >= 0) ? 1 : -1);
-            deltaAngle *= dist / length;
-            Translation2d t = deltaStart.rotateBy(Rotation2d.fromRadians(deltaAngle));
-            return center.translateBy(t);
+            final double deltaAngle = totalAngle * arcDirection * dist / length;
+            final double cos = Math.cos(deltaAngle);
+            final double sin = Math.sin(deltaAngle);
+            return out.set(center.x() + deltaStart.x() * cos - deltaStart.y() * sin,
+                    center.y() + deltaStart.x() * sin + deltaStart.y() * cos);
         }
     }
 
@@ -260,14 +356,15 @@ public class PathSegment
     {
         if (isLine)
         {
-            return new Translation2d(end, position).norm();
+            return Math.hypot(position.x() - end.x(), position.y() - end.y());
         }
         else
         {
-            Translation2d deltaPosition = new Translation2d(center, position);
-            double angle = Translation2d.getAngle(deltaEnd, deltaPosition).getRadians();
-            double totalAngle = Translation2d.getAngle(deltaStart, deltaEnd).getRadians();
-            return angle / totalAngle * getLength();
+            final double px = position.x() - center.x();
+            final double py = position.y() - center.y();
+            final double cos_angle = (deltaEnd.x() * px + deltaEnd.y() * py) / (deltaEnd.norm() * Math.hypot(px, py));
+            final double angle = Double.isNaN(cos_angle) ? 0.0 : Math.acos(Math.min(1.0, Math.max(cos_angle, -1.0)));
+            return angle / totalAngle * length;
         }
     }
 
@@ -321,6 +418,29 @@ public class PathSegment
         return marker;
     }
 
+    boolean isLine()
+    {
+        return isLine;
+    }
+
+    /**
+     * @return the arc center, null for a line
+     */
+    Translation2d getCenter()
+    {
+        return center;
+    }
+
+    boolean getExtrapolateLookahead()
+    {
+        return extrapolateLookahead;
+    }
+
+    MotionProfile getSpeedProfile()
+    {
+        return speedController;
+    }
+
     public String toString()
     {
         if (isLine)
@@ -0,0 +1,185 @@
+package com.spartronics4915.lib.util.control;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Twist2d;
+
+/**
+ * Follows a Trajectory with the Ramsete nonlinear tracking controller, as an
+ * alternative to PathFollower (AdaptivePurePursuitController steering plus
+ * ProfileFollower speed control).
+ *
+ * The trajectory says where the robot should be at every moment, so each
+ * update is one lookup by time plus a closed form feedback law on the pose
+ * error in the robot's frame (no lookahead search or arc fitting). Errors
+ * along and across the path are corrected together, so the robot converges
+ * back onto the trajectory quickly after a disturbance.
+ *
+ * v = vd cos(e_theta) + k e_x
+ * w = wd + k e_theta + b vd sin(e_theta) / e_theta e_y
+ * k = 2 zeta sqrt(wd^2 + b vd^2)
+ *
+ * Markers are crossed when the trajectory (not the robot) reaches the end of
+ * the segment that carries them.
+ *
+ * @see TrajectoryGenerator
+ */
+public class RamseteController
+{
+
+    public static class Parameters
+    {
+
+        public final double b; // rad^2 per inch^2
+        public final double zeta;
+        public final double goal_pos_tolerance;
+        public final double settle_time; // give up on goal_pos_tolerance this long after the end
+
+        public Parameters(double b, double zeta, double goal_pos_tolerance, double settle_time)
+        {
+            this.b = b;
+            this.zeta = zeta;
+            this.goal_pos_tolerance = goal_pos_tolerance;
+            this.settle_time = settle_time;
+        }
+    }
+
+    final Trajectory mTrajectory;
+    final boolean mReversed;
+    final Parameters mParameters;
+    final Map<String, Double> mMarkerDistances = new HashMap<>();
+
+    double mStartTime = Double.NaN;
+    Trajectory.State mReference;
+    boolean mFinished = false;
+    boolean overrideFinished = false;
+    double mCrossTrackError = 0.0;
+    double mAlongTrackError = 0.0;
+
+    // scratch for update()
+    private final RigidTransform2d mReversedPose = new RigidTransform2d();
+
+    /**
+     * Follows the time optimal trajectory for path, under the default
+     * TrajectoryGenerator constraints.
+     */
+    public RamseteController(Path path, boolean reversed, Parameters parameters)
+    {
+        this(path, TrajectoryGenerator.generate(path, TrajectoryGenerator.Constraints.getDefault()), reversed,
+                parameters);
+    }
+
+    /**
+     * @param path
+     *        the path trajectory was generated from (for its markers)
+     */
+    public RamseteController(Path path, Trajectory trajectory, boolean reversed, Parameters parameters)
+    {
+        mTrajectory = trajectory;
+        mReversed = reversed;
+        mParameters = parameters;
+        mReference = trajectory.getStartState();
+        double distance = 0.0;
+        for (PathSegment segment : path.segments)
+        {
+            distance += segment.getLength();
+            if (segment.getMarker() != null)
+                mMarkerDistances.put(segment.getMarker(), distance);
+        }
+    }
+
+    /**
+     * Get new velocity commands to follow the trajectory. The trajectory
+     * starts at the first call.
+     * 
+     * @param t
+     *        The current timestamp
+     * @param pose
+     *        The current robot pose
+     * @return The velocity command to apply (inches and radians per second)
+     */
+    public synchronized Twist2d update(double t, RigidTransform2d pose)
+    {
+        if (Double.isNaN(mStartTime))
+            mStartTime = t;
+        final double elapsed = t - mStartTime;
+        mReference = mTrajectory.getState(elapsed);
+
+        if (mReversed)
+        {
+            // rotate by pi, so we track the trajectory as if driving forwards
+            pose = mReversedPose.set(pose.getTranslation().x(), pose.getTranslation().y(),
+                    -pose.getRotation().cos(), -pose.getRotation().sin());
+        }
+
+        // Reference pose in the robot's frame.
+        final double cos = pose.getRotation().cos();
+        final double sin = pose.getRotation().sin();
+        final double dx = mReference.pose.getTranslation().x() - pose.getTranslation().x();
+        final double dy = mReference.pose.getTranslation().y() - pose.getTranslation().y();
+        final double ex = cos * dx + sin * dy;
+        final double ey = -sin * dx + cos * dy;
+        final double etheta = pose.getRotation().inverse().rotateBy(mReference.pose.getRotation()).getRadians();
+        mAlongTrackError = ex;
+        mCrossTrackError = ey;
+
+        if (elapsed >= mTrajectory.getDuration())
+        {
+            final double remaining = Math.hypot(dx, dy);
+            if (remaining < mParameters.goal_pos_tolerance
+                    || elapsed >= mTrajectory.getDuration() + mParameters.settle_time)
+                mFinished = true;
+        }
+        if (isFinished())
+            return Twist2d.identity();
+
+        final double vd = mReference.velocity;
+        final double wd = mReference.angularVelocity; // turns in place at corners
+        final double k = 2 * mParameters.zeta * Math.sqrt(wd * wd + mParameters.b * vd * vd);
+        final double sinc = (Math.abs(etheta) < 1E-9) ? 1.0 : Math.sin(etheta) / etheta;
+        final double v = vd * Math.cos(etheta) + k * ex;
+        final double w = wd + k * etheta + mParameters.b * vd * sinc * ey;
+        return new Twist2d(mReversed ? -v : v, 0.0, w);
+    }
+
+    public Trajectory getTrajectory()
+    {
+        return mTrajectory;
+    }
+
+    /**
+     * @return where the robot should be now
+     */
+    public Trajectory.State getReference()
+    {
+        return mReference;
+    }
+
+    public double getCrossTrackError()
+    {
+        return mCrossTrackError;
+    }
+
+    public double getAlongTrackError()
+    {
+        return mAlongTrackError;
+    }
+
+    public boolean isFinished()
+    {
+        return mFinished || overrideFinished;
+    }
+
+    public void forceFinish()
+    {
+        overrideFinished = true;
+    }
+
+    public boolean hasPassedMarker(String marker)
+    {
+        final Double distance = mMarkerDistances.get(marker);
+        return distance != null && mReference.distance >= distance - 1E-6;
+    }
+}
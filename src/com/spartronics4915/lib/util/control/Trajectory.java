@@ -0,0 +1,133 @@
+package com.spartronics4915.lib.util.control;
+
+import java.util.List;
+
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+
+/**
+ * A time parameterized path: where the robot should be, and how fast it
+ * should be going, at every moment from 0 to getDuration().
+ *
+ * @see TrajectoryGenerator
+ */
+public class Trajectory
+{
+
+    /**
+     * The desired state of the robot at time t. Acceleration is constant
+     * until the next state.
+     *
+     * angularVelocity is velocity * curvature, except while turning in
+     * place at a corner, where velocity is 0 and the robot rotates.
+     */
+    public static class State
+    {
+
+        public final double t;
+        public final double distance; // along the path
+        public final RigidTransform2d pose;
+        public final double curvature;
+        public final double velocity;
+        public final double acceleration;
+        public final double angularVelocity; // radians per second, positive turning left
+
+        public State(double t, double distance, RigidTransform2d pose, double curvature, double velocity,
+                double acceleration)
+        {
+            this(t, distance, pose, curvature, velocity, acceleration, velocity * curvature);
+        }
+
+        public State(double t, double distance, RigidTransform2d pose, double curvature, double velocity,
+                double acceleration, double angularVelocity)
+        {
+            this.t = t;
+            this.distance = distance;
+            this.pose = pose;
+            this.curvature = curvature;
+            this.velocity = velocity;
+            this.acceleration = acceleration;
+            this.angularVelocity = angularVelocity;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "(t=" + t + ", s=" + distance + ", pose=" + pose + ", k=" + curvature + ", v=" + velocity
+                    + ", a=" + acceleration + ", w=" + angularVelocity + ")";
+        }
+    }
+
+    private final List<State> mStates;
+    private final double[] mTimes;
+
+    public Trajectory(List<State> states)
+    {
+        mStates = states;
+        mTimes = new double[states.size()];
+        for (int i = 0; i < mTimes.length; i++)
+        {
+            mTimes[i] = states.get(i).t;
+        }
+    }
+
+    public List<State> getStates()
+    {
+        return mStates;
+    }
+
+    public double getDuration()
+    {
+        return mTimes[mTimes.length - 1];
+    }
+
+    public double getLength()
+    {
+        return mStates.get(mStates.size() - 1).distance;
+    }
+
+    public State getStartState()
+    {
+        return mStates.get(0);
+    }
+
+    public State getEndState()
+    {
+        return mStates.get(mStates.size() - 1);
+    }
+
+    /**
+     * @return the state at time t, interpolated between the samples (t is
+     *         clamped to the trajectory)
+     */
+    public State getState(double t)
+    {
+        if (t <= mTimes[0])
+            return getStartState();
+        if (t >= getDuration())
+            return getEndState();
+        // Last sample at or before t.
+        int lo = 0;
+        int hi = mTimes.length - 1;
+        while (lo < hi - 1)
+        {
+            final int mid = (lo + hi) >>> 1;
+            if (mTimes[mid] <= t)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        final State a = mStates.get(lo);
+        final State b = mStates.get(lo + 1);
+        final double dt = t - a.t;
+        final double distance = a.distance + a.velocity * dt + 0.5 * a.acceleration * dt * dt;
+        final double ds = b.distance - a.distance;
+        final double x = (ds > 1E-9) ? (distance - a.distance) / ds : (dt / (b.t - a.t));
+        final double curvature = a.curvature + (b.curvature - a.curvature) * x;
+        final double velocity = a.velocity + a.acceleration * dt;
+        // Turning in place (ds is 0), the turn rate is sampled densely.
+        final double angularVelocity = (ds > 1E-9) ? velocity * curvature
+                : a.angularVelocity + (b.angularVelocity - a.angularVelocity) * x;
+        return new State(t, distance, a.pose.interpolate(b.pose, x), curvature, velocity, a.acceleration,
+                angularVelocity);
+    }
+}
@@ -0,0 +1,259 @@
+package com.spartronics4915.lib.util.control;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.frc2018.paths.PathCache;
+import com.spartronics4915.frc2018.paths.PathContainer;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+
+/**
+ * Computes the time optimal velocity profile along a Path for a
+ * differential drive, and returns it as a Trajectory. This is meant to be
+ * run offline (or at robotInit), it allocates freely.
+ *
+ * Segment speeds (the hand tuned Waypoint speeds) are ignored. Instead, at
+ * every point along the path the speed is limited so that:
+ * <ul>
+ * <li>neither wheel exceeds maxWheelVelocity (the outside wheel is faster
+ * in a turn, per Kinematics.inverseKinematics),</li>
+ * <li>centripetal acceleration doesn't exceed maxLateralAccel,</li>
+ * <li>neither wheel accelerates faster than maxAccel.</li>
+ * </ul>
+ * A forward pass accelerates as hard as allowed and a backward pass does
+ * the same for braking into the end (and into every tight spot). The
+ * result is the fastest profile that meets all three limits at every
+ * sample. The trajectory starts and ends stopped.
+ *
+ * A radius 0 waypoint joins two segments with no arc between them, so the
+ * heading jumps there. No speed makes that drivable: the trajectory stops
+ * at the corner and turns in place (velocity 0, see State.angularVelocity)
+ * under the same wheel velocity and acceleration limits, then carries on.
+ * Overlapping waypoint radii make a cusp (a 180 degree corner, eg: in
+ * DriveToFarSwitchFromBPath), which turns all the way around and back.
+ */
+public class TrajectoryGenerator
+{
+
+    private static final double kSampleDistance = 1.0; // inches
+    private static final double kCornerAngle = Math.toRadians(0.5); // smaller heading jumps are ignored
+    private static final double kTurnSampleTime = 0.01; // seconds
+
+    public static class Constraints
+    {
+
+        public final double maxWheelVelocity;
+        public final double maxAccel;
+        public final double maxLateralAccel;
+
+        public Constraints(double maxWheelVelocity, double maxAccel, double maxLateralAccel)
+        {
+            this.maxWheelVelocity = maxWheelVelocity;
+            this.maxAccel = maxAccel;
+            this.maxLateralAccel = maxLateralAccel;
+        }
+
+        /**
+         * @return the path following limits from Constants
+         */
+        public static Constraints getDefault()
+        {
+            return new Constraints(Constants.kPathFollowingMaxVel, Constants.kPathFollowingMaxAccel,
+                    Constants.kPathFollowingMaxLateralAccel);
+        }
+    }
+
+    public static Trajectory generate(Path path, Constraints constraints)
+    {
+        // Sample the path. curvature[i] applies from sample i to i + 1, and
+        // the robot turns corners[i] radians in place before sample i.
+        final List<RigidTransform2d> poses = new ArrayList<>();
+        final List<Double> distances = new ArrayList<>();
+        final List<Double> curvatures = new ArrayList<>();
+        final List<Double> corners = new ArrayList<>();
+        double distance = 0.0;
+        PathSegment previous = null;
+        for (PathSegment segment : path.segments)
+        {
+            final double length = segment.getLength();
+            // Two samples at least, so there's room to move between corners.
+            final int n = Math.max(2, (int) Math.ceil(length / kSampleDistance));
+            final double corner = (previous != null) ? getCornerAngle(previous, segment) : 0.0;
+            previous = segment;
+            for (int j = 0; j < n; j++)
+            {
+                final double d = length * j / n;
+                poses.add(new RigidTransform2d(segment.getPointByDistance(d), segment.getHeadingByDistance(d)));
+                distances.add(distance + d);
+                curvatures.add(segment.getCurvature());
+                corners.add((j == 0) ? corner : 0.0);
+            }
+            distance += length;
+        }
+        final PathSegment last = path.segments.get(path.segments.size() - 1);
+        poses.add(new RigidTransform2d(new Translation2d(last.getEnd()),
+                last.getHeadingByDistance(last.getLength())));
+        distances.add(distance);
+        curvatures.add(last.getCurvature());
+        corners.add(0.0);
+
+        // How much faster the outside wheel goes than the center of the
+        // robot, per unit of curvature.
+        final double wheelFactor = Constants.kTrackWidthInches / (2 * Constants.kTrackScrubFactor);
+        final int n = poses.size();
+        final double[] limits = new double[n];
+        final double[] accels = new double[n]; // max accel from sample i to i + 1
+        for (int i = 0; i < n; i++)
+        {
+            // A sample is limited by the intervals on both sides of it.
+            final double k = Math.max(Math.abs(curvatures.get(i)), Math.abs(curvatures.get(Math.max(0, i - 1))));
+            double limit = constraints.maxWheelVelocity / (1 + k * wheelFactor);
+            if (k > 1E-9)
+                limit = Math.min(limit, Math.sqrt(constraints.maxLateralAccel / k));
+            limits[i] = (corners.get(i) != 0.0) ? 0.0 : limit;
+            accels[i] = constraints.maxAccel / (1 + Math.abs(curvatures.get(i)) * wheelFactor);
+        }
+
+        final double[] v = new double[n];
+        v[0] = 0.0;
+        for (int i = 1; i < n; i++)
+        {
+            final double ds = distances.get(i) - distances.get(i - 1);
+            v[i] = Math.min(limits[i], Math.sqrt(v[i - 1] * v[i - 1] + 2 * accels[i - 1] * ds));
+        }
+        v[n - 1] = 0.0;
+        for (int i = n - 2; i >= 0; i--)
+        {
+            final double ds = distances.get(i + 1) - distances.get(i);
+            v[i] = Math.min(v[i], Math.sqrt(v[i + 1] * v[i + 1] + 2 * accels[i] * ds));
+        }
+
+        // Turning in place, wheels move wheelFactor inches per radian.
+        final double maxTurnRate = constraints.maxWheelVelocity / wheelFactor;
+        final double maxTurnAccel = constraints.maxAccel / wheelFactor;
+
+        final List<Trajectory.State> states = new ArrayList<>(n);
+        double t = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            if (corners.get(i) != 0.0)
+            {
+                // Heading before the corner, the sample has the heading after.
+                final RigidTransform2d pose = poses.get(i);
+                t = addTurn(states, t, distances.get(i), pose.getTranslation(),
+                        pose.getRotation().rotateBy(Rotation2d.fromRadians(-corners.get(i))), corners.get(i),
+                        maxTurnRate, maxTurnAccel);
+            }
+            double accel = 0.0;
+            double dt = 0.0;
+            if (i < n - 1)
+            {
+                final double ds = distances.get(i + 1) - distances.get(i);
+                if (ds > 1E-9)
+                {
+                    accel = (v[i + 1] * v[i + 1] - v[i] * v[i]) / (2 * ds);
+                    dt = 2 * ds / (v[i] + v[i + 1]);
+                }
+            }
+            states.add(new Trajectory.State(t, distances.get(i), poses.get(i), curvatures.get(i), v[i], accel));
+            t += dt;
+        }
+        return new Trajectory(states);
+    }
+
+    /**
+     * @return radians the heading jumps from previous to segment (0 for
+     *         a smooth join), positive turning left
+     */
+    static double getCornerAngle(PathSegment previous, PathSegment segment)
+    {
+        final double corner = previous.getHeadingByDistance(previous.getLength()).inverse()
+                .rotateBy(segment.getHeadingByDistance(0)).getRadians();
+        return (Math.abs(corner) < kCornerAngle) ? 0.0 : corner;
+    }
+
+    /**
+     * @return the number of corners (radius 0 waypoints) the trajectory
+     *         stops and turns in place at
+     */
+    public static int countCorners(Path path)
+    {
+        int corners = 0;
+        for (int i = 1; i < path.segments.size(); i++)
+        {
+            if (getCornerAngle(path.segments.get(i - 1), path.segments.get(i)) != 0.0)
+                corners++;
+        }
+        return corners;
+    }
+
+    /**
+     * Adds the states of a trapezoidal turn in place through angle radians,
+     * starting at time t. The sample after the turn has the final heading.
+     *
+     * @return the time the turn ends
+     */
+    private static double addTurn(List<Trajectory.State> states, double t, double distance,
+            Translation2d position, Rotation2d heading, double angle, double maxRate, double maxAccel)
+    {
+        final double sign = Math.signum(angle);
+        final double total = Math.abs(angle);
+        // Triangular if there isn't room to reach maxRate.
+        final double peakRate = Math.min(maxRate, Math.sqrt(total * maxAccel));
+        final double accelTime = peakRate / maxAccel;
+        final double accelAngle = 0.5 * peakRate * accelTime;
+        final double cruiseTime = (total - 2 * accelAngle) / peakRate;
+        final double duration = 2 * accelTime + cruiseTime;
+        final int n = Math.max(2, (int) Math.ceil(duration / kTurnSampleTime));
+        for (int k = 0; k < n; k++)
+        {
+            final double tau = duration * k / n;
+            double rate, turned;
+            if (tau < accelTime)
+            {
+                rate = maxAccel * tau;
+                turned = 0.5 * rate * tau;
+            }
+            else if (tau < accelTime + cruiseTime)
+            {
+                rate = peakRate;
+                turned = accelAngle + peakRate * (tau - accelTime);
+            }
+            else
+            {
+                final double left = duration - tau;
+                rate = maxAccel * left;
+                turned = total - 0.5 * rate * left;
+            }
+            states.add(new Trajectory.State(t + tau, distance,
+                    new RigidTransform2d(position, heading.rotateBy(Rotation2d.fromRadians(sign * turned))), 0.0,
+                    0.0, 0.0, sign * rate));
+        }
+        return t + duration;
+    }
+
+    /**
+     * Prints the time optimal duration of every registered auto path next to
+     * the duration of its current (Waypoint speed) profile.
+     */
+    public static void main(String[] args)
+    {
+        final Constraints constraints = Constraints.getDefault();
+        for (PathContainer container : PathCache.getRegisteredPaths())
+        {
+            final Path path = container.buildPath();
+            double profiled = 0.0;
+            for (PathSegment segment : path.segments)
+            {
+                profiled += segment.getSpeedProfile().duration();
+            }
+            final Trajectory trajectory = generate(path, constraints);
+            System.out.println(String.format("%-44s %7.1f in %6.2f s profiled %6.2f s optimal",
+                    container.getClass().getSimpleName(), trajectory.getLength(), profiled,
+                    trajectory.getDuration()));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.spartronics4915.lib.util.control;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.spartronics4915.frc2018.Constants;
+
+/**
+ * A Trajectory sampled into left and right wheel positions and velocities at
+ * a fixed period, for the drive Talons to execute from their motion profile
+ * buffers (see TalonSRX4915Drive.beginMotionProfile).
+ *
+ * The Talons servo each wheel to its position with the velocity as
+ * feedforward, so the profile runs without the roboRIO in the loop. The
+ * price is that nothing corrects the robot's pose: slip and heading drift
+ * go uncorrected until the next path. Corners (radius 0 waypoints) are
+ * turned in place, as the trajectory does. Check paths with
+ * PathFollowerSimulator -talon first.
+ *
+ * Positions start at 0 and are the integral of the velocities (so the
+ * Talon's position and velocity terms agree). Markers are crossed when the
+ * profile (not the robot) reaches the end of the segment that carries them.
+ *
+ * @see TrajectoryGenerator
+ */
+public class WheelProfile
+{
+
+    final double mDt;
+    final double[] mLeftPosition;
+    final double[] mLeftVelocity;
+    final double[] mRightPosition;
+    final double[] mRightVelocity;
+    final double[] mDistance; // along the path
+    final Map<String, Double> mMarkerDistances = new HashMap<>();
+
+    /**
+     * @param path
+     *        the path trajectory was generated from (for its markers)
+     * @param dt
+     *        seconds between points, the last point may be closer
+     */
+    public WheelProfile(Path path, Trajectory trajectory, boolean reversed, double dt)
+    {
+        mDt = dt;
+        final int n = (int) Math.ceil(trajectory.getDuration() / dt - 1E-9) + 1;
+        mLeftPosition = new double[n];
+        mLeftVelocity = new double[n];
+        mRightPosition = new double[n];
+        mRightVelocity = new double[n];
+        mDistance = new double[n];
+
+        // Kinematics.inverseKinematics, per unit of angular velocity.
+        final double wheelFactor = Constants.kTrackWidthInches / (2 * Constants.kTrackScrubFactor);
+        double last_t = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            final double t = Math.min(i * dt, trajectory.getDuration());
+            final Trajectory.State state = trajectory.getState(t);
+            // Backing up turns the robot the same way as driving forwards
+            // would, see RamseteController.update.
+            final double v = reversed ? -state.velocity : state.velocity;
+            final double delta_v = wheelFactor * state.angularVelocity;
+            mLeftVelocity[i] = v - delta_v;
+            mRightVelocity[i] = v + delta_v;
+            mDistance[i] = state.distance;
+            if (i > 0)
+            {
+                mLeftPosition[i] = mLeftPosition[i - 1] + (mLeftVelocity[i - 1] + mLeftVelocity[i]) / 2 * (t - last_t);
+                mRightPosition[i] = mRightPosition[i - 1]
+                        + (mRightVelocity[i - 1] + mRightVelocity[i]) / 2 * (t - last_t);
+            }
+            last_t = t;
+        }
+
+        double distance = 0.0;
+        for (PathSegment segment : path.segments)
+        {
+            distance += segment.getLength();
+            if (segment.getMarker() != null)
+                mMarkerDistances.put(segment.getMarker(), distance);
+        }
+    }
+
+    public int size()
+    {
+        return mDistance.length;
+    }
+
+    public double getDt()
+    {
+        return mDt;
+    }
+
+    /**
+     * @return seconds from the first point to the last
+     */
+    public double getDuration()
+    {
+        return (size() - 1) * mDt;
+    }
+
+    public double getLeftPosition(int i)
+    {
+        return mLeftPosition[i];
+    }
+
+    public double getLeftVelocity(int i)
+    {
+        return mLeftVelocity[i];
+    }
+
+    public double getRightPosition(int i)
+    {
+        return mRightPosition[i];
+    }
+
+    public double getRightVelocity(int i)
+    {
+        return mRightVelocity[i];
+    }
+
+    /**
+     * @return the point being executed t seconds after the profile started
+     */
+    public int getIndex(double t)
+    {
+        return Math.max(0, Math.min(size() - 1, (int) Math.floor(t / mDt + 1E-9)));
+    }
+
+    /**
+     * @param t
+     *        seconds since the profile started
+     */
+    public boolean hasPassedMarker(String marker, double t)
+    {
+        final Double distance = mMarkerDistances.get(marker);
+        return distance != null && mDistance[getIndex(t)] >= distance - 1E-6;
+    }
+}
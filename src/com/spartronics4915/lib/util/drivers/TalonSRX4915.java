@@ -1,9 +1,16 @@
 package com.spartronics4915.lib.util.drivers;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.ctre.phoenix.motorcontrol.can.TalonSRX;
 import com.spartronics4915.lib.util.CANProbe;
 import com.spartronics4915.lib.util.Logger;
+import com.ctre.phoenix.ErrorCode;
 import com.ctre.phoenix.ParamEnum;
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryPoint;
+import com.ctre.phoenix.motion.TrajectoryPoint.TrajectoryDuration;
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.Faults;
 import com.ctre.phoenix.motorcontrol.LimitSwitchSource;
@@ -101,7 +108,17 @@ public class TalonSRX4915 implements Sendable, MotorSafety
         }
     };
 
+    // Status frame rates by what the Talon is used for, see configStatusFrames.
+    public enum StatusFrameProfile
+    {
+        kDriveMaster, // encoders feed odometry
+        kFollower, // nobody reads it
+        kPigeonHost, // a follower, the Pigeon's frames are set on the PigeonIMU
+        kMechanism // output current for stall checks
+    };
+
     /* CANTalon4915 members ------------------------------------------------ */
+    static final int sMotionControlFramePeriodMS = 100; // when not streaming a motion profile
     static final int sPidIdx = 0; // 0 is primary closed-loop, 1 is cascaded (unused atm)
     static final int sDefaultOrdinal = 0; // This probably does something specific on certain ParamEnums
 
@@ -116,6 +133,23 @@ public class TalonSRX4915 implements Sendable, MotorSafety
     String mDescription;
     String mSubsystem = "TalonSRX4915"; // for Sendable/LiveWindow
     MotorSafetyHelper mSafetyHelper;
+    // Last values written (NaN or -1 for unknown), so repeated calls with
+    // the same value don't cost a CAN frame. See set() and the write
+    // coalescing section.
+    double mOpenLoopRamp = Double.NaN;
+    double mClosedLoopRamp = Double.NaN;
+    double mNominalFwdOutput = Double.NaN;
+    double mNominalRevOutput = Double.NaN;
+    double mPeakFwdOutput = Double.NaN;
+    double mPeakRevOutput = Double.NaN;
+    int mProfileSlot = -1;
+    StatusFrameProfile mStatusFrameProfile = null; // null: firmware defaults
+    // through the coalescing setters. Atomic: the motion profile feeder
+    // thread and the looper both write through this Talon.
+    final AtomicLong mWrites = new AtomicLong();
+    final AtomicLong mSuppressedWrites = new AtomicLong();
+    final TrajectoryPoint mTrajectoryPoint = new TrajectoryPoint(); // reused by pushMotionProfilePoint
+    int mMotionProfilePeriodMS = 0; // while streaming, see configMotionProfilePeriod
 
     /* CANTalon4915 methods ------------------------------------------------ */
     public TalonSRX4915(int deviceNumber)
@@ -173,13 +207,13 @@ public class TalonSRX4915 implements Sendable, MotorSafety
             return;
 
         // power and response ------------------------------------------------------------------
-        mTalon.configClosedloopRamp(.5, timeOutMS); // .5 sec to go from 0 to max
-        mTalon.configOpenloopRamp(.5, timeOutMS);
+        configClosedLoopRamp(.5, timeOutMS); // .5 sec to go from 0 to max
+        configOpenLoopRamp(.5, timeOutMS);
         mTalon.configNeutralDeadband(.04, timeOutMS); // output deadband pct 4% (factory default)
-        mTalon.configNominalOutputForward(0.0, timeOutMS); // [0, 1]
-        mTalon.configNominalOutputReverse(0.0, timeOutMS); // [-1, 0]
-        mTalon.configPeakOutputForward(1.0, timeOutMS);
-        mTalon.configPeakOutputReverse(-1.0, timeOutMS);
+        configNominalOutputForward(0.0, timeOutMS); // [0, 1]
+        configNominalOutputReverse(0.0, timeOutMS); // [-1, 0]
+        configPeakOutputForward(1.0, timeOutMS);
+        configPeakOutputReverse(-1.0, timeOutMS);
 
         // current limits are TalonSRX-specific
         // Configure the continuous allowable current-draw (when current limit is enabled).
@@ -238,35 +272,13 @@ public class TalonSRX4915 implements Sendable, MotorSafety
         mTalon.setNeutralMode(mNeutralMode);
         mTalon.clearStickyFaults(timeOutMS);
 
-        // feedback rate control ----------------------------------------------------------------
-        //  nb: frame periods aren't persistent
-        //  setStatusFramePeriod is used to tradeoff CAN bus utilization for feedback
-        //  period is measured in milliseconds
+        // velocity measurement ------------------------------------------------------------------
+        //  status frame periods are set per use by configStatusFrames
         if (c == Config.kDriveMotor)
         {
             // drive wants very tight feedback
             mTalon.configVelocityMeasurementPeriod(VelocityMeasPeriod.Period_10Ms, timeOutMS);
             mTalon.configVelocityMeasurementWindow(32, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, 5, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_1_General, 5, timeOutMS);
-        }
-        else if (c == Config.kDriveFollowerMotor)
-        {
-            // followers don't need feedback 'tall
-            mTalon.configVelocityMeasurementPeriod(VelocityMeasPeriod.Period_100Ms, timeOutMS);
-            mTalon.configVelocityMeasurementWindow(64, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_1_General, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_4_AinTempVbat, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_6_Misc, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_7_CommStatus, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_9_MotProfBuffer, 1000,
-                    timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_10_MotionMagic, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_12_Feedback1, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_13_Base_PIDF0, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_14_Turn_PIDF1, 1000, timeOutMS);
-            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_3_Quadrature, 1000, timeOutMS);
         }
         else
         {
@@ -277,7 +289,81 @@ public class TalonSRX4915 implements Sendable, MotorSafety
         // Calling application can opt to speed up the handshaking between the robot API and
         // the controller to increase the download rate of the controller's Motion Profile.
         // Ideally the period should be no more than half the period of a trajectory point
-        mTalon.changeMotionControlFramePeriod(100); // millis
+        mTalon.changeMotionControlFramePeriod(sMotionControlFramePeriodMS);
+    }
+
+    // status frames ---------------------------------------------------------------------------
+    //  The Talon broadcasts each status frame at its own period whether
+    //  anyone reads it or not, so every Talon on the bus costs bandwidth.
+    //  We speed up the frames we read and slow down the rest. Periods are
+    //  milliseconds and aren't persistent (checkForReset restores them).
+    //  255 is the slowest: the native API takes the period as a byte, so
+    //  the 1000 ms we used to ask for wasn't 1000 ms.
+    static final int sSlowFramePeriodMS = 255;
+    static final StatusFrameEnhanced[] sProfiledFrames = {
+            StatusFrameEnhanced.Status_1_General, // output, faults, limit switches
+            StatusFrameEnhanced.Status_2_Feedback0, // selected sensor, current
+            StatusFrameEnhanced.Status_3_Quadrature, // raw quadrature
+            StatusFrameEnhanced.Status_4_AinTempVbat, // analog in, temperature, bus voltage
+            StatusFrameEnhanced.Status_6_Misc,
+            StatusFrameEnhanced.Status_7_CommStatus,
+            StatusFrameEnhanced.Status_8_PulseWidth,
+            StatusFrameEnhanced.Status_9_MotProfBuffer, // see configMotionProfilePeriod
+            StatusFrameEnhanced.Status_10_MotionMagic, // active trajectory point
+            StatusFrameEnhanced.Status_12_Feedback1,
+            StatusFrameEnhanced.Status_13_Base_PIDF0, // closed loop error
+            StatusFrameEnhanced.Status_14_Turn_PIDF1,
+    };
+
+    static int getStatusFramePeriodMS(StatusFrameProfile p, StatusFrameEnhanced frame)
+    {
+        switch (p)
+        {
+            case kDriveMaster:
+                // RobotStateEstimator reads the encoders every looper period.
+                if (frame == StatusFrameEnhanced.Status_2_Feedback0)
+                    return 5;
+                if (frame == StatusFrameEnhanced.Status_1_General)
+                    return 10; // output voltage for the dashboard
+                if (frame == StatusFrameEnhanced.Status_4_AinTempVbat)
+                    return 100; // bus voltage, for output voltage
+                return sSlowFramePeriodMS;
+            case kMechanism:
+                if (frame == StatusFrameEnhanced.Status_1_General
+                        || frame == StatusFrameEnhanced.Status_2_Feedback0)
+                    return 20;
+                if (frame == StatusFrameEnhanced.Status_4_AinTempVbat
+                        || frame == StatusFrameEnhanced.Status_10_MotionMagic
+                        || frame == StatusFrameEnhanced.Status_13_Base_PIDF0)
+                    return 160; // factory default
+                return sSlowFramePeriodMS;
+            case kFollower:
+            case kPigeonHost:
+            default:
+                // checkSystem reads output current, seconds apart
+                return sSlowFramePeriodMS;
+        }
+    }
+
+    public void configStatusFrames(StatusFrameProfile p)
+    {
+        mStatusFrameProfile = p;
+        configStatusFrames(sInitTimeoutMS);
+    }
+
+    private void configStatusFrames(int timeOutMS)
+    {
+        if (mTalon == null || mStatusFrameProfile == null)
+            return;
+        for (StatusFrameEnhanced frame : sProfiledFrames)
+        {
+            mTalon.setStatusFramePeriod(frame, getStatusFramePeriodMS(mStatusFrameProfile, frame), timeOutMS);
+        }
+    }
+
+    public StatusFrameProfile getStatusFrameProfile()
+    {
+        return mStatusFrameProfile;
     }
 
     // configMotorAndSensor:
@@ -334,8 +420,8 @@ public class TalonSRX4915 implements Sendable, MotorSafety
     {
         if (mTalon == null)
             return;
-        mTalon.configNominalOutputForward(fwd, sInitTimeoutMS);
-        mTalon.configNominalOutputForward(rev, sInitTimeoutMS);
+        configNominalOutputForward(fwd, sInitTimeoutMS);
+        configNominalOutputReverse(rev, sInitTimeoutMS);
     }
 
     public void configOutputPower(boolean isOpenLoop,
@@ -348,13 +434,13 @@ public class TalonSRX4915 implements Sendable, MotorSafety
         if (mTalon == null)
             return;
         if (isOpenLoop)
-            mTalon.configOpenloopRamp(rampRate, sInitTimeoutMS);
+            configOpenLoopRamp(rampRate, sInitTimeoutMS);
         else
-            mTalon.configClosedloopRamp(rampRate, sInitTimeoutMS);
-        mTalon.configNominalOutputForward(nominalFwdOutput, sInitTimeoutMS);
-        mTalon.configNominalOutputReverse(nominalRevOutput, sInitTimeoutMS);
-        mTalon.configPeakOutputForward(peakFwdOutput, sInitTimeoutMS);
-        mTalon.configPeakOutputReverse(peakRevOutput, sInitTimeoutMS);
+            configClosedLoopRamp(rampRate, sInitTimeoutMS);
+        configNominalOutputForward(nominalFwdOutput, sInitTimeoutMS);
+        configNominalOutputReverse(nominalRevOutput, sInitTimeoutMS);
+        configPeakOutputForward(peakFwdOutput, sInitTimeoutMS);
+        configPeakOutputReverse(peakRevOutput, sInitTimeoutMS);
     }
     
     public void configCurrentLimit(boolean enabled, int continuousLimit,
@@ -390,7 +476,7 @@ public class TalonSRX4915 implements Sendable, MotorSafety
             mTalon.config_kD(slotIdx, d, sUpdateTimeoutMS);
             mTalon.config_kF(slotIdx, f, sUpdateTimeoutMS);
             mTalon.config_IntegralZone(slotIdx, izone, sUpdateTimeoutMS);
-            mTalon.configClosedloopRamp(closedLoopRampRate, sUpdateTimeoutMS); // not a slot-based mod!
+            configClosedLoopRamp(closedLoopRampRate, sUpdateTimeoutMS); // not a slot-based mod!
             mTalon.setIntegralAccumulator(0.0, 0, sUpdateTimeoutMS);
         }
     }
@@ -412,8 +498,15 @@ public class TalonSRX4915 implements Sendable, MotorSafety
     {
         if (mTalon != null)
         {
-            mNeutralMode = s ? NeutralMode.Brake : NeutralMode.Coast;
+            final NeutralMode mode = s ? NeutralMode.Brake : NeutralMode.Coast;
+            if (mode == mNeutralMode)
+            {
+                mSuppressedWrites.incrementAndGet();
+                return;
+            }
+            mNeutralMode = mode;
             mTalon.setNeutralMode(mNeutralMode);
+            mWrites.incrementAndGet();
         }
     }
 
@@ -421,8 +514,14 @@ public class TalonSRX4915 implements Sendable, MotorSafety
     {
         if (mTalon != null)
         {
+            // nb: Phoenix keeps the inversion locally, getInverted is free
+            if (mTalon.getInverted() == s)
+            {
+                mSuppressedWrites.incrementAndGet();
+                return;
+            }
             mTalon.setInverted(s);
-            ;
+            mWrites.incrementAndGet();
         }
     }
 
@@ -494,6 +593,14 @@ public class TalonSRX4915 implements Sendable, MotorSafety
                     .append("  faults: ")
                     .append(dumpFaults())
                     .append("\n")
+                    .append("  writes: ")
+                    .append(mWrites.get())
+                    .append(",  suppressed: ")
+                    .append(mSuppressedWrites.get())
+                    .append("\n")
+                    .append("  status frames: ")
+                    .append(mStatusFrameProfile)
+                    .append("\n")
                     .append("--------------}\n");
             ;
             return sb.toString();
@@ -687,14 +794,7 @@ public class TalonSRX4915 implements Sendable, MotorSafety
         if (mTalon == null)
             return;
         mControlMode = m;
-        if (mSafetyHelper != null)
-            mSafetyHelper.feed();
-        if (value != mLastSetpoint || mControlMode != mLastControlMode)
-        {
-            mTalon.set(mControlMode, value);
-            mLastSetpoint = value;
-            mLastControlMode = mControlMode;
-        }
+        this.set(value);
     }
 
     /**
@@ -709,12 +809,16 @@ public class TalonSRX4915 implements Sendable, MotorSafety
             return;
         if (mSafetyHelper != null)
             mSafetyHelper.feed();
+        checkForReset();
         if (value != mLastSetpoint || mControlMode != mLastControlMode)
         {
             mTalon.set(mControlMode, value);
             mLastSetpoint = value;
             mLastControlMode = mControlMode;
+            mWrites.incrementAndGet();
         }
+        else
+            mSuppressedWrites.incrementAndGet();
     }
 
     public double get()
@@ -722,6 +826,124 @@ public class TalonSRX4915 implements Sendable, MotorSafety
         return mLastSetpoint;
     }
 
+    // write coalescing { ------------------------------------------------------------------
+    //
+    // Subsystems call set() and the config methods every loop, mostly with
+    // the values they sent last time. Like LazySolenoid, we only write what
+    // changed: each write is a CAN frame and config writes also block for
+    // their timeout. A config that fails isn't cached, so it is retried.
+    //
+    // A Talon that resets (eg: on brownout) loses the state that isn't
+    // persistent, so set() checks for that and writes it all again.
+
+    /**
+     * @return writes that went to the Talon through the coalescing setters
+     */
+    public long getWrites()
+    {
+        return mWrites.get();
+    }
+
+    /**
+     * @return writes that were dropped because nothing changed
+     */
+    public long getSuppressedWrites()
+    {
+        return mSuppressedWrites.get();
+    }
+
+    private void checkForReset()
+    {
+        if (!mTalon.hasResetOccurred())
+            return;
+        Logger.warning(mDescription + " reset detected, restoring state");
+        mLastControlMode = ControlMode.Disabled; // next set() is written
+        mTalon.setNeutralMode(mNeutralMode);
+        mTalon.setInverted(mTalon.getInverted());
+        if (mProfileSlot >= 0)
+            mTalon.selectProfileSlot(mProfileSlot, sPidIdx);
+        mOpenLoopRamp = mClosedLoopRamp = Double.NaN;
+        mNominalFwdOutput = mNominalRevOutput = Double.NaN;
+        mPeakFwdOutput = mPeakRevOutput = Double.NaN;
+        configStatusFrames(sUpdateTimeoutMS);
+        if (mMotionProfilePeriodMS > 0)
+            mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_9_MotProfBuffer, mMotionProfilePeriodMS,
+                    sUpdateTimeoutMS);
+    }
+
+    private void configOpenLoopRamp(double secondsToFull, int timeOutMS)
+    {
+        if (secondsToFull == mOpenLoopRamp)
+        {
+            mSuppressedWrites.incrementAndGet();
+            return;
+        }
+        final ErrorCode err = mTalon.configOpenloopRamp(secondsToFull, timeOutMS);
+        mOpenLoopRamp = (err == ErrorCode.OK) ? secondsToFull : Double.NaN;
+        mWrites.incrementAndGet();
+    }
+
+    private void configClosedLoopRamp(double secondsToFull, int timeOutMS)
+    {
+        if (secondsToFull == mClosedLoopRamp)
+        {
+            mSuppressedWrites.incrementAndGet();
+            return;
+        }
+        final ErrorCode err = mTalon.configClosedloopRamp(secondsToFull, timeOutMS);
+        mClosedLoopRamp = (err == ErrorCode.OK) ? secondsToFull : Double.NaN;
+        mWrites.incrementAndGet();
+    }
+
+    private void configNominalOutputForward(double output, int timeOutMS)
+    {
+        if (output == mNominalFwdOutput)
+        {
+            mSuppressedWrites.incrementAndGet();
+            return;
+        }
+        final ErrorCode err = mTalon.configNominalOutputForward(output, timeOutMS);
+        mNominalFwdOutput = (err == ErrorCode.OK) ? output : Double.NaN;
+        mWrites.incrementAndGet();
+    }
+
+    private void configNominalOutputReverse(double output, int timeOutMS)
+    {
+        if (output == mNominalRevOutput)
+        {
+            mSuppressedWrites.incrementAndGet();
+            return;
+        }
+        final ErrorCode err = mTalon.configNominalOutputReverse(output, timeOutMS);
+        mNominalRevOutput = (err == ErrorCode.OK) ? output : Double.NaN;
+        mWrites.incrementAndGet();
+    }
+
+    private void configPeakOutputForward(double output, int timeOutMS)
+    {
+        if (output == mPeakFwdOutput)
+        {
+            mSuppressedWrites.incrementAndGet();
+            return;
+        }
+        final ErrorCode err = mTalon.configPeakOutputForward(output, timeOutMS);
+        mPeakFwdOutput = (err == ErrorCode.OK) ? output : Double.NaN;
+        mWrites.incrementAndGet();
+    }
+
+    private void configPeakOutputReverse(double output, int timeOutMS)
+    {
+        if (output == mPeakRevOutput)
+        {
+            mSuppressedWrites.incrementAndGet();
+            return;
+        }
+        final ErrorCode err = mTalon.configPeakOutputReverse(output, timeOutMS);
+        mPeakRevOutput = (err == ErrorCode.OK) ? output : Double.NaN;
+        mWrites.incrementAndGet();
+    }
+    // } write coalescing
+
     public double getSetpointRPM()
     {
         if (mControlMode == ControlMode.Velocity)
@@ -782,6 +1004,117 @@ public class TalonSRX4915 implements Sendable, MotorSafety
             return 0.0;
     }
 
+    // motion profile ----------------------------------------------------
+    // The Talon executes trajectory points from its own (bottom) buffer.
+    // We push points into the API's top buffer, processMotionProfileBuffer
+    // moves them across CAN as room allows. Points are executed once
+    // MotionProfile output is Enabled, an empty bottom buffer underruns.
+    // Phoenix says these calls are thread-safe, but getMotionProfileStatus
+    // shares a scratch array, so keep them all on one (feeder) thread.
+    // See TalonSRX4915Drive.beginMotionProfile.
+
+    /**
+     * Sets the period of every trajectory point and has the API stream
+     * points to the Talon at twice that rate. The buffer status frame
+     * speeds up to one per point until endMotionProfile.
+     */
+    public void configMotionProfilePeriod(int periodMS)
+    {
+        if (mTalon == null)
+            return;
+        mMotionProfilePeriodMS = periodMS;
+        mTalon.configMotionProfileTrajectoryPeriod(periodMS, sUpdateTimeoutMS);
+        mTalon.changeMotionControlFramePeriod(Math.max(1, periodMS / 2));
+        mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_9_MotProfBuffer, periodMS, sUpdateTimeoutMS);
+    }
+
+    /**
+     * Empties both trajectory buffers and switches to MotionProfile mode
+     * with output disabled (neutral), ready for points.
+     */
+    public void beginMotionProfile()
+    {
+        if (mTalon == null)
+            return;
+        mTalon.clearMotionProfileTrajectories();
+        mTalon.clearMotionProfileHasUnderrun(sUpdateTimeoutMS);
+        this.set(ControlMode.MotionProfile, SetValueMotionProfile.Disable.value);
+    }
+
+    /**
+     * Pushes a point into the top buffer. Uses the period set by
+     * configMotionProfilePeriod.
+     *
+     * @return false if the top buffer is full
+     */
+    public boolean pushMotionProfilePoint(double positionRotations, double velocityRPM, int slotIdx,
+            boolean isLast)
+    {
+        if (mTalon == null)
+            return false;
+        mTrajectoryPoint.position = rotationsToNative(positionRotations);
+        mTrajectoryPoint.velocity = rpmToNativeVelocity(velocityRPM);
+        mTrajectoryPoint.headingDeg = 0;
+        mTrajectoryPoint.profileSlotSelect0 = slotIdx;
+        mTrajectoryPoint.profileSlotSelect1 = 0;
+        mTrajectoryPoint.isLastPoint = isLast;
+        mTrajectoryPoint.zeroPos = false;
+        mTrajectoryPoint.timeDur = TrajectoryDuration.Trajectory_Duration_0ms; // added to the period
+        return mTalon.pushMotionProfileTrajectory(mTrajectoryPoint) == ErrorCode.OK;
+    }
+
+    public boolean isMotionProfileTopBufferFull()
+    {
+        if (mTalon == null)
+            return true;
+        return mTalon.isMotionProfileTopLevelBufferFull();
+    }
+
+    /**
+     * Moves points from the top buffer to the Talon, call at least twice
+     * per trajectory point.
+     */
+    public void processMotionProfileBuffer()
+    {
+        if (mTalon == null)
+            return;
+        mTalon.processMotionProfileBuffer();
+    }
+
+    public void getMotionProfileStatus(MotionProfileStatus status)
+    {
+        if (mTalon == null)
+            return;
+        mTalon.getMotionProfileStatus(status);
+    }
+
+    /**
+     * Enable executes points, Hold servoes to the active point and Disable
+     * is neutral.
+     */
+    public void setMotionProfileOutput(SetValueMotionProfile value)
+    {
+        this.set(ControlMode.MotionProfile, value.value);
+    }
+
+    /**
+     * Sets output neutral, stops streaming points at the profile rate and
+     * slows the buffer status frame back down to its profile's period.
+     */
+    public void endMotionProfile()
+    {
+        setMotionProfileOutput(SetValueMotionProfile.Disable);
+        mMotionProfilePeriodMS = 0;
+        if (mTalon == null)
+            return;
+        mTalon.changeMotionControlFramePeriod(sMotionControlFramePeriodMS);
+        if (mStatusFrameProfile == null)
+            return;
+        mTalon.setStatusFramePeriod(StatusFrameEnhanced.Status_9_MotProfBuffer,
+                getStatusFramePeriodMS(mStatusFrameProfile, StatusFrameEnhanced.Status_9_MotProfBuffer),
+                sUpdateTimeoutMS);
+    }
+
     // sensor/encoder set/query ----------------------------------------
     public void resetSensor()
     {
@@ -844,7 +1177,14 @@ public class TalonSRX4915 implements Sendable, MotorSafety
     {
         if (mTalon != null)
         {
+            if (slotIdx == mProfileSlot)
+            {
+                mSuppressedWrites.incrementAndGet();
+                return;
+            }
             mTalon.selectProfileSlot(slotIdx, sPidIdx);
+            mProfileSlot = slotIdx;
+            mWrites.incrementAndGet();
         }
     }
 
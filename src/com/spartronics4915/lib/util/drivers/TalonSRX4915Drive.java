@@ -1,10 +1,15 @@
 package com.spartronics4915.lib.util.drivers;
 
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
 import com.ctre.phoenix.sensors.PigeonIMU;
 import com.ctre.phoenix.sensors.PigeonIMU.PigeonState;
+import com.spartronics4915.lib.util.CrashTrackingRunnable;
 import com.spartronics4915.lib.util.Logger;
 import com.spartronics4915.lib.util.Util;
+import com.spartronics4915.lib.util.control.WheelProfile;
 
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
@@ -19,6 +24,10 @@ import com.ctre.phoenix.motorcontrol.FeedbackDevice;
  * motors and that these are speced & mounted following 4915
  * conventions.
  *
+ * Paths can be streamed into the masters' motion profile buffers
+ * (beginMotionProfile), in which case the Talons run the profile on their
+ * own and a Notifier thread keeps their buffers topped up.
+ *
  * Future plans
  * - add support for low/high gear shifter
  **/
@@ -49,6 +58,23 @@ public class TalonSRX4915Drive
     private boolean mInitialized;
     private double mWheelDiameterInches;
 
+    // motion profile streaming, see beginMotionProfile
+    private static final int kMinBufferedPoints = 5; // in each Talon before we enable
+    private final Object mProfileLock = new Object();
+    private Notifier mProfileNotifier = null; // created on first use
+    private WheelProfile mProfile = null; // being streamed
+    private int mProfileSlot;
+    private int mNextPoint; // next to push into the top buffers
+    private double mLeftStartRotations;
+    private double mRightStartRotations;
+    private boolean mProfileEnabled;
+    private final MotionProfileStatus mLeftStatus = new MotionProfileStatus();
+    private final MotionProfileStatus mRightStatus = new MotionProfileStatus();
+    // written by the feeder, read by anyone
+    private volatile double mProfileStartTime = Double.NaN;
+    private volatile boolean mProfileFinished;
+    private volatile boolean mProfileUnderrun;
+
     public TalonSRX4915Drive(double wheelDiameterInches,
             int encoderCodesPerRev,
             int leftMasterId, int leftSlaveId,
@@ -78,19 +104,29 @@ public class TalonSRX4915Drive
         mLeftMaster.configMotorAndSensor(invertLeft,
                 FeedbackDevice.QuadEncoder, invertLeft/* phase */,
                 mQuadCodesPerRev);
-        mLeftSlave = TalonSRX4915Factory.createDefaultSlave(leftSlaveId, leftMasterId,
-                invertLeft);
         if (pigeonHostId == leftSlaveId)
+        {
+            mLeftSlave = TalonSRX4915Factory.createPigeonHostSlave(leftSlaveId, leftMasterId,
+                    invertLeft);
             pigeonTalon = mLeftSlave;
+        }
+        else
+            mLeftSlave = TalonSRX4915Factory.createDefaultSlave(leftSlaveId, leftMasterId,
+                    invertLeft);
 
         mRightMaster = TalonSRX4915Factory.createDefaultDrive(rightMasterId);
         mRightMaster.configMotorAndSensor(invertRight,
                 FeedbackDevice.QuadEncoder, invertRight/* phase */,
                 mQuadCodesPerRev);
-        mRightSlave = TalonSRX4915Factory.createDefaultSlave(rightSlaveId, rightMasterId,
-                invertRight);
         if (pigeonHostId == rightSlaveId)
+        {
+            mRightSlave = TalonSRX4915Factory.createPigeonHostSlave(rightSlaveId, rightMasterId,
+                    invertRight);
             pigeonTalon = mRightSlave;
+        }
+        else
+            mRightSlave = TalonSRX4915Factory.createDefaultSlave(rightSlaveId, rightMasterId,
+                    invertRight);
 
         if (mLeftMaster.isValid() && mLeftSlave.isValid() &&
                 mRightMaster.isValid() && mRightSlave.isValid())
@@ -98,7 +134,7 @@ public class TalonSRX4915Drive
             mInitialized = true;
             if (pigeonTalon != null)
             {
-                mIMU = new PigeonIMU(pigeonTalon.getTalon());
+                mIMU = TalonSRX4915Factory.createPigeonIMU(pigeonTalon);
                 if (mIMU.getState() == PigeonState.NoComm)
                 {
                     mIMU = null; // caller should report error checking hasIMU
@@ -122,6 +158,7 @@ public class TalonSRX4915Drive
     /* drive methods (typically called via looper) -------------------------- */
     public void stop()
     {
+        endMotionProfile();
         mLeftMaster.stopMotor();
         mRightMaster.stopMotor();
     }
@@ -129,6 +166,7 @@ public class TalonSRX4915Drive
     public void beginOpenLoop(double rampRate,
             double nominalOutput, double peakOutput)
     {
+        endMotionProfile();
         mLeftMaster.configOutputPower(true, /* isOpenLoop */
                 rampRate,
                 nominalOutput, peakOutput, // fwd
@@ -161,6 +199,7 @@ public class TalonSRX4915Drive
 
     public void beginClosedLoopVelocity(int slotIdx, double nominalOutput)
     {
+        endMotionProfile();
         mLeftMaster.setControlMode(ControlMode.Velocity);
         mLeftMaster.selectProfileSlot(slotIdx);
         mLeftMaster.configNominalOutput(nominalOutput, -nominalOutput);
@@ -179,6 +218,7 @@ public class TalonSRX4915Drive
     public void beginClosedLoopPosition(int slotIdx, double nominalOutput,
             double maxVelocityRPM, double maxAccelRPMPerSec)
     {
+        endMotionProfile();
         mLeftMaster.setControlMode(ControlMode.MotionMagic);
         mLeftMaster.selectProfileSlot(slotIdx);
         mLeftMaster.configNominalOutput(nominalOutput, -nominalOutput);
@@ -196,6 +236,148 @@ public class TalonSRX4915Drive
         mRightMaster.setPositionRotations(inchesToRotations(right));
     }
 
+    /**
+     * Streams profile into the masters' motion profile buffers, starting
+     * from the wheels' current positions. Each point is a position servo
+     * (slotIdx PID) with its velocity as feedforward (slotIdx F). The
+     * Talons start once they have a few points buffered and hold the last
+     * point when done. Ends at stop() or any other begin.
+     *
+     * @param profile
+     *        getDt() must be a whole number of milliseconds
+     */
+    public void beginMotionProfile(int slotIdx, WheelProfile profile)
+    {
+        endMotionProfile();
+        final int periodMS = (int) Math.round(profile.getDt() * 1000);
+        synchronized (mProfileLock)
+        {
+            mLeftMaster.selectProfileSlot(slotIdx);
+            mLeftMaster.configMotionProfilePeriod(periodMS);
+            mLeftMaster.beginMotionProfile();
+            mRightMaster.selectProfileSlot(slotIdx);
+            mRightMaster.configMotionProfilePeriod(periodMS);
+            mRightMaster.beginMotionProfile();
+            mLeftStartRotations = mLeftMaster.getSensorPositionRotations();
+            mRightStartRotations = mRightMaster.getSensorPositionRotations();
+            mProfile = profile;
+            mProfileSlot = slotIdx;
+            mNextPoint = 0;
+            mProfileEnabled = false;
+            mProfileStartTime = Double.NaN;
+            mProfileFinished = false;
+            mProfileUnderrun = false;
+        }
+        if (mProfileNotifier == null)
+        {
+            mProfileNotifier = new Notifier(new CrashTrackingRunnable()
+            {
+
+                @Override
+                public void runCrashTracked()
+                {
+                    feedMotionProfile();
+                }
+            });
+        }
+        // twice per point, per processMotionProfileBuffer
+        mProfileNotifier.startPeriodic(profile.getDt() / 2);
+    }
+
+    /**
+     * Stops streaming and sets the masters neutral, the profile counts as
+     * finished. Harmless when no profile is running.
+     */
+    public void endMotionProfile()
+    {
+        if (mProfileNotifier != null)
+            mProfileNotifier.stop();
+        synchronized (mProfileLock) // after any feed in progress
+        {
+            if (mProfile == null)
+                return;
+            mProfile = null;
+            mProfileFinished = true;
+            mLeftMaster.endMotionProfile();
+            mRightMaster.endMotionProfile();
+        }
+    }
+
+    /**
+     * @return true once both masters are holding the last point (or the
+     *         profile was ended)
+     */
+    public boolean isMotionProfileFinished()
+    {
+        return mProfileFinished;
+    }
+
+    /**
+     * @return true if either master ran out of points mid profile (the
+     *         feeder fell behind)
+     */
+    public boolean hasMotionProfileUnderrun()
+    {
+        return mProfileUnderrun;
+    }
+
+    /**
+     * @return seconds since the masters started executing the profile, 0
+     *         until they have
+     */
+    public double getMotionProfileTime()
+    {
+        final double start = mProfileStartTime;
+        return Double.isNaN(start) ? 0.0 : Timer.getFPGATimestamp() - start;
+    }
+
+    // Runs on the Notifier thread. The only place we touch the masters'
+    // motion profile state while streaming.
+    private void feedMotionProfile()
+    {
+        synchronized (mProfileLock)
+        {
+            if (mProfile == null)
+                return;
+            while (mNextPoint < mProfile.size() && !mLeftMaster.isMotionProfileTopBufferFull()
+                    && !mRightMaster.isMotionProfileTopBufferFull())
+            {
+                final boolean isLast = mNextPoint == mProfile.size() - 1;
+                mLeftMaster.pushMotionProfilePoint(
+                        mLeftStartRotations + inchesToRotations(mProfile.getLeftPosition(mNextPoint)),
+                        inchesPerSecondToRpm(mProfile.getLeftVelocity(mNextPoint)), mProfileSlot, isLast);
+                mRightMaster.pushMotionProfilePoint(
+                        mRightStartRotations + inchesToRotations(mProfile.getRightPosition(mNextPoint)),
+                        inchesPerSecondToRpm(mProfile.getRightVelocity(mNextPoint)), mProfileSlot, isLast);
+                mNextPoint++;
+            }
+            mLeftMaster.processMotionProfileBuffer();
+            mRightMaster.processMotionProfileBuffer();
+            mLeftMaster.getMotionProfileStatus(mLeftStatus);
+            mRightMaster.getMotionProfileStatus(mRightStatus);
+            if (mLeftStatus.hasUnderrun || mRightStatus.hasUnderrun)
+                mProfileUnderrun = true;
+
+            if (!mProfileEnabled)
+            {
+                // Prime both so they start together and don't underrun.
+                final int primed = Math.min(kMinBufferedPoints, mProfile.size());
+                if (mLeftStatus.btmBufferCnt >= primed && mRightStatus.btmBufferCnt >= primed)
+                {
+                    mLeftMaster.setMotionProfileOutput(SetValueMotionProfile.Enable);
+                    mRightMaster.setMotionProfileOutput(SetValueMotionProfile.Enable);
+                    mProfileEnabled = true;
+                    mProfileStartTime = Timer.getFPGATimestamp();
+                }
+            }
+            else if (mLeftStatus.activePointValid && mLeftStatus.isLast
+                    && mRightStatus.activePointValid && mRightStatus.isLast)
+            {
+                mProfileFinished = true;
+            }
+        }
+    }
+
     /* distance and speed conversions ----------------------------------- */
     public double getLeftDistanceInches()
     {
@@ -331,7 +513,15 @@ public class TalonSRX4915Drive
             SmartDashboard.putNumber("Drive/leftTargetPt", mLeftMaster.getSetpointRotations());
             SmartDashboard.putNumber("Drive/rightTargetPt", mRightMaster.getSetpointRotations());
         }
+        else if (mLeftMaster.mControlMode == ControlMode.MotionProfile)
+        {
+            SmartDashboard.putBoolean("Drive/profileUnderrun", mProfileUnderrun);
+        }
         SmartDashboard.putNumber("Drive/IMU_Heading", getGyroAngle());
+        // CAN frames saved by TalonSRX4915's write coalescing
+        SmartDashboard.putNumber("Drive/suppressedWrites",
+                mLeftMaster.getSuppressedWrites() + mRightMaster.getSuppressedWrites()
+                        + mLeftSlave.getSuppressedWrites() + mRightSlave.getSuppressedWrites());
     }
 
     public boolean checkSystem(String variant)
@@ -1,11 +1,14 @@
 package com.spartronics4915.lib.util.drivers;
 
 import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.sensors.PigeonIMU;
+import com.ctre.phoenix.sensors.PigeonIMU_StatusFrame;
 
 /**
  * Creates CANTalon objects and configures all the parameters we care about to
  * factory defaults. Closed-loop and sensor
  * parameters are not set, as these are expected to be set by the application.
+ * Status frame rates are set by use (TalonSRX4915.StatusFrameProfile).
  */
 public class TalonSRX4915Factory
 {
@@ -14,6 +17,7 @@ public class TalonSRX4915Factory
     public static TalonSRX4915 createDefaultMotor(int id)
     {
         TalonSRX4915 talon = createTalon(id, TalonSRX4915.Config.kDefaultMotor);
+        talon.configStatusFrames(TalonSRX4915.StatusFrameProfile.kMechanism);
         talon.setControlMode(ControlMode.PercentOutput);
         return talon;
     }
@@ -21,6 +25,7 @@ public class TalonSRX4915Factory
     public static TalonSRX4915 createDefaultDrive(int id)
     {
         TalonSRX4915 talon = createTalon(id, TalonSRX4915.Config.kDriveMotor);
+        talon.configStatusFrames(TalonSRX4915.StatusFrameProfile.kDriveMaster);
         talon.setControlMode(ControlMode.PercentOutput);
         return talon;
     }
@@ -28,10 +33,43 @@ public class TalonSRX4915Factory
     public static TalonSRX4915 createDefaultSlave(int id, int masterId, boolean isInverted)
     {
         TalonSRX4915 talon = createTalon(id, TalonSRX4915.Config.kDriveFollowerMotor);
+        talon.configStatusFrames(TalonSRX4915.StatusFrameProfile.kFollower);
         talon.configFollower(masterId, isInverted);
         return talon;
     }
 
+    // A slave with a Pigeon on its ribbon cable, see createPigeonIMU.
+    public static TalonSRX4915 createPigeonHostSlave(int id, int masterId, boolean isInverted)
+    {
+        TalonSRX4915 talon = createTalon(id, TalonSRX4915.Config.kDriveFollowerMotor);
+        talon.configStatusFrames(TalonSRX4915.StatusFrameProfile.kPigeonHost);
+        talon.configFollower(masterId, isInverted);
+        return talon;
+    }
+
+    /**
+     * Creates the Pigeon wired to host and sets its frame rates: we only
+     * read yaw (getYawPitchRoll), which odometry wants every looper period.
+     * General (state) stays at its default.
+     */
+    public static PigeonIMU createPigeonIMU(TalonSRX4915 host)
+    {
+        PigeonIMU imu = new PigeonIMU(host.getTalon());
+        final int slowMS = TalonSRX4915.sSlowFramePeriodMS;
+        final int timeoutMS = TalonSRX4915.sInitTimeoutMS;
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_9_SixDeg_YPR, 5, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_6_SensorFusion, slowMS, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_11_GyroAccum, slowMS, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_2_GeneralCompass, slowMS, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_3_GeneralAccel, slowMS, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_10_SixDeg_Quat, slowMS, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.RawStatus_4_Mag, slowMS, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.BiasedStatus_2_Gyro, slowMS, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.BiasedStatus_4_Mag, slowMS, timeoutMS);
+        imu.setStatusFramePeriod(PigeonIMU_StatusFrame.BiasedStatus_6_Accel, slowMS, timeoutMS);
+        return imu;
+    }
+
     public static TalonSRX4915 createTalon(int id, TalonSRX4915.Config config)
     {
         TalonSRX4915 talon = new TalonSRX4915(id, config);
@@ -0,0 +1,175 @@
+package com.spartronics4915.lib.util.math;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A quintic Hermite spline between two poses, parameterized by t in [0, 1].
+ * Each end is pinned by a position, a first derivative (the pose's heading,
+ * scaled by the distance between the ends) and a second derivative, which
+ * we choose so the spline has a given curvature there.
+ *
+ * A single spline has zero curvature at both ends. Use chain to build
+ * splines through several poses: it estimates the curvature at each
+ * interior pose from its neighbours and gives both adjacent splines that
+ * curvature, so the whole path is curvature continuous (unlike line + arc
+ * paths, where it jumps at every tangent point) without flattening out at
+ * every waypoint.
+ */
+public class QuinticHermiteSpline
+{
+
+    private static final double kTangentScale = 1.2;
+
+    // x(t) = ax t^5 + bx t^4 + cx t^3 + dx t^2 + ex t + fx, same for y
+    private final double mAx, mBx, mCx, mDx, mEx, mFx;
+    private final double mAy, mBy, mCy, mDy, mEy, mFy;
+
+    public QuinticHermiteSpline(RigidTransform2d p0, RigidTransform2d p1)
+    {
+        this(p0, p1, 0, 0);
+    }
+
+    /**
+     * @param curvature0 signed curvature (1 / radius, positive turning left)
+     *            at p0
+     * @param curvature1 same, at p1
+     */
+    public QuinticHermiteSpline(RigidTransform2d p0, RigidTransform2d p1, double curvature0, double curvature1)
+    {
+        final double x0 = p0.getTranslation().x();
+        final double y0 = p0.getTranslation().y();
+        final double x1 = p1.getTranslation().x();
+        final double y1 = p1.getTranslation().y();
+        final double scale = kTangentScale * getChord(p0, p1);
+        final double cos0 = p0.getRotation().cos(), sin0 = p0.getRotation().sin();
+        final double cos1 = p1.getRotation().cos(), sin1 = p1.getRotation().sin();
+        final double dx0 = cos0 * scale;
+        final double dy0 = sin0 * scale;
+        final double dx1 = cos1 * scale;
+        final double dy1 = sin1 * scale;
+        // all normal to the heading: |v x a| / |v|^3 = curvature
+        final double ddx0 = -sin0 * curvature0 * scale * scale;
+        final double ddy0 = cos0 * curvature0 * scale * scale;
+        final double ddx1 = -sin1 * curvature1 * scale * scale;
+        final double ddy1 = cos1 * curvature1 * scale * scale;
+
+        mAx = -6 * x0 - 3 * dx0 - 0.5 * ddx0 + 0.5 * ddx1 - 3 * dx1 + 6 * x1;
+        mBx = 15 * x0 + 8 * dx0 + 1.5 * ddx0 - ddx1 + 7 * dx1 - 15 * x1;
+        mCx = -10 * x0 - 6 * dx0 - 1.5 * ddx0 + 0.5 * ddx1 - 4 * dx1 + 10 * x1;
+        mDx = 0.5 * ddx0;
+        mEx = dx0;
+        mFx = x0;
+
+        mAy = -6 * y0 - 3 * dy0 - 0.5 * ddy0 + 0.5 * ddy1 - 3 * dy1 + 6 * y1;
+        mBy = 15 * y0 + 8 * dy0 + 1.5 * ddy0 - ddy1 + 7 * dy1 - 15 * y1;
+        mCy = -10 * y0 - 6 * dy0 - 1.5 * ddy0 + 0.5 * ddy1 - 4 * dy1 + 10 * y1;
+        mDy = 0.5 * ddy0;
+        mEy = dy0;
+        mFy = y0;
+    }
+
+    private static double getChord(RigidTransform2d p0, RigidTransform2d p1)
+    {
+        return Math.hypot(p1.getTranslation().x() - p0.getTranslation().x(),
+                p1.getTranslation().y() - p0.getTranslation().y());
+    }
+
+    // Length of the circular arc from p0 to p1 turning through the change in
+    // heading between them: chord * (dtheta / 2) / sin(dtheta / 2).
+    private static double getArcLength(RigidTransform2d p0, RigidTransform2d p1)
+    {
+        final double halfTurn = Math.abs(p0.getRotation().inverse().rotateBy(p1.getRotation()).getRadians()) / 2;
+        final double chord = getChord(p0, p1);
+        if (halfTurn < 1E-9)
+            return chord;
+        return chord * halfTurn / Math.sin(halfTurn);
+    }
+
+    /**
+     * Splines through consecutive poses, curvature continuous at the
+     * interior ones and with zero curvature at the first and last.
+     *
+     * The curvature at an interior pose is estimated from its neighbours as
+     * the change in heading from the previous pose to the next over the
+     * distance between them (a central difference of dtheta/ds). Each
+     * distance is the length of the circular arc that turns through that
+     * side's heading change over its chord, rather than the chord itself,
+     * so the estimate is exact for poses on a circle.
+     */
+    public static List<QuinticHermiteSpline> chain(List<RigidTransform2d> poses)
+    {
+        final int n = poses.size();
+        final double[] curvatures = new double[n];
+        for (int i = 1; i < n - 1; i++)
+        {
+            final RigidTransform2d prev = poses.get(i - 1);
+            final RigidTransform2d knot = poses.get(i);
+            final RigidTransform2d next = poses.get(i + 1);
+            final double ds = getArcLength(prev, knot) + getArcLength(knot, next);
+            if (ds > 1E-9)
+                curvatures[i] = prev.getRotation().inverse().rotateBy(next.getRotation()).getRadians() / ds;
+        }
+        final List<QuinticHermiteSpline> splines = new ArrayList<>();
+        for (int i = 0; i < n - 1; i++)
+        {
+            splines.add(new QuinticHermiteSpline(poses.get(i), poses.get(i + 1), curvatures[i], curvatures[i + 1]));
+        }
+        return splines;
+    }
+
+    public Translation2d getPoint(double t)
+    {
+        return getPoint(t, new Translation2d());
+    }
+
+    /**
+     * Allocation-free version of getPoint.
+     *
+     * @return out
+     */
+    public Translation2d getPoint(double t, Translation2d out)
+    {
+        return out.set(((((mAx * t + mBx) * t + mCx) * t + mDx) * t + mEx) * t + mFx,
+                ((((mAy * t + mBy) * t + mCy) * t + mDy) * t + mEy) * t + mFy);
+    }
+
+    private double dx(double t)
+    {
+        return (((5 * mAx * t + 4 * mBx) * t + 3 * mCx) * t + 2 * mDx) * t + mEx;
+    }
+
+    private double dy(double t)
+    {
+        return (((5 * mAy * t + 4 * mBy) * t + 3 * mCy) * t + 2 * mDy) * t + mEy;
+    }
+
+    private double ddx(double t)
+    {
+        return ((20 * mAx * t + 12 * mBx) * t + 6 * mCx) * t + 2 * mDx;
+    }
+
+    private double ddy(double t)
+    {
+        return ((20 * mAy * t + 12 * mBy) * t + 6 * mCy) * t + 2 * mDy;
+    }
+
+    /**
+     * @return the direction of travel at t
+     */
+    public Rotation2d getHeading(double t)
+    {
+        return new Rotation2d(dx(t), dy(t), true);
+    }
+
+    /**
+     * @return signed curvature (1 / radius, positive turning left) at t
+     */
+    public double getCurvature(double t)
+    {
+        final double vx = dx(t);
+        final double vy = dy(t);
+        final double speed = Math.hypot(vx, vy);
+        return (vx * ddy(t) - vy * ddx(t)) / (speed * speed * speed);
+    }
+}
@@ -78,6 +78,31 @@ public class RigidTransform2d implements Interpolable<RigidTransform2d>
                 new Rotation2d(cos_theta, sin_theta, false));
     }
 
+    /**
+     * Allocation-free version of exp; see set() for the caveats on out.
+     * 
+     * @return out
+     */
+    public static RigidTransform2d exp(Twist2d delta, RigidTransform2d out)
+    {
+        double sin_theta = Math.sin(delta.dtheta);
+        double cos_theta = Math.cos(delta.dtheta);
+        double s, c;
+        if (Math.abs(delta.dtheta) < kEps)
+        {
+            s = 1.0 - 1.0 / 6.0 * delta.dtheta * delta.dtheta;
+            c = .5 * delta.dtheta;
+        }
+        else
+        {
+            s = sin_theta / delta.dtheta;
+            c = (1.0 - cos_theta) / delta.dtheta;
+        }
+        out.translation_.set(delta.dx * s - delta.dy * c, delta.dx * c + delta.dy * s);
+        out.rotation_.set(cos_theta, sin_theta, false);
+        return out;
+    }
+
     /**
      * Logical inverse of the above.
      */
@@ -120,6 +145,27 @@ public class RigidTransform2d implements Interpolable<RigidTransform2d>
         rotation_ = rotation;
     }
 
+    /**
+     * Overwrites this transform in place by writing into its translation and
+     * rotation. The allocation-free ("into") methods below are built on
+     * this, so their out argument must be a scratch transform you own and
+     * whose components aren't shared with anything else, eg: one made with
+     * new RigidTransform2d() or the copy constructor. Never pass identity().
+     * 
+     * @return this
+     */
+    public RigidTransform2d set(double x, double y, double cos, double sin)
+    {
+        translation_.set(x, y);
+        rotation_.set(cos, sin, false);
+        return this;
+    }
+
+    public RigidTransform2d set(RigidTransform2d other)
+    {
+        return set(other.translation_.x(), other.translation_.y(), other.rotation_.cos(), other.rotation_.sin());
+    }
+
     /**
      * Transforming this RigidTransform2d means first translating by
      * other.translation and then rotating by
@@ -135,6 +181,24 @@ public class RigidTransform2d implements Interpolable<RigidTransform2d>
                 rotation_.rotateBy(other.rotation_));
     }
 
+    /**
+     * Allocation-free version of transformBy. out may be this or other.
+     * 
+     * @return out
+     */
+    public RigidTransform2d transformBy(RigidTransform2d other, RigidTransform2d out)
+    {
+        final double cos = rotation_.cos();
+        final double sin = rotation_.sin();
+        final double ox = other.translation_.x();
+        final double oy = other.translation_.y();
+        final double oc = other.rotation_.cos();
+        final double os = other.rotation_.sin();
+        out.translation_.set(translation_.x() + ox * cos - oy * sin, translation_.y() + ox * sin + oy * cos);
+        out.rotation_.set(cos * oc - sin * os, cos * os + sin * oc, true);
+        return out;
+    }
+
     /**
      * The inverse of this transform "undoes" the effect of translating by this
      * transform.
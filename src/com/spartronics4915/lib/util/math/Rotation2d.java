@@ -84,6 +84,28 @@ public class Rotation2d implements Interpolable<Rotation2d>
         }
     }
 
+    /**
+     * Overwrites this rotation. Only use this on instances you own (eg:
+     * scratch objects); most code treats Rotation2d as immutable.
+     * 
+     * @return this
+     */
+    public Rotation2d set(double x, double y, boolean normalize)
+    {
+        cos_angle_ = x;
+        sin_angle_ = y;
+        if (normalize)
+        {
+            normalize();
+        }
+        return this;
+    }
+
+    public Rotation2d set(Rotation2d other)
+    {
+        return set(other.cos_angle_, other.sin_angle_, false);
+    }
+
     public double cos()
     {
         return cos_angle_;
@@ -135,6 +157,17 @@ public class Rotation2d implements Interpolable<Rotation2d>
                 cos_angle_ * other.sin_angle_ + sin_angle_ * other.cos_angle_, true);
     }
 
+    /**
+     * Allocation-free version of rotateBy. out may be this or other.
+     * 
+     * @return out
+     */
+    public Rotation2d rotateBy(Rotation2d other, Rotation2d out)
+    {
+        return out.set(cos_angle_ * other.cos_angle_ - sin_angle_ * other.sin_angle_,
+                cos_angle_ * other.sin_angle_ + sin_angle_ * other.cos_angle_, true);
+    }
+
     public Rotation2d normal()
     {
         return new Rotation2d(-sin_angle_, cos_angle_, false);
@@ -80,6 +80,24 @@ public class Translation2d implements Interpolable<Translation2d>
         y_ = y;
     }
 
+    /**
+     * Overwrites this translation. Only use this on instances you own (eg:
+     * scratch objects); most code treats Translation2d as immutable.
+     * 
+     * @return this
+     */
+    public Translation2d set(double x, double y)
+    {
+        x_ = x;
+        y_ = y;
+        return this;
+    }
+
+    public Translation2d set(Translation2d other)
+    {
+        return set(other.x_, other.y_);
+    }
+
     /**
      * We can compose Translation2d's by adding together the x and y shifts.
      * 
@@ -92,6 +110,16 @@ public class Translation2d implements Interpolable<Translation2d>
         return new Translation2d(x_ + other.x_, y_ + other.y_);
     }
 
+    /**
+     * Allocation-free version of translateBy. out may be this or other.
+     * 
+     * @return out
+     */
+    public Translation2d translateBy(Translation2d other, Translation2d out)
+    {
+        return out.set(x_ + other.x_, y_ + other.y_);
+    }
+
     /**
      * We can also rotate Translation2d's. See:
      * https://en.wikipedia.org/wiki/Rotation_matrix
@@ -105,6 +133,16 @@ public class Translation2d implements Interpolable<Translation2d>
         return new Translation2d(x_ * rotation.cos() - y_ * rotation.sin(), x_ * rotation.sin() + y_ * rotation.cos());
     }
 
+    /**
+     * Allocation-free version of rotateBy. out may be this.
+     * 
+     * @return out
+     */
+    public Translation2d rotateBy(Rotation2d rotation, Translation2d out)
+    {
+        return out.set(x_ * rotation.cos() - y_ * rotation.sin(), x_ * rotation.sin() + y_ * rotation.cos());
+    }
+
     public Rotation2d direction()
     {
         return new Rotation2d(x_, y_, true);
@@ -4,6 +4,7 @@ import static com.spartronics4915.lib.util.Util.epsilonEquals;
 import static com.spartronics4915.lib.util.motion.MotionUtil.kEpsilon;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
@@ -13,11 +14,42 @@ import java.util.Optional;
  * is composed of successively coincident
  * MotionSegments from which the desired state of motion at any given distance
  * or time can be calculated.
+ *
+ * Lookups by time and position are binary searches over the segments' end
+ * states, and trimBeforeTime just advances a head index past the trimmed
+ * segments, so ProfileFollower and SetpointGenerator don't get slower per
+ * tick as profiles grow. Segments before the head stay in mSegments until
+ * the next consolidate() or clear().
  */
 public class MotionProfile
 {
 
     protected List<MotionSegment> mSegments;
+    // Index of the first live segment, everything before it was trimmed.
+    protected int mHead = 0;
+
+    // Position is only monotonic within a run of segments that don't
+    // reverse, so firstStateByPos searches run by run. Built lazily and
+    // dropped whenever segments are added or removed. Built paths share
+    // their profiles between threads (Path.copy, PathCache), so the runs are
+    // published as one immutable Runs: a reader sees either none or a
+    // complete set, and at worst two readers build identical ones.
+    private volatile Runs mRuns = null;
+
+    private static class Runs
+    {
+
+        final int[] starts;
+        final int[] directions;
+        final int size; // mSegments.size() the runs were built for
+
+        Runs(int[] starts, int[] directions, int size)
+        {
+            this.starts = starts;
+            this.directions = directions;
+            this.size = size;
+        }
+    }
 
     /**
      * Create an empty MotionProfile.
@@ -52,7 +84,7 @@ public class MotionProfile
     public boolean isValid()
     {
         MotionSegment prev_segment = null;
-        for (MotionSegment s : mSegments)
+        for (MotionSegment s : segments())
         {
             if (!s.isValid())
             {
@@ -76,7 +108,7 @@ public class MotionProfile
      */
     public boolean isEmpty()
     {
-        return mSegments.isEmpty();
+        return mHead >= mSegments.size();
     }
 
     /**
@@ -97,16 +129,46 @@ public class MotionProfile
         {
             return Optional.of(endState());
         }
-        for (MotionSegment s : mSegments)
+        final MotionSegment s = segmentByTime(t);
+        if (s != null)
         {
-            if (s.containsTime(t))
-            {
-                return Optional.of(s.start().extrapolate(t));
-            }
+            return Optional.of(s.start().extrapolate(t));
         }
         return Optional.empty();
     }
 
+    /**
+     * Checks if state is on the profile, ie: stateByTime(state.t()) equals
+     * state. Unlike stateByTime, this doesn't allocate.
+     * 
+     * @param state
+     *        The state to check.
+     * @return True if the profile is at state at time state.t().
+     */
+    public boolean containsState(MotionState state)
+    {
+        final double t = state.t();
+        if (t < startTime() && t + kEpsilon >= startTime())
+        {
+            return startState().equals(state);
+        }
+        if (t > endTime() && t - kEpsilon <= endTime())
+        {
+            return endState().equals(state);
+        }
+        final MotionSegment s = segmentByTime(t);
+        if (s == null)
+        {
+            return false;
+        }
+        // s.start().extrapolate(t), inline
+        final MotionState start = s.start();
+        final double dt = t - start.t();
+        return epsilonEquals(start.pos() + start.vel() * dt + .5 * start.acc() * dt * dt, state.pos(), kEpsilon)
+                && epsilonEquals(start.vel() + start.acc() * dt, state.vel(), kEpsilon)
+                && epsilonEquals(start.acc(), state.acc(), kEpsilon);
+    }
+
     /**
      * Get the interpolated MotionState at any given time, clamping to the
      * endpoints if time is out of bounds.
@@ -126,12 +188,10 @@ public class MotionProfile
         {
             return endState();
         }
-        for (MotionSegment s : mSegments)
+        final MotionSegment s = segmentByTime(t);
+        if (s != null)
         {
-            if (s.containsTime(t))
-            {
-                return s.start().extrapolate(t);
-            }
+            return s.start().extrapolate(t);
         }
         // Should never get here.
         return MotionState.kInvalidState;
@@ -150,22 +210,20 @@ public class MotionProfile
      */
     public Optional<MotionState> firstStateByPos(double pos)
     {
-        for (MotionSegment s : mSegments)
+        final MotionSegment s = firstSegmentByPos(pos);
+        if (s != null)
         {
-            if (s.containsPos(pos))
+            if (epsilonEquals(s.end().pos(), pos, kEpsilon))
             {
-                if (epsilonEquals(s.end().pos(), pos, kEpsilon))
-                {
-                    return Optional.of(s.end());
-                }
-                final double t = Math.min(s.start().nextTimeAtPos(pos), s.end().t());
-                if (Double.isNaN(t))
-                {
-                    System.err.println("Error! We should reach 'pos' but we don't");
-                    return Optional.empty();
-                }
-                return Optional.of(s.start().extrapolate(t));
+                return Optional.of(s.end());
             }
+            final double t = Math.min(s.start().nextTimeAtPos(pos), s.end().t());
+            if (Double.isNaN(t))
+            {
+                System.err.println("Error! We should reach 'pos' but we don't");
+                return Optional.empty();
+            }
+            return Optional.of(s.start().extrapolate(t));
         }
         // We never reach pos.
         return Optional.empty();
@@ -181,21 +239,168 @@ public class MotionProfile
      */
     public void trimBeforeTime(double t)
     {
-        for (Iterator<MotionSegment> iterator = mSegments.iterator(); iterator.hasNext();)
+        // Drop every segment fully before t.
+        mHead = firstIndexEndingAfter(t, false);
+        if (mHead < mSegments.size())
         {
-            MotionSegment s = iterator.next();
-            if (s.end().t() <= t)
-            {
-                // Segment is fully before t.
-                iterator.remove();
-                continue;
-            }
+            final MotionSegment s = mSegments.get(mHead);
             if (s.start().t() <= t)
             {
                 // Segment begins before t; let's shorten the segment.
                 s.setStart(s.start().extrapolate(t));
             }
-            break;
+        }
+    }
+
+    /**
+     * Same as trimBeforeTime(state.t()), but if the segment containing the
+     * new start of the profile is at state (ie: state came from
+     * stateByTime), use state as its start instead of allocating a new one.
+     * 
+     * @param state
+     *        A state on the profile.
+     */
+    public void trimBeforeState(MotionState state)
+    {
+        final double t = state.t();
+        mHead = firstIndexEndingAfter(t, false);
+        if (mHead < mSegments.size())
+        {
+            final MotionSegment s = mSegments.get(mHead);
+            if (s.start().t() <= t)
+            {
+                // A state sampled at the end of the previous segment has that
+                // segment's acceleration.
+                s.setStart(epsilonEquals(s.start().acc(), state.acc(), kEpsilon) ? state : s.start().extrapolate(t));
+            }
+        }
+    }
+
+    /**
+     * @return the first live segment containing t, or null if none does
+     */
+    private MotionSegment segmentByTime(double t)
+    {
+        final int i = firstIndexEndingAfter(t, true);
+        if (i < mSegments.size() && mSegments.get(i).start().t() <= t)
+        {
+            return mSegments.get(i);
+        }
+        return null;
+    }
+
+    /**
+     * Binary search for the first live segment ending after t (or at t, if
+     * inclusive). Segment times never decrease, so this is the only segment
+     * that can be the first to contain t.
+     * 
+     * @return the segment's index, or mSegments.size() if there is none
+     */
+    private int firstIndexEndingAfter(double t, boolean inclusive)
+    {
+        int lo = mHead;
+        int hi = mSegments.size();
+        while (lo < hi)
+        {
+            final int mid = (lo + hi) >>> 1;
+            final double end = mSegments.get(mid).end().t();
+            if (end > t || (inclusive && end == t))
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        return lo;
+    }
+
+    /**
+     * @return the first live segment containing pos, or null if none does
+     */
+    private MotionSegment firstSegmentByPos(double pos)
+    {
+        final Runs runs = getRuns();
+        final int size = runs.size;
+        for (int r = 0; r < runs.starts.length; r++)
+        {
+            final int run_end = (r + 1 < runs.starts.length) ? runs.starts[r + 1] : size;
+            if (run_end <= mHead)
+                continue;
+            // Within a run, direction * end pos never decreases.
+            final int direction = runs.directions[r];
+            int lo = Math.max(runs.starts[r], mHead);
+            int hi = run_end;
+            while (lo < hi)
+            {
+                final int mid = (lo + hi) >>> 1;
+                if (direction * mSegments.get(mid).end().pos() >= direction * pos)
+                    hi = mid;
+                else
+                    lo = mid + 1;
+            }
+            if (lo < run_end && mSegments.get(lo).containsPos(pos))
+            {
+                return mSegments.get(lo);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits the segments into runs that don't change direction, unless we
+     * already have (the segment count is a cheap check for segments added
+     * through segments()).
+     */
+    private Runs getRuns()
+    {
+        final int size = mSegments.size();
+        final Runs current = mRuns;
+        if (current != null && current.size == size)
+            return current;
+        final int[] starts = new int[Math.max(1, size)];
+        final int[] directions = new int[starts.length];
+        int runs = 1;
+        for (int i = 0; i < size; i++)
+        {
+            final MotionSegment s = mSegments.get(i);
+            final int direction = (int) Math.signum(s.end().pos() - s.start().pos());
+            if (direction == 0)
+                continue;
+            if (directions[runs - 1] == 0)
+            {
+                directions[runs - 1] = direction;
+            }
+            else if (directions[runs - 1] != direction)
+            {
+                starts[runs] = i;
+                directions[runs] = direction;
+                runs++;
+            }
+        }
+        // A run that never moves only contains its start pos, either way works.
+        for (int r = 0; r < runs; r++)
+        {
+            if (directions[r] == 0)
+                directions[r] = 1;
+        }
+        final Runs built = new Runs(Arrays.copyOf(starts, runs), Arrays.copyOf(directions, runs), size);
+        mRuns = built;
+        return built;
+    }
+
+    private void invalidateRuns()
+    {
+        mRuns = null;
+    }
+
+    /**
+     * Physically removes trimmed segments from the head of the list.
+     */
+    private void compact()
+    {
+        if (mHead > 0)
+        {
+            mSegments.subList(0, Math.min(mHead, mSegments.size())).clear();
+            mHead = 0;
+            invalidateRuns();
         }
     }
 
@@ -205,6 +410,8 @@ public class MotionProfile
     public void clear()
     {
         mSegments.clear();
+        mHead = 0;
+        invalidateRuns();
     }
 
     /**
@@ -227,6 +434,8 @@ public class MotionProfile
      */
     public void consolidate()
     {
+        compact();
+        invalidateRuns();
         for (Iterator<MotionSegment> iterator = mSegments.iterator(); iterator.hasNext() && mSegments.size() > 1;)
         {
             MotionSegment s = iterator.next();
@@ -270,6 +479,7 @@ public class MotionProfile
     public void appendSegment(MotionSegment segment)
     {
         mSegments.add(segment);
+        invalidateRuns();
     }
 
     /**
@@ -292,15 +502,16 @@ public class MotionProfile
      */
     public int size()
     {
-        return mSegments.size();
+        return mSegments.size() - mHead;
     }
 
     /**
-     * @return The list of segments.
+     * @return The list of segments (a view that skips trimmed segments, only
+     *         valid until the profile is next modified).
      */
     public List<MotionSegment> segments()
     {
-        return mSegments;
+        return (mHead == 0) ? mSegments : mSegments.subList(mHead, mSegments.size());
     }
 
     /**
@@ -312,7 +523,7 @@ public class MotionProfile
         {
             return MotionState.kInvalidState;
         }
-        return mSegments.get(0).start();
+        return mSegments.get(mHead).start();
     }
 
     /**
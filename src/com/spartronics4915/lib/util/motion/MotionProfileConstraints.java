@@ -1,13 +1,15 @@
 package com.spartronics4915.lib.util.motion;
 
 /**
- * Constraints for constructing a MotionProfile.
+ * Constraints for constructing a MotionProfile. With a (finite) jerk limit
+ * MotionProfileGenerator builds S-curve profiles, otherwise trapezoidal ones.
  */
 public class MotionProfileConstraints
 {
 
     protected double max_abs_vel = Double.POSITIVE_INFINITY;
     protected double max_abs_acc = Double.POSITIVE_INFINITY;
+    protected double max_abs_jerk = Double.POSITIVE_INFINITY;
 
     public MotionProfileConstraints(double max_vel, double max_acc)
     {
@@ -15,6 +17,12 @@ public class MotionProfileConstraints
         this.max_abs_acc = Math.abs(max_acc);
     }
 
+    public MotionProfileConstraints(double max_vel, double max_acc, double max_jerk)
+    {
+        this(max_vel, max_acc);
+        this.max_abs_jerk = Math.abs(max_jerk);
+    }
+
     /**
      * @return The (positive) maximum allowed velocity.
      */
@@ -31,6 +39,23 @@ public class MotionProfileConstraints
         return max_abs_acc;
     }
 
+    /**
+     * @return The (positive) maximum allowed jerk (infinite for trapezoidal
+     *         profiles).
+     */
+    public double max_abs_jerk()
+    {
+        return max_abs_jerk;
+    }
+
+    /**
+     * @return True if profiles should be jerk limited (S-curves).
+     */
+    public boolean isJerkLimited()
+    {
+        return !Double.isInfinite(max_abs_jerk) && max_abs_jerk > 0.0;
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -39,6 +64,7 @@ public class MotionProfileConstraints
             return false;
         }
         final MotionProfileConstraints other = (MotionProfileConstraints) obj;
-        return (other.max_abs_acc() == max_abs_acc()) && (other.max_abs_vel() == max_abs_vel());
+        return (other.max_abs_acc() == max_abs_acc()) && (other.max_abs_vel() == max_abs_vel())
+                && (other.max_abs_jerk() == max_abs_jerk());
     }
 }
@@ -6,10 +6,26 @@ import com.spartronics4915.lib.util.motion.MotionProfileGoal.CompletionBehavior;
  * A MotionProfileGenerator generates minimum-time MotionProfiles to travel from
  * a given MotionState to a given
  * MotionProfileGoal while obeying a set of MotionProfileConstraints.
+ *
+ * Generation is a pure function of its arguments (every profile it returns
+ * is newly allocated), so it is safe to call from any number of threads at
+ * once without locking, eg: PathCache workers precompiling paths while the
+ * drive loop runs a SetpointGenerator.
+ *
+ * If the constraints limit jerk, profiles are S-curves: acceleration ramps
+ * up to (at most) max_abs_acc and back down instead of stepping. A
+ * MotionSegment has constant acceleration, so each ramp is made of
+ * kJerkStepTime long steps whose acceleration changes by max_abs_jerk *
+ * kJerkStepTime. The steps are placed symmetrically, so the profile still
+ * reaches the goal position and velocity exactly. Cases an S-curve can't
+ * solve (moving away from the goal, or too fast to stop in time) fall back
+ * to the trapezoidal profile.
  */
 public class MotionProfileGenerator
 {
 
+    public static final double kJerkStepTime = 0.01; // seconds, roughly one control loop
+
     // Static class.
     private MotionProfileGenerator()
     {
@@ -39,7 +55,7 @@ public class MotionProfileGenerator
      * @return A motion profile from prev_state to goal_state that satisfies
      *         constraints.
      */
-    public synchronized static MotionProfile generateProfile(MotionProfileConstraints constraints,
+    public static MotionProfile generateProfile(MotionProfileConstraints constraints,
             MotionProfileGoal goal_state,
             MotionState prev_state)
     {
@@ -55,6 +71,14 @@ public class MotionProfileGenerator
         MotionState start_state = new MotionState(prev_state.t(), prev_state.pos(),
                 Math.signum(prev_state.vel()) * Math.min(Math.abs(prev_state.vel()), constraints.max_abs_vel()),
                 Math.signum(prev_state.acc()) * Math.min(Math.abs(prev_state.acc()), constraints.max_abs_acc()));
+        if (constraints.isJerkLimited())
+        {
+            final MotionProfile s_curve = generateSCurveProfile(constraints, goal_state, start_state, delta_pos);
+            if (s_curve != null)
+            {
+                return s_curve;
+            }
+        }
         MotionProfile profile = new MotionProfile();
         profile.reset(start_state);
         // If our velocity is headed away from the goal, the first thing we need to do is to stop.
@@ -150,4 +174,172 @@ public class MotionProfileGenerator
         profile.consolidate();
         return profile;
     }
+
+    /**
+     * Jerk limited version of the positive case of generateProfile: speed up
+     * to a peak velocity, cruise, then slow to the goal velocity, with every
+     * velocity change an S-curve. The first change starts from the start
+     * state's acceleration, so a profile replanned every loop (as
+     * ProfileFollower does) keeps ramping instead of starting over.
+     * 
+     * @return the profile, or null if the goal needs a trapezoidal profile
+     *         (we start moving away from it, or can't slow down in time)
+     */
+    protected static MotionProfile generateSCurveProfile(MotionProfileConstraints constraints,
+            MotionProfileGoal goal_state, MotionState start_state, double delta_pos)
+    {
+        final double max_vel = constraints.max_abs_vel();
+        final double max_acc = constraints.max_abs_acc();
+        final double max_jerk = constraints.max_abs_jerk();
+        final double start_vel = start_state.vel();
+        final double start_acc = start_state.acc();
+        if (start_vel < 0.0 || Double.isInfinite(max_acc))
+        {
+            return null;
+        }
+        final double goal_vel = Math.min(goal_state.max_abs_vel(), max_vel);
+
+        // The slowest peak we can use: if we are still speeding up, that
+        // takes start_acc^2 / 2 max_jerk more velocity. If even that
+        // overshoots, give up.
+        double lo = Math.max(goal_vel, start_vel + Math.max(0.0, start_acc) * start_acc / (2.0 * max_jerk));
+        if (lo > max_vel + goal_state.vel_tolerance()
+                || sCurveDistance(start_vel, start_acc, lo, max_acc, max_jerk)
+                        + sCurveDistance(lo, 0.0, goal_vel, max_acc, max_jerk) > delta_pos
+                                + goal_state.pos_tolerance())
+        {
+            return null;
+        }
+        // The fastest peak that fits in delta_pos (the distance used only
+        // grows with the peak, and no profile can beat max_acc the whole way).
+        double hi = Math.max(lo, Math.min(max_vel, Math.sqrt(start_vel * start_vel + 2.0 * max_acc * delta_pos)));
+        if (sCurveDistance(start_vel, start_acc, hi, max_acc, max_jerk)
+                + sCurveDistance(hi, 0.0, goal_vel, max_acc, max_jerk) > delta_pos)
+        {
+            for (int i = 0; i < 50; i++)
+            {
+                final double mid = (lo + hi) / 2.0;
+                if (sCurveDistance(start_vel, start_acc, mid, max_acc, max_jerk)
+                        + sCurveDistance(mid, 0.0, goal_vel, max_acc, max_jerk) > delta_pos)
+                    hi = mid;
+                else
+                    lo = mid;
+            }
+            hi = lo;
+        }
+        final double peak_vel = hi;
+
+        MotionProfile profile = new MotionProfile();
+        profile.reset(start_state);
+        appendSCurve(profile, start_acc, peak_vel, max_acc, max_jerk);
+        final double distance_decel = sCurveDistance(peak_vel, 0.0, goal_vel, max_acc, max_jerk);
+        final double distance_cruise = goal_state.pos() - profile.endPos() - distance_decel;
+        if (distance_cruise > 0.0 && peak_vel > 0.0)
+        {
+            profile.appendControl(0.0, distance_cruise / peak_vel);
+        }
+        appendSCurve(profile, 0.0, goal_vel, max_acc, max_jerk);
+        profile.consolidate();
+        return profile;
+    }
+
+    /**
+     * Plans a jerk limited change from v0 to v1, starting at acceleration a0
+     * and ending at zero acceleration: ramp to a peak acceleration, hold it,
+     * ramp back to zero.
+     * 
+     * @return { ramp up time, hold time, ramp down time, peak acceleration }
+     *         (with the peak acceleration signed like v1 - v0), or null if
+     *         a0 is too large to stop accelerating before v1
+     */
+    private static double[] sCurvePhases(double v0, double a0, double v1, double max_acc, double max_jerk)
+    {
+        final double sign = (v1 >= v0) ? 1.0 : -1.0;
+        final double dv = Math.abs(v1 - v0);
+        final double a = sign * a0; // towards v1
+        if (a > 0.0 && dv < a * a / (2.0 * max_jerk) - MotionUtil.kEpsilon)
+        {
+            return null;
+        }
+        double peak = Math.sqrt(Math.max(0.0, (2.0 * max_jerk * dv + a * a) / 2.0));
+        double hold = 0.0;
+        if (peak > max_acc)
+        {
+            peak = max_acc;
+            hold = (dv - (2.0 * max_acc * max_acc - a * a) / (2.0 * max_jerk)) / max_acc;
+        }
+        peak = Math.max(peak, a);
+        return new double[] { (peak - a) / max_jerk, hold, peak / max_jerk, sign * peak };
+    }
+
+    /**
+     * @return the distance covered by appendSCurve changing velocity from v0
+     *         (at acceleration a0) to v1, or infinity if it can't
+     */
+    private static double sCurveDistance(double v0, double a0, double v1, double max_acc, double max_jerk)
+    {
+        final double[] phases = sCurvePhases(v0, a0, v1, max_acc, max_jerk);
+        if (phases == null)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double sign = Math.signum(phases[3]);
+        final double jerk = sign * max_jerk;
+        double distance = 0.0;
+        double v = v0;
+        // Ramp up. The stepped ramp covers jerk * t * dt^2 / 12 more than a
+        // continuous one.
+        double t = phases[0];
+        double dt = stepTime(t);
+        distance += v * t + a0 * t * t / 2.0 + jerk * t * t * t / 6.0 + jerk * t * dt * dt / 12.0;
+        v += a0 * t + jerk * t * t / 2.0;
+        // Hold.
+        t = phases[1];
+        distance += v * t + phases[3] * t * t / 2.0;
+        v += phases[3] * t;
+        // Ramp down (and as much less than a continuous one).
+        t = phases[2];
+        dt = stepTime(t);
+        distance += v * t + phases[3] * t * t / 2.0 - jerk * t * t * t / 6.0 - jerk * t * dt * dt / 12.0;
+        return distance;
+    }
+
+    private static double stepTime(double ramp_time)
+    {
+        return ramp_time / Math.max(1, (int) Math.ceil(ramp_time / kJerkStepTime - MotionUtil.kEpsilon));
+    }
+
+    /**
+     * Appends a jerk limited change from the profile's end velocity (at
+     * acceleration a0) to vel. Each ramp step's acceleration is the ramp's
+     * value at the middle of the step, so the steps change velocity exactly
+     * as much as the ramp does.
+     */
+    private static void appendSCurve(MotionProfile profile, double a0, double vel, double max_acc, double max_jerk)
+    {
+        final double v0 = profile.endState().vel();
+        final double[] phases = sCurvePhases(v0, a0, vel, max_acc, max_jerk);
+        if (phases == null || (Math.abs(vel - v0) < MotionUtil.kEpsilon && Math.abs(a0) < MotionUtil.kEpsilon))
+        {
+            return;
+        }
+        final double jerk = Math.signum(phases[3]) * max_jerk;
+        double dt = stepTime(phases[0]);
+        for (int i = 0; dt > 0.0 && i < Math.round(phases[0] / dt); i++)
+        {
+            profile.appendControl(a0 + jerk * dt * (i + 0.5), dt);
+        }
+        if (phases[1] > 0.0)
+        {
+            profile.appendControl(phases[3], phases[1]);
+        }
+        dt = stepTime(phases[2]);
+        for (int i = 0; dt > 0.0 && i < Math.round(phases[2] / dt); i++)
+        {
+            profile.appendControl(phases[3] - jerk * dt * (i + 0.5), dt);
+        }
+        // Don't let rounding leave us a hair over vel (and max_abs_vel).
+        final MotionSegment last = profile.segments().get(profile.size() - 1);
+        last.setEnd(new MotionState(last.end().t(), last.end().pos(), vel, last.end().acc()));
+    }
 }
@@ -14,7 +14,7 @@ public class MotionState
     protected final double vel;
     protected final double acc;
 
-    public static MotionState kInvalidState = new MotionState(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+    public static final MotionState kInvalidState = new MotionState(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
 
     public MotionState(double t, double pos, double vel, double acc)
     {
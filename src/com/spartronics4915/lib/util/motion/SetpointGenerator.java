@@ -1,13 +1,19 @@
 package com.spartronics4915.lib.util.motion;
 
-import java.util.Optional;
-
 /**
  * A SetpointGenerate does just-in-time motion profile generation to supply a
  * stream of setpoints that obey the given
  * constraints to a controller. The profile is regenerated when any of the
  * inputs change, but is cached (and trimmed as
  * we go) if the only update is to the current state.
+ *
+ * Replanning is incremental: the part of the profile we have already executed
+ * is trimmed away, and a new goal only replans the tail from the current
+ * point on the profile (keeping its acceleration, which S-curves continue
+ * from). A new goal that the rest of the current profile already reaches
+ * (eg: an operator nudging a setpoint within its tolerance) keeps the
+ * profile. While the goal stays put, getSetpoint only allocates the
+ * MotionState it returns.
  * 
  * Note that typically for smooth control, a user will feed the last iteration's
  * setpoint as the argument to
@@ -40,6 +46,8 @@ public class SetpointGenerator
     protected MotionProfile mProfile = null;
     protected MotionProfileGoal mGoal = null;
     protected MotionProfileConstraints mConstraints = null;
+    protected boolean mProfileValid = false; // trimming doesn't change this
+    protected final Setpoint mSetpoint = new Setpoint(null, false);
 
     public SetpointGenerator()
     {
@@ -53,6 +61,7 @@ public class SetpointGenerator
         mProfile = null;
         mGoal = null;
         mConstraints = null;
+        mProfileValid = false;
     }
 
     /**
@@ -67,54 +76,64 @@ public class SetpointGenerator
      *        reset).
      * @param t
      *        The time to generate a setpoint for.
-     * @return The new Setpoint at time t.
+     * @return The new Setpoint at time t (the same object is reused by the
+     *         next call).
      */
     public synchronized Setpoint getSetpoint(MotionProfileConstraints constraints, MotionProfileGoal goal,
             MotionState prev_state,
             double t)
     {
-        boolean regenerate = mConstraints == null || !mConstraints.equals(constraints) || mGoal == null
-                || !mGoal.equals(goal) || mProfile == null;
-        if (!regenerate && !mProfile.isEmpty())
+        final boolean new_goal = mGoal == null || !mGoal.equals(goal);
+        boolean regenerate;
+        if (mProfile == null || mConstraints == null || !mConstraints.equals(constraints))
+        {
+            regenerate = true;
+        }
+        else if (mProfile.isEmpty())
         {
-            Optional<MotionState> expected_state = mProfile.stateByTime(prev_state.t());
-            regenerate = !expected_state.isPresent() || !expected_state.get().equals(prev_state);
+            regenerate = new_goal;
+        }
+        else if (!mProfile.containsState(prev_state))
+        {
+            // We've been moved off the profile (eg: a reset to a measured state).
+            regenerate = true;
+        }
+        else if (new_goal && goal.completion_behavior() == mGoal.completion_behavior()
+                && goal.atGoalState(mProfile.endState()))
+        {
+            // The rest of the profile already gets us to the new goal.
+            mGoal = goal;
+            regenerate = false;
+        }
+        else
+        {
+            regenerate = new_goal;
         }
         if (regenerate)
         {
-            // Regenerate the profile, as our current profile does not satisfy the inputs.
+            // Replan from prev_state, as our current profile does not satisfy the inputs.
             mConstraints = constraints;
             mGoal = goal;
             mProfile = MotionProfileGenerator.generateProfile(constraints, goal, prev_state);
+            mProfileValid = mProfile.isValid();
             // System.out.println("Regenerating profile: " + mProfile);
         }
 
         // Sample the profile at time t.
-        Setpoint rv = null;
-        if (!mProfile.isEmpty() && mProfile.isValid())
+        final Setpoint rv = mSetpoint;
+        if (!mProfile.isEmpty() && mProfileValid)
         {
-            MotionState setpoint;
-            if (t > mProfile.endTime())
-            {
-                setpoint = mProfile.endState();
-            }
-            else if (t < mProfile.startTime())
-            {
-                setpoint = mProfile.startState();
-            }
-            else
-            {
-                setpoint = mProfile.stateByTime(t).get();
-            }
+            final MotionState setpoint = mProfile.stateByTimeClamped(t);
             // Shorten the profile and return the new setpoint.
-            mProfile.trimBeforeTime(t);
-            rv = new Setpoint(setpoint, mProfile.isEmpty() || mGoal.atGoalState(setpoint));
+            mProfile.trimBeforeState(setpoint);
+            rv.motion_state = setpoint;
+            rv.final_setpoint = mProfile.isEmpty() || mGoal.atGoalState(setpoint);
         }
-
-        // Invalid or empty profile - just output the same state again.
-        if (rv == null)
+        else
         {
-            rv = new Setpoint(prev_state, true);
+            // Invalid or empty profile - just output the same state again.
+            rv.motion_state = prev_state;
+            rv.final_setpoint = true;
         }
 
         if (rv.final_setpoint)
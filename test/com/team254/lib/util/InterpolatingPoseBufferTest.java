@@ -0,0 +1,66 @@
+package com.team254.lib.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.spartronics4915.lib.util.InterpolatingDouble;
+import com.spartronics4915.lib.util.InterpolatingPoseBuffer;
+import com.spartronics4915.lib.util.InterpolatingTreeMap;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+
+public class InterpolatingPoseBufferTest {
+    public static final double kEpsilon = 1E-6;
+
+    private static RigidTransform2d pose(double x, double y, double degrees) {
+        return new RigidTransform2d(new Translation2d(x, y), Rotation2d.fromDegrees(degrees));
+    }
+
+    private static void assertPoseEquals(RigidTransform2d expected, RigidTransform2d actual) {
+        assertEquals(expected.getTranslation().x(), actual.getTranslation().x(), kEpsilon);
+        assertEquals(expected.getTranslation().y(), actual.getTranslation().y(), kEpsilon);
+        assertEquals(expected.getRotation().getDegrees(), actual.getRotation().getDegrees(), kEpsilon);
+    }
+
+    @Test
+    public void testMatchesTreeMap() {
+        InterpolatingPoseBuffer buffer = new InterpolatingPoseBuffer(10);
+        InterpolatingTreeMap<InterpolatingDouble, RigidTransform2d> map = new InterpolatingTreeMap<>(10);
+        assertNull(buffer.getLatest());
+        assertNull(buffer.getInterpolated(1.0));
+        for (int i = 0; i < 25; ++i) {
+            RigidTransform2d p = pose(i * 3.0, i * i * 0.5, i * 7.0);
+            buffer.put(i * 0.01, p);
+            map.put(new InterpolatingDouble(i * 0.01), p);
+        }
+        assertEquals(10, buffer.size());
+        assertEquals(0.24, buffer.getLatestTimestamp(), kEpsilon);
+        assertPoseEquals(pose(72.0, 288.0, 168.0), buffer.getLatest());
+        for (double t = 0.0; t < 0.3; t += 0.0037) {
+            assertPoseEquals(map.getInterpolated(new InterpolatingDouble(t)), buffer.getInterpolated(t));
+        }
+    }
+
+    @Test
+    public void testOutOfOrderAndReplace() {
+        InterpolatingPoseBuffer buffer = new InterpolatingPoseBuffer(3);
+        buffer.put(1.0, pose(1, 0, 0));
+        buffer.put(3.0, pose(3, 0, 0));
+        buffer.put(2.0, pose(2, 0, 0));
+        assertPoseEquals(pose(2, 0, 0), buffer.getInterpolated(2.0));
+        assertPoseEquals(pose(3, 0, 0), buffer.getLatest());
+
+        buffer.put(3.0, pose(5, 0, 0));
+        assertEquals(3, buffer.size());
+        assertPoseEquals(pose(5, 0, 0), buffer.getLatest());
+
+        // full, so the oldest entry is dropped
+        buffer.put(1.5, pose(1.5, 0, 0));
+        assertEquals(3, buffer.size());
+        assertPoseEquals(pose(1.5, 0, 0), buffer.getInterpolated(0.0));
+        buffer.put(0.5, pose(0.5, 0, 0));
+        assertPoseEquals(pose(1.5, 0, 0), buffer.getInterpolated(0.0));
+    }
+}
@@ -0,0 +1,256 @@
+package com.team254.lib.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.loops.Loop;
+import com.spartronics4915.frc2018.loops.Looper;
+import com.spartronics4915.lib.util.VirtualTimer;
+
+public class LooperTest {
+    private static final int kPasses = 200;
+
+    private VirtualTimer mClock;
+    private Looper mLooper;
+
+    // Records, for every pass, the sequence numbers at which the loop
+    // started and finished so tests can check ordering across workers.
+    private static class RecordingLoop implements Loop {
+        final AtomicInteger sequence;
+        final int[] started = new int[kPasses];
+        final int[] finished = new int[kPasses];
+        volatile int runs = 0;
+        volatile boolean ranOnWorker = true;
+        volatile int pass = 0;
+
+        RecordingLoop(AtomicInteger seq) {
+            sequence = seq;
+        }
+
+        @Override
+        public void onStart(double timestamp) {
+        }
+
+        @Override
+        public void onLoop(double timestamp) {
+            started[pass] = sequence.incrementAndGet();
+            if (!Thread.currentThread().getName().equals("Looper worker"))
+                ranOnWorker = false;
+            long end = System.nanoTime() + 20000; // give other workers a chance to overlap
+            while (System.nanoTime() < end) {
+            }
+            runs++;
+            finished[pass] = sequence.incrementAndGet();
+        }
+
+        @Override
+        public void onStop(double timestamp) {
+        }
+    }
+
+    // Records the pass number of every run; for serial loopers.
+    private class PassLoop implements Loop {
+        final List<Integer> passes = new ArrayList<>();
+
+        @Override
+        public void onStart(double timestamp) {
+        }
+
+        @Override
+        public void onLoop(double timestamp) {
+            // the clock is advanced once before each pass
+            passes.add((int) Math.round(timestamp / mLooper.kPeriod) - 1);
+        }
+
+        @Override
+        public void onStop(double timestamp) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mClock = new VirtualTimer(0.0);
+        mClock.install();
+    }
+
+    @After
+    public void tearDown() {
+        if (mLooper != null)
+            mLooper.stop();
+    }
+
+    private Looper startLooper(int numWorkers, Loop... loops) {
+        mLooper = new Looper(numWorkers);
+        for (Loop l : loops)
+            mLooper.register(l, mLooper.kPeriod, Looper.Priority.CRITICAL);
+        return mLooper;
+    }
+
+    private void stepSerial(int numPasses) {
+        for (int pass = 0; pass < numPasses; pass++) {
+            mClock.advance(mLooper.kPeriod);
+            mLooper.step();
+        }
+    }
+
+    @Test
+    public void testDivisorsAndPhases() {
+        PassLoop fast = new PassLoop();
+        PassLoop mech1 = new PassLoop();
+        PassLoop mech2 = new PassLoop();
+        PassLoop background = new PassLoop();
+        mLooper = new Looper(1);
+        // CRITICAL so a slow CI box can't shed any of them
+        mLooper.register(fast, 0.005, Looper.Priority.CRITICAL);
+        mLooper.register(mech1, 0.02, Looper.Priority.CRITICAL);
+        mLooper.register(mech2, 0.02, Looper.Priority.CRITICAL);
+        mLooper.register(background, 0.1, Looper.Priority.CRITICAL);
+        mLooper.setExternallyStepped(true);
+        mLooper.start();
+        stepSerial(80);
+
+        assertEquals(80, fast.passes.size());
+        assertEquals(20, mech1.passes.size());
+        assertEquals(20, mech2.passes.size());
+        assertEquals(4, background.passes.size());
+        for (int i = 0; i < 20; i++) {
+            // phase 0 runs on passes 0, 4, 8...; phase 1 on 3, 7, 11...
+            assertEquals(4 * i, (int) mech1.passes.get(i));
+            assertEquals(4 * i + 3, (int) mech2.passes.get(i));
+        }
+        for (int i = 0; i < 4; i++)
+            assertEquals(20 * i, (int) background.passes.get(i));
+    }
+
+    @Test
+    public void testLoadShedding() {
+        PassLoop low = new PassLoop();
+        PassLoop normal = new PassLoop();
+        // overruns kPeriod on the first three passes
+        PassLoop critical = new PassLoop() {
+            @Override
+            public void onLoop(double timestamp) {
+                super.onLoop(timestamp);
+                if (passes.size() <= 3) {
+                    try {
+                        Thread.sleep(8);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        mLooper = new Looper(1);
+        mLooper.register(critical, 0.005, Looper.Priority.CRITICAL);
+        mLooper.register(normal, 0.005, Looper.Priority.NORMAL);
+        mLooper.register(low, 0.005, Looper.Priority.LOW);
+        mLooper.setExternallyStepped(true);
+        mLooper.start();
+        stepSerial(5);
+
+        assertEquals(3, mLooper.getOverrunCount());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), critical.passes);
+        // NORMAL is shed once overruns persist for three passes...
+        assertEquals(Arrays.asList(0, 1, 2, 4), normal.passes);
+        // ...LOW as soon as a pass overruns, and both catch up afterwards
+        assertEquals(Arrays.asList(0, 4), low.passes);
+        assertEquals(2, mLooper.getShedCount());
+    }
+
+    private void step(RecordingLoop[] loops, int pass) {
+        for (RecordingLoop l : loops)
+            l.pass = pass;
+        mClock.advance(mLooper.kPeriod);
+        mLooper.step();
+    }
+
+    private static void assertRanBefore(RecordingLoop before, RecordingLoop after, int pass) {
+        assertTrue("pass " + pass, before.finished[pass] < after.started[pass]);
+    }
+
+    @Test(timeout = 10000)
+    public void testParallelDependencies() {
+        AtomicInteger seq = new AtomicInteger();
+        RecordingLoop a = new RecordingLoop(seq);
+        RecordingLoop b = new RecordingLoop(seq);
+        RecordingLoop c = new RecordingLoop(seq);
+        RecordingLoop d = new RecordingLoop(seq);
+        RecordingLoop e = new RecordingLoop(seq);
+        RecordingLoop[] all = new RecordingLoop[] {a, b, c, d, e};
+        // register out of dependency order so the schedule has to sort them
+        startLooper(3, d, c, b, a, e);
+        mLooper.addDependency(a, b);
+        mLooper.addDependency(a, c);
+        mLooper.addDependency(b, d);
+        mLooper.addDependency(c, d);
+        mLooper.setExternallyStepped(true);
+        mLooper.start();
+
+        for (int pass = 0; pass < kPasses; pass++) {
+            step(all, pass);
+            assertRanBefore(a, b, pass);
+            assertRanBefore(a, c, pass);
+            assertRanBefore(b, d, pass);
+            assertRanBefore(c, d, pass);
+        }
+        for (RecordingLoop l : all) {
+            assertEquals(kPasses, l.runs);
+            assertTrue(l.ranOnWorker);
+        }
+        assertEquals(0, mLooper.getShedCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testParallelException() {
+        AtomicInteger seq = new AtomicInteger();
+        RecordingLoop a = new RecordingLoop(seq);
+        RecordingLoop c = new RecordingLoop(seq);
+        RecordingLoop e = new RecordingLoop(seq);
+        RecordingLoop[] all = new RecordingLoop[] {a, c, e};
+        final RuntimeException failure = new RuntimeException("LooperTest failure");
+        final AtomicInteger failPass = new AtomicInteger(5);
+        final AtomicInteger throwerRuns = new AtomicInteger();
+        Loop thrower = new Loop() {
+            @Override
+            public void onStart(double timestamp) {
+            }
+
+            @Override
+            public void onLoop(double timestamp) {
+                if (throwerRuns.getAndIncrement() == failPass.get())
+                    throw failure;
+            }
+
+            @Override
+            public void onStop(double timestamp) {
+            }
+        };
+        startLooper(3, a, thrower, c, e);
+        mLooper.addDependency(a, thrower);
+        mLooper.addDependency(thrower, c); // must still run after a failure
+        mLooper.setExternallyStepped(true);
+        mLooper.start();
+
+        for (int pass = 0; pass < 10; pass++) {
+            try {
+                step(all, pass);
+                assertNotEquals(failPass.get(), pass);
+            } catch (RuntimeException ex) {
+                assertEquals(failPass.get(), pass);
+                assertSame(failure, ex);
+            }
+            // every loop completed, including the failed loop's successor
+            for (RecordingLoop l : all)
+                assertEquals(pass + 1, l.runs);
+            assertEquals(pass + 1, throwerRuns.get());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.team254.lib.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.spartronics4915.lib.util.PoseKalmanFilter;
+
+public class PoseKalmanFilterTest {
+    public static final double kEpsilon = 1E-6;
+
+    @Test
+    public void testPredictMatchesDeadReckoning() {
+        PoseKalmanFilter filter = new PoseKalmanFilter(100, 0.01, 0.001);
+        filter.reset(0, 0, 0, 0);
+        // quarter circle of radius 10 in 50 steps
+        for (int i = 1; i <= 50; ++i) {
+            double dtheta = Math.PI / 2 / 50;
+            filter.predict(i * 0.01, 10 * dtheta, 0, dtheta);
+        }
+        assertEquals(10, filter.getX(), kEpsilon);
+        assertEquals(10, filter.getY(), kEpsilon);
+        assertEquals(Math.PI / 2, filter.getTheta(), kEpsilon);
+        assertTrue(filter.getCovariance(0, 0) > 0);
+    }
+
+    @Test
+    public void testLateCorrectionIsReplayed() {
+        PoseKalmanFilter filter = new PoseKalmanFilter(100, 0.01, 0.001);
+        filter.reset(0, 0, 0, 0);
+        for (int i = 1; i <= 100; ++i) {
+            filter.predict(i * 0.01, 1.0, 0, 0);
+        }
+        assertEquals(100, filter.getX(), kEpsilon);
+        double before = filter.getCovariance(1, 1);
+
+        // observation captured at t=.5 says we were 2 inches to the left
+        assertTrue(filter.correct(0.5, 50, 2, 0, 0.01, 0.01));
+        assertTrue(filter.getY() > 1.5);
+        assertTrue(filter.getY() < 2.0);
+        assertEquals(100, filter.getX(), 0.1);
+        assertTrue(filter.getCovariance(1, 1) < before);
+
+        // the history was rewritten from the capture time on
+        double[] state = new double[3];
+        filter.getHistoryState(filter.floorIndex(0.75), state);
+        assertEquals(filter.getY(), state[1], kEpsilon);
+        filter.getHistoryState(filter.floorIndex(0.25), state);
+        assertEquals(0, state[1], kEpsilon);
+
+        // too old to correct
+        assertFalse(filter.correct(-1.0, 0, 0, 0, 0.01, 0.01));
+    }
+}
@@ -0,0 +1,68 @@
+package com.team254.lib.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.RobotState;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Twist2d;
+
+/**
+ * Readers of RobotState snapshots, racing a writer, must always see a
+ * consistent estimate. Throughput under contention is measured by
+ * RobotStateBenchmarks under bench/.
+ */
+public class RobotStateSnapshotTest {
+    private static final int kNumReaders = 3;
+    private static final int kNumWrites = 20000;
+    private static final double kDt = 0.005;
+    private static final double kStep = 0.1; // inches per update
+
+    @Test(timeout = 30000)
+    public void testConcurrentReads() throws InterruptedException {
+        RobotState state = RobotState.getInstance();
+        state.reset(0, new RigidTransform2d());
+        Twist2d measured = new Twist2d(kStep, 0, 0);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread[] readers = new Thread[kNumReaders];
+        for (int i = 0; i < kNumReaders; ++i) {
+            readers[i] = new Thread(() -> {
+                double last = -1;
+                while (writing.get() && failure.get() == null) {
+                    RobotState.Snapshot s = state.getSnapshot();
+                    // each write sets the predicted velocity to its timestamp
+                    // and moves the pose kStep, so the fields must agree
+                    double x = s.fieldToVehicle.getTranslation().x();
+                    if (s.timestamp < last)
+                        failure.set("timestamp went backwards: " + last + " -> " + s.timestamp);
+                    else if (s.timestamp > 0 && s.predictedVelocity.dx != s.timestamp)
+                        failure.set("torn snapshot: " + s.timestamp + " " + s.predictedVelocity.dx);
+                    else if (Math.abs(x - s.timestamp / kDt * kStep) > 1E-6)
+                        failure.set("torn snapshot: " + s.timestamp + " x " + x);
+                    last = s.timestamp;
+                }
+            });
+            readers[i].start();
+        }
+        for (int n = 1; n <= kNumWrites; n++) {
+            double t = n * kDt;
+            state.addObservations(t, measured, new Twist2d(t, 0, 0));
+        }
+        writing.set(false);
+        for (Thread r : readers) {
+            r.join();
+        }
+        assertNull(failure.get(), failure.get());
+
+        RobotState.Snapshot s = state.getSnapshot();
+        assertEquals(kNumWrites * kDt, s.timestamp, 1E-9);
+        assertEquals(kNumWrites * kStep, s.fieldToVehicle.getTranslation().x(), 1E-6);
+        assertEquals(s.fieldToVehicle, state.getLatestFieldToVehicle());
+    }
+}
@@ -0,0 +1,41 @@
+package com.team254.lib.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.spartronics4915.lib.util.TimingHistogram;
+
+public class TimingHistogramTest {
+    public static final double kEpsilon = 1E-9;
+
+    @Test
+    public void testPercentiles() {
+        TimingHistogram h = new TimingHistogram(0.001, 20);
+        assertEquals(0.0, h.getPercentile(.5), kEpsilon);
+        for (int i = 0; i < 99; ++i) {
+            h.addSample(0.0015);
+        }
+        h.addSample(0.0125);
+        assertEquals(100, h.getNumSamples());
+        assertEquals(0.002, h.getPercentile(.5), kEpsilon);
+        assertEquals(0.002, h.getPercentile(.99), kEpsilon);
+        assertEquals(0.0125, h.getPercentile(1.0), kEpsilon);
+        assertEquals(0.0125, h.getMax(), kEpsilon);
+    }
+
+    @Test
+    public void testOverflowAndCopy() {
+        TimingHistogram h = new TimingHistogram(0.001, 10);
+        h.addSample(0.5);
+        assertEquals(0.5, h.getMax(), kEpsilon);
+        assertEquals(0.5, h.getPercentile(.5), kEpsilon);
+
+        TimingHistogram copy = new TimingHistogram(0.001, 10);
+        copy.copyFrom(h);
+        h.clear();
+        assertEquals(0, h.getNumSamples());
+        assertEquals(1, copy.getNumSamples());
+        assertEquals(0.5, copy.getMean(), kEpsilon);
+    }
+}
@@ -0,0 +1,126 @@
+package com.team254.lib.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.auto.AutoModeBase;
+import com.spartronics4915.frc2018.auto.AutoModeEndedException;
+import com.spartronics4915.frc2018.auto.VirtualAutoRunner;
+import com.spartronics4915.frc2018.auto.actions.Action;
+import com.spartronics4915.frc2018.auto.actions.WaitAction;
+import com.spartronics4915.frc2018.loops.Loop;
+import com.spartronics4915.frc2018.loops.Looper;
+import com.spartronics4915.lib.util.Util;
+
+import edu.wpi.first.wpilibj.Timer;
+
+public class VirtualAutoRunnerTest {
+    public static final double kEpsilon = 1E-6;
+
+    private static class CountingLoop implements Loop {
+        volatile int runs = 0;
+
+        @Override
+        public void onStart(double timestamp) {
+        }
+
+        @Override
+        public void onLoop(double timestamp) {
+            runs++;
+        }
+
+        @Override
+        public void onStop(double timestamp) {
+        }
+    }
+
+    // Records the timestamps at which the auto mode updated it
+    private static class RecordingAction implements Action {
+        final List<Double> updates = new ArrayList<>();
+        final CountingLoop loop;
+        final int runs;
+
+        // finishes once loop has run runs times
+        RecordingAction(CountingLoop l, int r) {
+            loop = l;
+            runs = r;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return loop.runs >= runs;
+        }
+
+        @Override
+        public void update() {
+            updates.add(Timer.getFPGATimestamp());
+        }
+
+        @Override
+        public void done() {
+        }
+
+        @Override
+        public void start() {
+        }
+    }
+
+    private static class TestMode extends AutoModeBase {
+        final double wait;
+        final RecordingAction action;
+        volatile String gameMessage;
+
+        TestMode(double w, RecordingAction a) {
+            wait = w;
+            action = a;
+        }
+
+        @Override
+        protected void routine() throws AutoModeEndedException {
+            gameMessage = Util.getGameSpecificMessage();
+            runAction(new WaitAction(wait));
+            runAction(action);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRunsFasterThanRealTime() {
+        CountingLoop loop = new CountingLoop();
+        Looper looper = new Looper();
+        looper.register(loop, 0.005, Looper.Priority.CRITICAL);
+        // 10 seconds of waiting then 2 more seconds of loops
+        RecordingAction action = new RecordingAction(loop, 2400);
+        TestMode mode = new TestMode(10.0, action);
+
+        long start = System.nanoTime();
+        VirtualAutoRunner.Result result = VirtualAutoRunner.run(mode, looper, "LRL", 15.0);
+        double realTime = (System.nanoTime() - start) * 1e-9;
+
+        assertTrue(result.toString(), result.finished);
+        assertEquals("LRL", mode.gameMessage);
+        assertEquals(12.0, result.duration, 0.05);
+        assertTrue("took " + realTime + "s", realTime < 5.0);
+        assertEquals(result.duration / looper.kPeriod, loop.runs, 1.5);
+        // lockstep: the mode saw every one of its 20ms updates
+        assertTrue(action.updates.size() > 50);
+        for (int i = 1; i < action.updates.size(); i++)
+            assertEquals(0.02, action.updates.get(i) - action.updates.get(i - 1), kEpsilon);
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeout() {
+        CountingLoop loop = new CountingLoop();
+        Looper looper = new Looper();
+        looper.register(loop, 0.005, Looper.Priority.CRITICAL);
+        TestMode mode = new TestMode(20.0, new RecordingAction(loop, 0));
+
+        VirtualAutoRunner.Result result = VirtualAutoRunner.run(mode, looper, "LRL", 1.0);
+        assertFalse(result.finished);
+        assertEquals(1.0, result.duration, kEpsilon);
+        assertFalse(mode.isActive());
+    }
+}
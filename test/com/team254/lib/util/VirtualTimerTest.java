@@ -0,0 +1,55 @@
+package com.team254.lib.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.spartronics4915.lib.util.VirtualTimer;
+
+import edu.wpi.first.wpilibj.Timer;
+
+public class VirtualTimerTest {
+    public static final double kEpsilon = 1E-9;
+
+    @Test
+    public void testTimestampAndTimers() {
+        VirtualTimer clock = new VirtualTimer(10.0);
+        clock.install();
+        assertEquals(10.0, Timer.getFPGATimestamp(), kEpsilon);
+
+        Timer t = new Timer();
+        t.reset();
+        t.start();
+        clock.advance(0.25);
+        assertEquals(0.25, t.get(), kEpsilon);
+        assertFalse(t.hasPeriodPassed(0.5));
+        clock.advance(0.3);
+        assertTrue(t.hasPeriodPassed(0.5));
+        assertFalse(t.hasPeriodPassed(0.5));
+        t.stop();
+        clock.advance(1.0);
+        // hasPeriodPassed moves the start forward by one period
+        assertEquals(0.05, t.get(), kEpsilon);
+    }
+
+    @Test
+    public void testDelayWaitsForVirtualTime() throws InterruptedException {
+        VirtualTimer clock = new VirtualTimer();
+        clock.install();
+        Thread sleeper = new Thread(() -> Timer.delay(1.0));
+        sleeper.start();
+        while (sleeper.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 50; ++i) {
+            clock.advance(0.01);
+        }
+        sleeper.join(100);
+        assertTrue(sleeper.isAlive());
+        for (int i = 0; i < 60; ++i) {
+            clock.advance(0.01);
+        }
+        sleeper.join(5000);
+        assertFalse(sleeper.isAlive());
+    }
+}
@@ -0,0 +1,158 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.frc2018.paths.PathBuilder;
+import com.spartronics4915.frc2018.paths.PathBuilder.Waypoint;
+import com.spartronics4915.frc2018.paths.PathCache;
+import com.spartronics4915.frc2018.paths.PathContainer;
+import com.spartronics4915.lib.util.control.Lookahead;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.PathFile;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+
+public class PathFileTest {
+    public static final double kTestEpsilon = 1E-9;
+
+    private static List<Waypoint> getWaypoints(double endX) {
+        List<Waypoint> waypoints = new ArrayList<>();
+        waypoints.add(new Waypoint(18, 160, 0, 0));
+        waypoints.add(new Waypoint(60, 160, 30, 60, "turn"));
+        waypoints.add(new Waypoint(100, 220, 20, 60));
+        waypoints.add(new Waypoint(endX, 220, 0, 40));
+        return waypoints;
+    }
+
+    private static Path buildPath() {
+        return PathBuilder.buildPathFromWaypoints(getWaypoints(140));
+    }
+
+    private static PathContainer getContainer(final double endX, final boolean reversed) {
+        return new PathContainer() {
+            @Override
+            public Path buildPath() {
+                return PathBuilder.buildPathFromWaypoints(getWaypoints());
+            }
+
+            @Override
+            public List<Waypoint> getWaypoints() {
+                return PathFileTest.getWaypoints(endX);
+            }
+
+            @Override
+            public RigidTransform2d getStartPose() {
+                return new RigidTransform2d();
+            }
+
+            @Override
+            public boolean isReversed() {
+                return reversed;
+            }
+        };
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = File.createTempFile("paths", ".bin");
+        file.deleteOnExit();
+        Map<String, Path> paths = new LinkedHashMap<>();
+        paths.put("a", buildPath());
+        paths.put("b", buildPath());
+        PathFile.write(file, paths);
+
+        PathFile pathFile = PathFile.open(file);
+        assertEquals(paths.keySet(), pathFile.getNames());
+        assertNull(pathFile.getPath("c"));
+
+        // Walk both along the path, they should agree on everything.
+        Path expected = buildPath();
+        Path actual = pathFile.getPath("b");
+        assertEquals(expected.toString(), actual.toString());
+        Lookahead lookahead = new Lookahead(12.0, 24.0, 9.0, 120.0);
+        for (double x = 18; x <= 140; x += 2) {
+            Translation2d robot = new Translation2d(x, 160 + Math.max(0, Math.min(60, (x - 60) * 1.5)));
+            Path.TargetPointReport e = expected.getTargetPoint(robot, lookahead);
+            Path.TargetPointReport a = actual.getTargetPoint(robot, lookahead);
+            assertEquals(e.closest_segment, a.closest_segment);
+            assertEquals(e.closest_point.x(), a.closest_point.x(), kTestEpsilon);
+            assertEquals(e.closest_point.y(), a.closest_point.y(), kTestEpsilon);
+            assertEquals(e.lookahead_point.x(), a.lookahead_point.x(), kTestEpsilon);
+            assertEquals(e.lookahead_point.y(), a.lookahead_point.y(), kTestEpsilon);
+            assertEquals(e.lookahead_point_speed, a.lookahead_point_speed, kTestEpsilon);
+            assertEquals(e.remaining_path_distance, a.remaining_path_distance, kTestEpsilon);
+            assertEquals(expected.hasPassedMarker("turn"), actual.hasPassedMarker("turn"));
+        }
+        assertTrue(actual.hasPassedMarker("turn"));
+    }
+
+    @Test
+    public void testSourceHash() throws IOException {
+        long hash = PathCache.getSourceHash(getContainer(140, false));
+        assertEquals(hash, PathCache.getSourceHash(getContainer(140, false)));
+        assertNotEquals(hash, PathCache.getSourceHash(getContainer(141, false)));
+        assertNotEquals(hash, PathCache.getSourceHash(getContainer(140, true)));
+
+        File file = File.createTempFile("paths", ".bin");
+        file.deleteOnExit();
+        Map<String, Path> paths = new LinkedHashMap<>();
+        paths.put("a", buildPath());
+        paths.put("b", buildPath());
+        Map<String, Long> hashes = new LinkedHashMap<>();
+        hashes.put("a", hash);
+        PathFile.write(file, paths, hashes);
+
+        PathFile pathFile = PathFile.open(file);
+        assertEquals(hash, pathFile.getSourceHash("a"));
+        assertEquals(0, pathFile.getSourceHash("b"));
+        assertEquals(0, pathFile.getSourceHash("c"));
+        assertTrue(PathCache.isCurrent(pathFile, "a", hash));
+        assertFalse(PathCache.isCurrent(pathFile, "b", hash));
+        assertFalse(PathCache.isCurrent(pathFile, "c", hash));
+    }
+
+    @Test
+    public void testRetuneMakesEntriesStale() throws IOException {
+        final double accel = Constants.kPathFollowingMaxAccel;
+        final double jerk = Constants.kPathFollowingMaxJerk;
+        long hash = PathCache.getSourceHash(getWaypoints(140), false, accel, jerk);
+        assertEquals(hash, PathCache.getSourceHash(getContainer(140, false)));
+
+        File file = File.createTempFile("paths", ".bin");
+        file.deleteOnExit();
+        Map<String, Path> paths = new LinkedHashMap<>();
+        paths.put("a", buildPath());
+        Map<String, Long> hashes = new LinkedHashMap<>();
+        hashes.put("a", hash);
+        PathFile.write(file, paths, hashes);
+        PathFile pathFile = PathFile.open(file);
+
+        assertTrue(PathCache.isCurrent(pathFile, "a", PathCache.getSourceHash(getWaypoints(140), false, accel, jerk)));
+        // the jar's constants were retuned after the file was written
+        assertFalse(PathCache.isCurrent(pathFile, "a",
+                PathCache.getSourceHash(getWaypoints(140), false, accel * 0.8, jerk)));
+        assertFalse(PathCache.isCurrent(pathFile, "a",
+                PathCache.getSourceHash(getWaypoints(140), false, accel, 2000)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        File file = File.createTempFile("paths", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("not a path file".getBytes());
+        }
+        PathFile.open(file);
+    }
+}
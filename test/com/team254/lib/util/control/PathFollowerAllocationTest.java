@@ -0,0 +1,127 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.paths.DriveToCloseSwitchFromCPath;
+import com.spartronics4915.frc2018.paths.PathContainer;
+import com.spartronics4915.lib.util.control.AdaptivePurePursuitController;
+import com.spartronics4915.lib.util.control.PathFollower;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+import com.spartronics4915.lib.util.math.Twist2d;
+
+/**
+ * Measures heap allocation (via the HotSpot per-thread allocation counter)
+ * of the pure pursuit hot path. Prints bytes allocated per
+ * PathFollower.update, holds it under a budget, and checks that the "into"
+ * math variants don't allocate at all.
+ */
+public class PathFollowerAllocationTest {
+    private static final int kIterations = 10000;
+    // ~740 bytes/call today (mostly the velocity profile regenerated each
+    // update); the budget catches regressions without tracking JIT noise
+    private static final double kMaxBytesPerUpdate = 1024;
+
+    private static com.sun.management.ThreadMXBean sBean;
+
+    private static boolean enableAllocationCounter() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        sBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!sBean.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        sBean.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    private static long allocatedBytes() {
+        return sBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Follows a full path in simulation.
+     *
+     * @return bytes allocated per PathFollower.update call
+     */
+    private static double followPath(PathContainer container) {
+        PathFollower follower = new PathFollower(container.buildPath(), container.isReversed(),
+                PathFollowerTest.kParameters);
+        final double dt = 0.01;
+        RigidTransform2d pose = new RigidTransform2d(container.getStartPose());
+        RigidTransform2d step = new RigidTransform2d();
+        double t = 0;
+        double displacement = 0.0;
+        double velocity = 0.0;
+        long bytes = 0;
+        int calls = 0;
+        while (!follower.isFinished() && t < 15.0) {
+            long before = allocatedBytes();
+            Twist2d command = follower.update(t, pose, displacement, velocity);
+            bytes += allocatedBytes() - before;
+            calls++;
+            RigidTransform2d.exp(command.scaled(dt), step);
+            pose.transformBy(step, pose);
+            t += dt;
+            velocity = command.dx;
+            displacement += velocity * dt;
+        }
+        assertTrue(follower.isFinished());
+        return (double) bytes / calls;
+    }
+
+    @Test
+    public void testPathFollowerAllocation() {
+        if (!enableAllocationCounter()) {
+            return;
+        }
+        PathContainer container = new DriveToCloseSwitchFromCPath();
+        for (int i = 0; i < 5; ++i) {
+            followPath(container); // warm up
+        }
+        double bytes = followPath(container);
+        System.out.println("PathFollower.update allocates " + Math.round(bytes) + " bytes/call");
+        assertTrue(bytes + " bytes/call", bytes < kMaxBytesPerUpdate);
+    }
+
+    @Test
+    public void testIntoVariantsDontAllocate() {
+        if (!enableAllocationCounter()) {
+            return;
+        }
+        RigidTransform2d pose = new RigidTransform2d(new Translation2d(3, 4), Rotation2d.fromDegrees(30));
+        RigidTransform2d other = new RigidTransform2d(new Translation2d(-1, 2), Rotation2d.fromDegrees(-75));
+        RigidTransform2d out = new RigidTransform2d();
+        Translation2d translation = new Translation2d();
+        Rotation2d rotation = new Rotation2d();
+        Twist2d twist = new Twist2d(1.0, 0.0, 0.1);
+        Translation2d point = new Translation2d(20, 15);
+        AdaptivePurePursuitController.Arc arc = new AdaptivePurePursuitController.Arc();
+
+        double sink = 0;
+        for (int pass = 0; pass < 2; ++pass) {
+            long before = allocatedBytes();
+            for (int i = 0; i < kIterations; ++i) {
+                RigidTransform2d.exp(twist, out);
+                pose.transformBy(other, out);
+                pose.getTranslation().translateBy(other.getTranslation(), translation);
+                translation.rotateBy(pose.getRotation(), translation);
+                pose.getRotation().rotateBy(other.getRotation(), rotation);
+                arc.set(pose, point);
+                sink += out.getTranslation().x() + translation.y() + rotation.cos() + arc.length;
+            }
+            if (pass == 1) {
+                // allow for a few incidental bytes (eg: JIT transitions); any
+                // real per-call allocation would be at least 16 bytes/call
+                assertTrue(allocatedBytes() - before < kIterations);
+            }
+        }
+        assertFalse(Double.isNaN(sink));
+    }
+}
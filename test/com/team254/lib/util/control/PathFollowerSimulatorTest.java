@@ -0,0 +1,126 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.subsystems.Drive;
+import com.spartronics4915.frc2018.paths.PathCache;
+import com.spartronics4915.frc2018.paths.PathContainer;
+import com.spartronics4915.frc2018.paths.PathFollowerSimulator;
+import com.spartronics4915.frc2018.paths.PathTransformHelper;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+
+public class PathFollowerSimulatorTest {
+    public static final double kMaxCrossTrackError = 10.0; // inches
+    public static final double kMaxEndError = 10.0; // inches
+
+    private static void checkRegisteredPaths(Drive.PathController controller) {
+        PathFollowerSimulator.Config config = new PathFollowerSimulator.Config();
+        config.controller = controller;
+        config.maxCrossTrackError = kMaxCrossTrackError;
+        config.maxEndError = kMaxEndError;
+        List<PathFollowerSimulator.Result> results = PathFollowerSimulator.simulateAll(PathCache.getRegisteredPaths(),
+                config);
+        assertEquals(PathCache.getRegisteredPaths().size(), results.size());
+        for (PathFollowerSimulator.Result r : results) {
+            assertTrue(r.toString(), r.finished);
+            assertTrue(r.toString(), r.maxCrossTrackError < kMaxCrossTrackError);
+            assertTrue(r.toString(), r.endError < kMaxEndError);
+            for (double t : r.markerTimes.values()) {
+                assertFalse(r.toString(), Double.isNaN(t));
+            }
+            assertTrue(r.toString(), r.passed());
+        }
+    }
+
+    @Test
+    public void testRegisteredPaths() {
+        checkRegisteredPaths(Drive.PathController.PURE_PURSUIT);
+    }
+
+    @Test
+    public void testRegisteredPathsRamsete() {
+        checkRegisteredPaths(Drive.PathController.RAMSETE);
+    }
+
+    @Test
+    public void testRegisteredPathsTalonProfile() {
+        checkRegisteredPaths(Drive.PathController.TALON_PROFILE);
+    }
+
+    @Test
+    public void testStartPosesFaceAlongPaths() {
+        for (PathContainer container : PathCache.getRegisteredPaths()) {
+            String name = container.getClass().getSimpleName();
+            RigidTransform2d start = container.getStartPose();
+            Path path = container.buildPath();
+            Rotation2d heading = path.getStartHeading();
+            if (container.isReversed())
+                heading = heading.rotateBy(Rotation2d.fromDegrees(180));
+            assertEquals(name, 0.0, start.getRotation().inverse().rotateBy(heading).getDegrees(), 1.0);
+            assertEquals(name, 0.0, path.getDistanceFromPath(start.getTranslation()), 1.0);
+        }
+    }
+
+    @Test
+    public void testMirrorRigidTransform() {
+        RigidTransform2d mirrored = PathTransformHelper.mirrorRigidTransformAboutAxis(
+                new RigidTransform2d(new Translation2d(10, 20), Rotation2d.fromDegrees(30)), false, true);
+        assertEquals(-30, mirrored.getRotation().getDegrees(), 1E-9);
+        mirrored = PathTransformHelper.mirrorRigidTransformAboutAxis(
+                new RigidTransform2d(new Translation2d(10, 20), Rotation2d.fromDegrees(30)), true, false);
+        assertEquals(150, mirrored.getRotation().getDegrees(), 1E-9);
+        mirrored = PathTransformHelper.mirrorRigidTransformAboutAxis(
+                new RigidTransform2d(new Translation2d(10, 20), Rotation2d.fromDegrees(30)), true, true);
+        assertEquals(-150, mirrored.getRotation().getDegrees(), 1E-9);
+    }
+
+    @Test
+    public void testCheck() {
+        PathFollowerSimulator.Config config = new PathFollowerSimulator.Config();
+        PathFollowerSimulator.Result r = new PathFollowerSimulator.Result();
+        r.name = "test";
+        r.finished = true;
+        r.markerTimes.put("crossed", 1.0);
+        r.check(config);
+        assertTrue(r.toString(), r.passed());
+
+        r.markerTimes.put("missed", Double.NaN);
+        r.check(config);
+        assertFalse(r.passed());
+        assertTrue(r.toString().contains("never crossed missed"));
+
+        r.markerTimes.remove("missed");
+        r.endError = config.maxEndError + 1;
+        r.check(config);
+        assertFalse(r.passed());
+
+        r.endError = Double.NaN;
+        r.check(config);
+        assertFalse(r.passed());
+
+        r.endError = 0.0;
+        r.maxCrossTrackError = config.maxCrossTrackError + 1;
+        r.check(config);
+        assertFalse(r.passed());
+
+        r.maxCrossTrackError = 0.0;
+        r.finished = false;
+        r.check(config);
+        assertFalse(r.passed());
+    }
+
+    @Test
+    public void testRepeatable() {
+        PathFollowerSimulator.Config config = new PathFollowerSimulator.Config();
+        PathFollowerSimulator.Result a = PathFollowerSimulator.simulate(PathCache.getRegisteredPaths().get(0), config);
+        PathFollowerSimulator.Result b = PathFollowerSimulator.simulate(PathCache.getRegisteredPaths().get(0), config);
+        assertEquals(a.toString(), b.toString());
+    }
+}
@@ -0,0 +1,95 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.frc2018.paths.PathCache;
+import com.spartronics4915.frc2018.paths.PathContainer;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.Trajectory;
+import com.spartronics4915.lib.util.control.TrajectoryGenerator;
+import com.spartronics4915.lib.util.control.WheelProfile;
+
+/**
+ * Building paths in parallel (as PathCache does) must give the same paths
+ * as building them serially. The speedup is measured by PathBenchmarks
+ * under bench/.
+ */
+public class PathPrecompileTest {
+    public static final int kRounds = 3;
+    public static final int kThreads = 4;
+
+    // Fresh containers every round: mirrored containers mirror their
+    // waypoints in place, so each may only be built once.
+    private static List<PathContainer> containers() {
+        List<PathContainer> containers = new ArrayList<>();
+        for (int i = 0; i < kRounds; i++) {
+            containers.addAll(PathCache.getRegisteredPaths());
+        }
+        return containers;
+    }
+
+    private static List<Path> buildAll(List<PathContainer> containers, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Path>> tasks = new ArrayList<>();
+            for (PathContainer container : containers) {
+                tasks.add(() -> container.buildPath());
+            }
+            List<Path> paths = new ArrayList<>();
+            for (Future<Path> f : executor.invokeAll(tasks)) {
+                paths.add(f.get());
+            }
+            return paths;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelPrecompile() throws Exception {
+        List<Path> serial = buildAll(containers(), 1);
+        List<Path> parallel = buildAll(containers(), kThreads);
+
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.get(i).toString(), parallel.get(i).toString());
+            assertEquals(serial.get(i).getRemainingSegmentCount(), parallel.get(i).getRemainingSegmentCount());
+            assertEquals(serial.get(i).getLastMotionState(), parallel.get(i).getLastMotionState());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testPrecompiledTrajectories() throws Exception {
+        PathCache cache = PathCache.getInstance();
+        cache.precompile(PathCache.getRegisteredPaths());
+        while (!cache.isReady()) {
+            Thread.sleep(10);
+        }
+        // Fresh containers, as auto modes make them (precompile built, and
+        // so mirrored, the ones it was given).
+        for (PathContainer container : PathCache.getRegisteredPaths()) {
+            String name = container.getClass().getSimpleName();
+            Trajectory trajectory = cache.getTrajectory(container);
+            WheelProfile profile = cache.getWheelProfile(container);
+            // handed out from the cache, not generated per call
+            assertSame(name, trajectory, cache.getTrajectory(container));
+            assertSame(name, profile, cache.getWheelProfile(container));
+
+            Trajectory fresh = TrajectoryGenerator.generate(container.buildPath(),
+                    TrajectoryGenerator.Constraints.getDefault());
+            assertEquals(name, fresh.getDuration(), trajectory.getDuration(), 1E-9);
+            assertEquals(name, fresh.getLength(), trajectory.getLength(), 1E-9);
+            assertEquals(name, fresh.getDuration(), profile.getDuration(), Constants.kTalonProfileDt);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import com.spartronics4915.lib.util.control.Lookahead;
+import com.spartronics4915.lib.util.control.Path;
 import com.spartronics4915.lib.util.control.PathSegment;
 import com.spartronics4915.lib.util.math.Translation2d;
 import com.spartronics4915.lib.util.motion.MotionState;
@@ -119,4 +121,95 @@ public class PathTest {
         dist = segment.getRemainingDistance(closestPoint);
         assertEquals(0, dist, kTestEpsilon);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMultiSegmentPath() {
+        // Five 100" segments along x, with a fixed 150" lookahead.
+        Path path = new Path();
+        for (int i = 0; i < 5; ++i) {
+            path.addSegment(new PathSegment(100.0 * i, 0.0, 100.0 * (i + 1), 0.0, 50.0, stopped, 0.0));
+        }
+        path.extrapolateLast();
+        Lookahead lookahead = new Lookahead(150.0, 150.0, 0.0, 100.0);
+
+        Path.TargetPointReport report = path.getTargetPoint(new Translation2d(30, 0), lookahead);
+        assertEquals(70, report.remaining_segment_distance, kTestEpsilon);
+        assertEquals(470, report.remaining_path_distance, kTestEpsilon);
+        assertEquals(180, report.lookahead_point.x(), kTestEpsilon);
+        assertEquals(5, path.getRemainingSegmentCount());
+
+        // Off the path, the lookahead grows by the cross track distance.
+        report = path.getTargetPoint(new Translation2d(50, 20), lookahead);
+        assertEquals(20, report.closest_point_distance, kTestEpsilon);
+        assertEquals(220, report.lookahead_point.x(), kTestEpsilon);
+
+        // Finishing a segment retires it.
+        report = path.getTargetPoint(new Translation2d(100, 0), lookahead);
+        assertEquals(4, path.getRemainingSegmentCount());
+        report = path.getTargetPoint(new Translation2d(130, 0), lookahead);
+        assertEquals(370, report.remaining_path_distance, kTestEpsilon);
+        assertEquals(280, report.lookahead_point.x(), kTestEpsilon);
+        assertEquals(4, path.getRemainingSegmentCount());
+
+        // The last segment extrapolates past the end of the path.
+        for (int i = 2; i <= 4; ++i) {
+            path.getTargetPoint(new Translation2d(100.0 * i, 0), lookahead);
+        }
+        report = path.getTargetPoint(new Translation2d(420, 0), lookahead);
+        assertEquals(80, report.remaining_path_distance, kTestEpsilon);
+        assertEquals(570, report.lookahead_point.x(), kTestEpsilon);
+        assertEquals(1, path.getRemainingSegmentCount());
+    }
+
+    @Test
+    public void testClosestSegmentSearch() {
+        // An L: 100" along x, then a 50" marked segment and 150" up y.
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 100.0, 0.0, 50.0, stopped, 0.0));
+        path.addSegment(new PathSegment(100.0, 0.0, 100.0, 50.0, 50.0, stopped, 0.0, "corner"));
+        path.addSegment(new PathSegment(100.0, 50.0, 100.0, 200.0, 50.0, stopped, 0.0));
+        path.extrapolateLast();
+        Lookahead lookahead = new Lookahead(24.0, 24.0, 0.0, 100.0);
+
+        // On course, we stay on the current segment even where it meets the next.
+        Path.TargetPointReport report = path.getTargetPoint(new Translation2d(50, 0), lookahead);
+        assertEquals(0, report.closest_segment);
+        assertEquals(3, path.getRemainingSegmentCount());
+
+        // Knocked well up the second leg, we pick up the last segment and
+        // retire (and cross the markers of) everything before it.
+        report = path.getTargetPoint(new Translation2d(110, 120), lookahead);
+        assertEquals(2, report.closest_segment);
+        assertEquals(100, report.closest_point.x(), kTestEpsilon);
+        assertEquals(120, report.closest_point.y(), kTestEpsilon);
+        assertEquals(10, report.closest_point_distance, kTestEpsilon);
+        assertEquals(80, report.remaining_path_distance, kTestEpsilon);
+        assertEquals(1, path.getRemainingSegmentCount());
+        assertTrue(path.hasPassedMarker("corner"));
+
+        // We never search backwards.
+        report = path.getTargetPoint(new Translation2d(50, 0), lookahead);
+        assertEquals(2, report.closest_segment);
+        assertEquals(1, path.getRemainingSegmentCount());
+    }
+
+    @Test
+    public void testPathCopy() {
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 100.0, 0.0, 50.0, stopped, 0.0, "first"));
+        path.addSegment(new PathSegment(100.0, 0.0, 200.0, 0.0, 50.0, stopped, 0.0));
+        path.extrapolateLast();
+        Lookahead lookahead = new Lookahead(24.0, 24.0, 0.0, 100.0);
+
+        Path copy = path.copy();
+        copy.getTargetPoint(new Translation2d(100, 0), lookahead);
+        assertEquals(1, copy.getRemainingSegmentCount());
+        assertTrue(copy.hasPassedMarker("first"));
+
+        // Following the copy doesn't touch the original, or later copies.
+        assertEquals(2, path.getRemainingSegmentCount());
+        assertFalse(path.hasPassedMarker("first"));
+        Path.TargetPointReport report = path.copy().getTargetPoint(new Translation2d(50, 0), lookahead);
+        assertEquals(150, report.remaining_path_distance, kTestEpsilon);
+    }
+}
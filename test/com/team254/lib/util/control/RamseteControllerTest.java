@@ -0,0 +1,69 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.PathSegment;
+import com.spartronics4915.lib.util.control.RamseteController;
+import com.spartronics4915.lib.util.control.TrajectoryGenerator;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+import com.spartronics4915.lib.util.math.Twist2d;
+import com.spartronics4915.lib.util.motion.MotionState;
+
+public class RamseteControllerTest {
+    public static final double kDt = 0.01;
+    public static final MotionState stopped = new MotionState(0, 0, 0, 0);
+    public static final RamseteController.Parameters kParameters = new RamseteController.Parameters(0.0013, 0.7,
+            0.75, 0.5);
+    public static final TrajectoryGenerator.Constraints kConstraints = new TrajectoryGenerator.Constraints(120, 120,
+            120);
+
+    // Drives a perfect (no slip, no latency) robot until the controller
+    // finishes, returning the final pose.
+    private static RigidTransform2d drive(RamseteController controller, RigidTransform2d pose) {
+        double t = 0.0;
+        while (!controller.isFinished() && t < 30.0) {
+            Twist2d command = controller.update(t, pose);
+            pose = pose.transformBy(RigidTransform2d.exp(command.scaled(kDt)));
+            t += kDt;
+        }
+        assertTrue(controller.isFinished());
+        return pose;
+    }
+
+    @Test
+    public void testConvergesFromOffset() {
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 200.0, 0.0, 120.0, stopped, 0.0, "mid"));
+        path.addSegment(new PathSegment(200.0, 0.0, 300.0, 0.0, 120.0, stopped, 0.0));
+        RamseteController controller = new RamseteController(path,
+                TrajectoryGenerator.generate(path, kConstraints), false, kParameters);
+        assertFalse(controller.hasPassedMarker("mid"));
+
+        // Start 6" to the side and 10 degrees off.
+        RigidTransform2d pose = drive(controller,
+                new RigidTransform2d(new Translation2d(0, 6), Rotation2d.fromDegrees(10)));
+        assertEquals(300.0, pose.getTranslation().x(), 1.0);
+        assertEquals(0.0, pose.getTranslation().y(), 1.0);
+        assertEquals(0.0, pose.getRotation().getDegrees(), 2.0);
+        assertTrue(controller.hasPassedMarker("mid"));
+        assertFalse(controller.hasPassedMarker("nonexistent"));
+    }
+
+    @Test
+    public void testReversedArc() {
+        // Back around a 90 degree, 60" radius arc, facing away from travel.
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 60.0, 60.0, 0.0, 60.0, 120.0, stopped, 0.0));
+        RamseteController controller = new RamseteController(path,
+                TrajectoryGenerator.generate(path, kConstraints), true, kParameters);
+        RigidTransform2d pose = drive(controller, new RigidTransform2d(new Translation2d(), Rotation2d.fromDegrees(180)));
+        assertEquals(60.0, pose.getTranslation().x(), 1.0);
+        assertEquals(60.0, pose.getTranslation().y(), 1.0);
+        assertEquals(-90.0, pose.getRotation().getDegrees(), 3.0);
+    }
+}
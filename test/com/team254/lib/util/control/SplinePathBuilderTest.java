@@ -0,0 +1,71 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.frc2018.paths.SplinePathBuilder;
+import com.spartronics4915.frc2018.paths.SplinePathBuilder.Waypoint;
+import com.spartronics4915.lib.util.control.Lookahead;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+
+public class SplinePathBuilderTest {
+    public static final double kTestEpsilon = 1E-6;
+
+    private static RigidTransform2d pose(double x, double y, double degrees) {
+        return new RigidTransform2d(new Translation2d(x, y), Rotation2d.fromDegrees(degrees));
+    }
+
+    @Test
+    public void testSplinePath() {
+        List<Waypoint> waypoints = new ArrayList<>();
+        waypoints.add(new Waypoint(pose(18, 45, 0), 0));
+        waypoints.add(new Waypoint(pose(200, 45, 0), 100, "straight"));
+        waypoints.add(new Waypoint(pose(260, 105, 90), 100));
+        waypoints.add(new Waypoint(pose(260, 245, 90), 60));
+        Path path = SplinePathBuilder.buildPathFromWaypoints(waypoints);
+
+        Lookahead lookahead = new Lookahead(12.0, 24.0, 9.0, 120.0);
+        Path.TargetPointReport report = path.getTargetPoint(new Translation2d(18, 45), lookahead);
+        assertEquals(18, report.closest_point.x(), kTestEpsilon);
+        assertEquals(45, report.closest_point.y(), kTestEpsilon);
+        // Longer than the straight line distance, shorter than going around the corner.
+        assertTrue(report.remaining_path_distance > 182 + Math.hypot(60, 60) + 140);
+        assertTrue(report.remaining_path_distance < 182 + 60 + 60 + 140);
+        assertEquals(0, report.closest_point_speed, kTestEpsilon);
+
+        // Walk the path: speeds respect the lateral accel limit through the
+        // turn and the waypoint speeds, and the marker is crossed on the way.
+        double lastX = 18, lastY = 45, lastHeading = 0;
+        for (int i = 0; i < 1000 && report.remaining_path_distance > 1.0; ++i) {
+            // Step halfway to the lookahead point.
+            Translation2d target = report.lookahead_point;
+            report = path.getTargetPoint(new Translation2d(
+                    lastX + 0.5 * (target.x() - lastX), lastY + 0.5 * (target.y() - lastY)), lookahead);
+            double dx = report.closest_point.x() - lastX;
+            double dy = report.closest_point.y() - lastY;
+            double step = Math.hypot(dx, dy);
+            if (step > 1.0) {
+                double heading = Math.atan2(dy, dx);
+                double curvature = Math.abs(heading - lastHeading) / step;
+                assertTrue(report.closest_point_speed <= 100 + kTestEpsilon);
+                assertTrue(report.closest_point_speed * report.closest_point_speed * curvature
+                        <= 1.5 * Constants.kPathFollowingMaxLateralAccel);
+                lastHeading = heading;
+            }
+            lastX = report.closest_point.x();
+            lastY = report.closest_point.y();
+        }
+        assertTrue(report.remaining_path_distance <= 1.0);
+        assertTrue(path.hasPassedMarker("straight"));
+        assertEquals(260, path.getEndPosition().x(), kTestEpsilon);
+        assertEquals(245, path.getEndPosition().y(), kTestEpsilon);
+    }
+}
@@ -0,0 +1,140 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.Constants;
+import com.spartronics4915.frc2018.Kinematics;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.PathSegment;
+import com.spartronics4915.lib.util.control.Trajectory;
+import com.spartronics4915.lib.util.control.TrajectoryGenerator;
+import com.spartronics4915.lib.util.math.Twist2d;
+import com.spartronics4915.lib.util.motion.MotionState;
+
+public class TrajectoryGeneratorTest {
+    public static final double kTestEpsilon = 1E-6;
+    public static final MotionState stopped = new MotionState(0, 0, 0, 0);
+
+    @Test
+    public void testStraightLine() {
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 200.0, 0.0, 10.0, stopped, 0.0));
+        TrajectoryGenerator.Constraints constraints = new TrajectoryGenerator.Constraints(120, 120, 100);
+        Trajectory trajectory = TrajectoryGenerator.generate(path, constraints);
+
+        // Trapezoid: 1s up to 120 ips, 80" cruise, 1s down. The 10 ips
+        // segment speed is ignored.
+        assertEquals(200, trajectory.getLength(), kTestEpsilon);
+        assertEquals(1 + 80.0 / 120 + 1, trajectory.getDuration(), 0.01);
+        assertEquals(0, trajectory.getStartState().velocity, kTestEpsilon);
+        assertEquals(0, trajectory.getEndState().velocity, kTestEpsilon);
+        assertEquals(120, trajectory.getState(trajectory.getDuration() / 2).velocity, kTestEpsilon);
+
+        Trajectory.State state = trajectory.getState(0.5);
+        assertEquals(60, state.velocity, 0.1);
+        assertEquals(15, state.distance, 0.1);
+        assertEquals(15, state.pose.getTranslation().x(), 0.1);
+        assertEquals(0, state.pose.getTranslation().y(), kTestEpsilon);
+    }
+
+    @Test
+    public void testConstraints() {
+        // A line into a tight 30" radius quarter turn and out again.
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 100.0, 0.0, 60.0, stopped, 0.0));
+        path.addSegment(new PathSegment(100.0, 0.0, 130.0, 30.0, 100.0, 30.0, 60.0, stopped, 0.0));
+        path.addSegment(new PathSegment(130.0, 30.0, 130.0, 130.0, 60.0, stopped, 0.0));
+        TrajectoryGenerator.Constraints constraints = new TrajectoryGenerator.Constraints(150, 100, 80);
+        Trajectory trajectory = TrajectoryGenerator.generate(path, constraints);
+
+        assertEquals(200 + Math.PI * 15, trajectory.getLength(), kTestEpsilon);
+        assertEquals(130, trajectory.getEndState().pose.getTranslation().x(), kTestEpsilon);
+        assertEquals(130, trajectory.getEndState().pose.getTranslation().y(), kTestEpsilon);
+        assertEquals(90, trajectory.getEndState().pose.getRotation().getDegrees(), kTestEpsilon);
+        assertEquals(0, TrajectoryGenerator.countCorners(path));
+
+        double maxVelocity = 0.0;
+        double lastT = -1.0;
+        for (Trajectory.State s : trajectory.getStates()) {
+            assertTrue(s.t > lastT);
+            lastT = s.t;
+            maxVelocity = Math.max(maxVelocity, s.velocity);
+            assertTrue(s.velocity * s.velocity * Math.abs(s.curvature) <= 80 + kTestEpsilon);
+            Kinematics.DriveVelocity wheels = Kinematics.inverseKinematics(
+                    new Twist2d(s.velocity, 0, s.velocity * s.curvature));
+            assertTrue(Math.abs(wheels.left) <= 150 + kTestEpsilon);
+            assertTrue(Math.abs(wheels.right) <= 150 + kTestEpsilon);
+            assertTrue(Math.abs(s.acceleration) <= 100 + kTestEpsilon);
+        }
+        // Fast on the straights, slowed through the turn.
+        assertTrue(maxVelocity > 100);
+        Trajectory.State apex = null;
+        for (Trajectory.State s : trajectory.getStates()) {
+            if (s.distance >= 100 + Math.PI * 7.5) {
+                apex = s;
+                break;
+            }
+        }
+        assertEquals(Math.sqrt(80 * 30), apex.velocity, 1.0);
+    }
+
+    @Test
+    public void testCorner() {
+        // Radius 0 waypoint: straight to (100, 0), then straight up to
+        // (100, 100), a 90 degree corner with no arc.
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 100.0, 0.0, 60.0, stopped, 0.0));
+        path.addSegment(new PathSegment(100.0, 0.0, 100.0, 100.0, 60.0, stopped, 0.0));
+        TrajectoryGenerator.Constraints constraints = new TrajectoryGenerator.Constraints(120, 120, 100);
+        Trajectory trajectory = TrajectoryGenerator.generate(path, constraints);
+        double wheelFactor = Constants.kTrackWidthInches / (2 * Constants.kTrackScrubFactor);
+
+        // Two straight triangles from stop to stop, plus a triangular turn
+        // (the wheels can't reach 120 ips in 90 degrees).
+        double straight = 2 * Math.sqrt(100.0 / 120);
+        double turn = 2 * Math.sqrt(Math.PI / 2 / (120 / wheelFactor));
+        assertEquals(2 * straight + turn, trajectory.getDuration(), 0.02);
+        assertEquals(200, trajectory.getLength(), kTestEpsilon);
+        assertEquals(90, trajectory.getEndState().pose.getRotation().getDegrees(), kTestEpsilon);
+        assertEquals(1, TrajectoryGenerator.countCorners(path));
+
+        double lastT = -1.0;
+        double turned = 0.0;
+        Trajectory.State previous = null;
+        for (Trajectory.State s : trajectory.getStates()) {
+            assertTrue(s.t > lastT);
+            lastT = s.t;
+            // The heading only changes at the corner, with the robot stopped.
+            if (previous != null && Math.abs(previous.pose.getRotation().getDegrees()
+                    - s.pose.getRotation().getDegrees()) > kTestEpsilon) {
+                assertEquals(0, previous.velocity, kTestEpsilon);
+                assertEquals(100, s.pose.getTranslation().x(), kTestEpsilon);
+                assertEquals(0, s.pose.getTranslation().y(), kTestEpsilon);
+                turned += s.pose.getRotation().getDegrees() - previous.pose.getRotation().getDegrees();
+            }
+            if (Math.abs(s.distance - 100) > kTestEpsilon) {
+                assertEquals(s.velocity * s.curvature, s.angularVelocity, kTestEpsilon);
+            }
+            // Turning in place, the wheels stay within their limits.
+            assertTrue(Math.abs(s.angularVelocity) * wheelFactor <= 120 + kTestEpsilon);
+            previous = s;
+        }
+        assertEquals(90, turned, kTestEpsilon);
+
+        // Stopped at the corner, turning left halfway through the turn.
+        Trajectory.State corner = null;
+        for (Trajectory.State s : trajectory.getStates()) {
+            if (s.pose.getRotation().getDegrees() >= 45) {
+                corner = s;
+                break;
+            }
+        }
+        assertEquals(0, corner.velocity, kTestEpsilon);
+        assertTrue(corner.angularVelocity > 0);
+        Trajectory.State mid = trajectory.getState(corner.t);
+        assertEquals(100, mid.pose.getTranslation().x(), kTestEpsilon);
+        assertEquals(corner.angularVelocity, mid.angularVelocity, kTestEpsilon);
+    }
+}
@@ -0,0 +1,111 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.spartronics4915.frc2018.Kinematics;
+import com.spartronics4915.lib.util.control.Path;
+import com.spartronics4915.lib.util.control.PathSegment;
+import com.spartronics4915.lib.util.control.Trajectory;
+import com.spartronics4915.lib.util.control.TrajectoryGenerator;
+import com.spartronics4915.lib.util.control.WheelProfile;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+import com.spartronics4915.lib.util.motion.MotionState;
+
+public class WheelProfileTest {
+    public static final double kTestEpsilon = 1E-6;
+    public static final double kDt = 0.01;
+    public static final MotionState stopped = new MotionState(0, 0, 0, 0);
+    public static final TrajectoryGenerator.Constraints kConstraints = new TrajectoryGenerator.Constraints(120, 120,
+            120);
+
+    // Where a robot whose wheels follow the profile exactly ends up.
+    private static RigidTransform2d drive(WheelProfile profile, RigidTransform2d pose) {
+        for (int i = 1; i < profile.size(); i++) {
+            pose = Kinematics.integrateForwardKinematics(pose,
+                    Kinematics.forwardKinematics(profile.getLeftPosition(i) - profile.getLeftPosition(i - 1),
+                            profile.getRightPosition(i) - profile.getRightPosition(i - 1)));
+        }
+        return pose;
+    }
+
+    @Test
+    public void testStraightLine() {
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 100.0, 0.0, 120.0, stopped, 0.0, "mid"));
+        path.addSegment(new PathSegment(100.0, 0.0, 200.0, 0.0, 120.0, stopped, 0.0));
+        Trajectory trajectory = TrajectoryGenerator.generate(path, kConstraints);
+        WheelProfile profile = new WheelProfile(path, trajectory, false, kDt);
+
+        assertEquals(kDt, profile.getDt(), kTestEpsilon);
+        assertEquals((int) Math.ceil(trajectory.getDuration() / kDt) + 1, profile.size());
+        assertTrue(profile.getDuration() >= trajectory.getDuration());
+        assertTrue(profile.getDuration() < trajectory.getDuration() + kDt);
+        int last = profile.size() - 1;
+        assertEquals(0, profile.getLeftPosition(0), kTestEpsilon);
+        assertEquals(0, profile.getLeftVelocity(0), kTestEpsilon);
+        assertEquals(0, profile.getLeftVelocity(last), kTestEpsilon);
+        assertEquals(200, profile.getLeftPosition(last), 0.5);
+        for (int i = 0; i < profile.size(); i++) {
+            assertEquals(profile.getLeftPosition(i), profile.getRightPosition(i), kTestEpsilon);
+            assertEquals(profile.getLeftVelocity(i), profile.getRightVelocity(i), kTestEpsilon);
+            assertTrue(profile.getLeftVelocity(i) <= 120 + kTestEpsilon);
+        }
+
+        assertFalse(profile.hasPassedMarker("mid", 0));
+        assertFalse(profile.hasPassedMarker("mid", trajectory.getDuration() / 2 - 0.1));
+        assertTrue(profile.hasPassedMarker("mid", trajectory.getDuration() / 2 + 0.1));
+        assertTrue(profile.hasPassedMarker("mid", 100));
+        assertFalse(profile.hasPassedMarker("nonexistent", 100));
+    }
+
+    @Test
+    public void testArc() {
+        // 90 degrees left around a 60" radius.
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 60.0, 60.0, 0.0, 60.0, 120.0, stopped, 0.0));
+        WheelProfile profile = new WheelProfile(path, TrajectoryGenerator.generate(path, kConstraints), false, kDt);
+        int last = profile.size() - 1;
+        assertTrue(profile.getRightPosition(last) > profile.getLeftPosition(last));
+        assertEquals(60 * Math.PI / 2,
+                (profile.getLeftPosition(last) + profile.getRightPosition(last)) / 2, 0.5);
+
+        RigidTransform2d pose = drive(profile, new RigidTransform2d());
+        assertEquals(60.0, pose.getTranslation().x(), 1.0);
+        assertEquals(60.0, pose.getTranslation().y(), 1.0);
+        assertEquals(90.0, pose.getRotation().getDegrees(), 1.0);
+    }
+
+    @Test
+    public void testReversedArc() {
+        // Back around the same arc, facing away from travel.
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 60.0, 60.0, 0.0, 60.0, 120.0, stopped, 0.0));
+        WheelProfile profile = new WheelProfile(path, TrajectoryGenerator.generate(path, kConstraints), true, kDt);
+        int last = profile.size() - 1;
+        assertTrue(profile.getLeftPosition(last) < 0);
+        assertTrue(profile.getRightPosition(last) < 0);
+
+        RigidTransform2d pose = drive(profile, new RigidTransform2d(new Translation2d(), Rotation2d.fromDegrees(180)));
+        assertEquals(60.0, pose.getTranslation().x(), 1.0);
+        assertEquals(60.0, pose.getTranslation().y(), 1.0);
+        assertEquals(-90.0, pose.getRotation().getDegrees(), 1.0);
+    }
+
+    @Test
+    public void testCorner() {
+        // Radius 0 waypoint: the wheels turn the robot in place.
+        Path path = new Path();
+        path.addSegment(new PathSegment(0.0, 0.0, 100.0, 0.0, 120.0, stopped, 0.0));
+        path.addSegment(new PathSegment(100.0, 0.0, 100.0, 100.0, 120.0, stopped, 0.0));
+        WheelProfile profile = new WheelProfile(path, TrajectoryGenerator.generate(path, kConstraints), false, kDt);
+
+        RigidTransform2d pose = drive(profile, new RigidTransform2d());
+        assertEquals(100.0, pose.getTranslation().x(), 1.0);
+        assertEquals(100.0, pose.getTranslation().y(), 1.0);
+        assertEquals(90.0, pose.getRotation().getDegrees(), 1.0);
+    }
+}
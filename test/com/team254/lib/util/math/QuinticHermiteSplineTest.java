@@ -0,0 +1,104 @@
+package com.team254.lib.util.math;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.spartronics4915.lib.util.math.QuinticHermiteSpline;
+import com.spartronics4915.lib.util.math.RigidTransform2d;
+import com.spartronics4915.lib.util.math.Rotation2d;
+import com.spartronics4915.lib.util.math.Translation2d;
+
+public class QuinticHermiteSplineTest {
+    public static final double kTestEpsilon = 1E-9;
+
+    @Test
+    public void testEndpoints() {
+        RigidTransform2d p0 = new RigidTransform2d(new Translation2d(10, 20), Rotation2d.fromDegrees(0));
+        RigidTransform2d p1 = new RigidTransform2d(new Translation2d(110, 70), Rotation2d.fromDegrees(90));
+        QuinticHermiteSpline spline = new QuinticHermiteSpline(p0, p1);
+
+        assertEquals(10, spline.getPoint(0).x(), kTestEpsilon);
+        assertEquals(20, spline.getPoint(0).y(), kTestEpsilon);
+        assertEquals(110, spline.getPoint(1).x(), kTestEpsilon);
+        assertEquals(70, spline.getPoint(1).y(), kTestEpsilon);
+        assertEquals(0, spline.getHeading(0).getDegrees(), kTestEpsilon);
+        assertEquals(90, spline.getHeading(1).getDegrees(), kTestEpsilon);
+
+        // Zero curvature at the ends, so chained splines are curvature continuous.
+        assertEquals(0, spline.getCurvature(0), kTestEpsilon);
+        assertEquals(0, spline.getCurvature(1), kTestEpsilon);
+        // Turning left in between.
+        assertTrue(spline.getCurvature(0.5) > 0);
+    }
+
+    @Test
+    public void testStraightLine() {
+        RigidTransform2d p0 = new RigidTransform2d(new Translation2d(0, 0), Rotation2d.fromDegrees(45));
+        RigidTransform2d p1 = new RigidTransform2d(new Translation2d(50, 50), Rotation2d.fromDegrees(45));
+        QuinticHermiteSpline spline = new QuinticHermiteSpline(p0, p1);
+        for (double t = 0; t <= 1; t += 0.1) {
+            Translation2d p = spline.getPoint(t);
+            assertEquals(p.x(), p.y(), kTestEpsilon);
+            assertEquals(0, spline.getCurvature(t), kTestEpsilon);
+        }
+    }
+
+    @Test
+    public void testCurvatureAtEnds() {
+        RigidTransform2d p0 = new RigidTransform2d(new Translation2d(0, 0), Rotation2d.fromDegrees(0));
+        RigidTransform2d p1 = new RigidTransform2d(new Translation2d(100, 100), Rotation2d.fromDegrees(90));
+        QuinticHermiteSpline spline = new QuinticHermiteSpline(p0, p1, 0.01, -0.02);
+        assertEquals(0.01, spline.getCurvature(0), kTestEpsilon);
+        assertEquals(-0.02, spline.getCurvature(1), kTestEpsilon);
+        assertEquals(0, spline.getHeading(0).getDegrees(), kTestEpsilon);
+        assertEquals(90, spline.getHeading(1).getDegrees(), kTestEpsilon);
+        assertEquals(100, spline.getPoint(1).x(), kTestEpsilon);
+        assertEquals(100, spline.getPoint(1).y(), kTestEpsilon);
+    }
+
+    @Test
+    public void testChainIsCurvatureContinuous() {
+        // a quarter circle of radius 100, turning left, sampled every 30 degrees
+        List<RigidTransform2d> poses = new ArrayList<>();
+        for (int degrees = 0; degrees <= 90; degrees += 30) {
+            double theta = Math.toRadians(degrees);
+            poses.add(new RigidTransform2d(new Translation2d(100 * Math.sin(theta), 100 - 100 * Math.cos(theta)),
+                    Rotation2d.fromDegrees(degrees)));
+        }
+        List<QuinticHermiteSpline> splines = QuinticHermiteSpline.chain(poses);
+        assertEquals(3, splines.size());
+        assertEquals(0, splines.get(0).getCurvature(0), kTestEpsilon);
+        assertEquals(0, splines.get(2).getCurvature(1), kTestEpsilon);
+        for (int i = 0; i < 2; i++) {
+            double end = splines.get(i).getCurvature(1);
+            assertEquals(end, splines.get(i + 1).getCurvature(0), kTestEpsilon);
+            // the circle's, not flattened to zero
+            assertEquals(0.01, end, kTestEpsilon);
+        }
+    }
+
+    @Test
+    public void testChainCurvatureOnCircles() {
+        // poses on circles of either direction, unevenly spaced
+        double[] radii = { 30, 100, -250 };
+        double[] degrees = { 0, 10, 55, 70, 130 };
+        for (double radius : radii) {
+            List<RigidTransform2d> poses = new ArrayList<>();
+            for (double d : degrees) {
+                double theta = Math.toRadians(d) * Math.signum(radius);
+                poses.add(new RigidTransform2d(
+                        new Translation2d(radius * Math.sin(theta), radius - radius * Math.cos(theta)),
+                        Rotation2d.fromRadians(theta)));
+            }
+            List<QuinticHermiteSpline> splines = QuinticHermiteSpline.chain(poses);
+            for (int i = 0; i < splines.size() - 1; i++) {
+                assertEquals(1 / radius, splines.get(i).getCurvature(1), kTestEpsilon);
+                assertEquals(1 / radius, splines.get(i + 1).getCurvature(0), kTestEpsilon);
+            }
+        }
+    }
+}
@@ -284,6 +284,43 @@ public class TestMath {
         assertEquals(new_pose.getRotation().getDegrees(), pose.getRotation().getDegrees(), kTestEpsilon);
     }
 
+    @Test
+    public void testIntoVariants() {
+        RigidTransform2d a = new RigidTransform2d(new Translation2d(3.0, -1.0), Rotation2d.fromDegrees(30));
+        RigidTransform2d b = new RigidTransform2d(new Translation2d(-2.0, 5.0), Rotation2d.fromDegrees(-110));
+        RigidTransform2d expected = a.transformBy(b);
+
+        // out distinct from the operands
+        RigidTransform2d out = a.transformBy(b, new RigidTransform2d());
+        assertEquals(expected.getTranslation().x(), out.getTranslation().x(), kTestEpsilon);
+        assertEquals(expected.getTranslation().y(), out.getTranslation().y(), kTestEpsilon);
+        assertEquals(expected.getRotation().getDegrees(), out.getRotation().getDegrees(), kTestEpsilon);
+
+        // out aliasing this
+        RigidTransform2d aliased = new RigidTransform2d(a);
+        aliased.transformBy(b, aliased);
+        assertEquals(expected.getTranslation().x(), aliased.getTranslation().x(), kTestEpsilon);
+        assertEquals(expected.getTranslation().y(), aliased.getTranslation().y(), kTestEpsilon);
+        assertEquals(expected.getRotation().getDegrees(), aliased.getRotation().getDegrees(), kTestEpsilon);
+
+        Twist2d twist = new Twist2d(4.0, 0.5, -0.7);
+        expected = RigidTransform2d.exp(twist);
+        out = RigidTransform2d.exp(twist, out);
+        assertEquals(expected.getTranslation().x(), out.getTranslation().x(), kTestEpsilon);
+        assertEquals(expected.getTranslation().y(), out.getTranslation().y(), kTestEpsilon);
+        assertEquals(expected.getRotation().getDegrees(), out.getRotation().getDegrees(), kTestEpsilon);
+
+        Translation2d t = new Translation2d(1.0, 2.0);
+        Translation2d expected_t = t.rotateBy(Rotation2d.fromDegrees(60)).translateBy(b.getTranslation());
+        t.rotateBy(Rotation2d.fromDegrees(60), t).translateBy(b.getTranslation(), t);
+        assertEquals(expected_t.x(), t.x(), kTestEpsilon);
+        assertEquals(expected_t.y(), t.y(), kTestEpsilon);
+
+        Rotation2d r = Rotation2d.fromDegrees(170);
+        r.rotateBy(Rotation2d.fromDegrees(20), r);
+        assertEquals(-170, r.getDegrees(), kTestEpsilon);
+    }
+
 // FIXME: If we use this, you should uncomment this test
 //    @Test
 //    public void testPolynomialRegression() {
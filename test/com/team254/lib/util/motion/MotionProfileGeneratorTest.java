@@ -196,4 +196,75 @@ public class MotionProfileGeneratorTest {
         System.out.println(profile);
         assertTrue(profile.firstStateByPos(160.0).get().vel() > 0.0);
     }
+
+    // Acceleration steps of an S-curve change by at most max_abs_jerk per
+    // kJerkStepTime.
+    protected static void validateJerk(MotionProfileConstraints constraints, MotionProfile profile) {
+        double prev_acc = Double.NaN;
+        for (MotionSegment s : profile.segments()) {
+            assertTrue(Math.abs(s.start().acc()) <= constraints.max_abs_acc() + kEpsilon);
+            if (!Double.isNaN(prev_acc)) {
+                assertTrue(profile.toString(), Math.abs(s.start().acc() - prev_acc) <= constraints.max_abs_jerk()
+                        * MotionProfileGenerator.kJerkStepTime + kEpsilon);
+            }
+            prev_acc = s.start().acc();
+        }
+    }
+
+    @Test
+    public void testSCurve() {
+        // Reaches max accel: 0.1s ramps, 0.9s at 10, so 1.1s and 5.5" to get
+        // up to speed and the same to stop, cruising for the other 89".
+        MotionProfileConstraints constraints = new MotionProfileConstraints(10.0, 10.0, 100.0);
+        testProfile(constraints, new MotionProfileGoal(100.0), new MotionState(0.0, 0.0, 0.0, 0.0), 11.1, 100.0);
+        MotionProfile profile = MotionProfileGenerator.generateProfile(constraints, new MotionProfileGoal(100.0),
+                new MotionState(0.0, 0.0, 0.0, 0.0));
+        validateJerk(constraints, profile);
+        assertThat(profile.stateByTime(0.055).get().acc(), epsilonEqualTo(5.5, kEpsilon));
+
+        // Short moves never reach max accel (or velocity).
+        for (double goal : new double[] { 0.01, 0.5, 2.0, 5.0 }) {
+            profile = MotionProfileGenerator.generateProfile(constraints, new MotionProfileGoal(goal),
+                    new MotionState(0.0, 0.0, 0.0, 0.0));
+            validateProfile(constraints, new MotionProfileGoal(goal), new MotionState(0.0, 0.0, 0.0, 0.0), profile);
+            validateJerk(constraints, profile);
+            assertThat(profile.endPos(), epsilonEqualTo(goal, kEpsilon));
+        }
+
+        // Moving starts and goals.
+        profile = MotionProfileGenerator.generateProfile(constraints, new MotionProfileGoal(50.0, 5.0),
+                new MotionState(0.0, 0.0, 8.0, 0.0));
+        validateProfile(constraints, new MotionProfileGoal(50.0, 5.0), new MotionState(0.0, 0.0, 8.0, 0.0), profile);
+        validateJerk(constraints, profile);
+        profile = MotionProfileGenerator.generateProfile(constraints, new MotionProfileGoal(-50.0),
+                new MotionState(0.0, 0.0, -2.0, 0.0));
+        validateProfile(constraints, new MotionProfileGoal(-50.0), new MotionState(0.0, 0.0, -2.0, 0.0), profile);
+        validateJerk(constraints, profile);
+
+        // S-curves are slower than trapezoids.
+        assertTrue(MotionProfileGenerator.generateProfile(constraints, new MotionProfileGoal(10.0),
+                new MotionState(0.0, 0.0, 0.0, 0.0)).duration() > 2.0);
+    }
+
+    @Test
+    public void testSCurveFromAcceleration() {
+        // Already accelerating at 5: keep ramping from there.
+        MotionProfileConstraints constraints = new MotionProfileConstraints(10.0, 10.0, 100.0);
+        MotionProfileGoal goal = new MotionProfileGoal(100.0);
+        MotionState start = new MotionState(0.0, 0.0, 2.0, 5.0);
+        MotionProfile profile = MotionProfileGenerator.generateProfile(constraints, goal, start);
+        validateProfile(constraints, goal, start, profile);
+        validateJerk(constraints, profile);
+        assertThat(profile.startState().acc(), epsilonEqualTo(5.5, kEpsilon));
+    }
+
+    @Test
+    public void testSCurveFallback() {
+        // Moving away from the goal, or too fast to stop in time, gives the
+        // trapezoidal profile.
+        testProfile(new MotionProfileConstraints(10.0, 10.0, 100.0), new MotionProfileGoal(100.0),
+                new MotionState(0.0, 0.0, -10.0, 0.0), 12.5, 110.0);
+        testProfile(new MotionProfileConstraints(10.0, 10.0, 100.0), new MotionProfileGoal(5.0),
+                new MotionState(0.0, 0.0, 10.0, 0.0), 1.0, 5.0);
+    }
 }
@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -16,6 +18,8 @@ import com.spartronics4915.lib.util.motion.MotionState;
 import static org.hamcrest.CoreMatchers.*;
 
 public class MotionProfileTest {
+    public static final double kTestEpsilon = 1E-6;
+
     List<MotionSegment> segments;
     List<MotionSegment> segments_reversed;
     List<MotionSegment> segments_combined;
@@ -200,4 +204,92 @@ public class MotionProfileTest {
         a.trimBeforeTime(10.0);
         assertTrue(a.isEmpty());
     }
+
+    @Test
+    public void firstStateByPosReversing() {
+        // Out to 2.0, back to 0.0, then out to 1.0 again.
+        MotionProfile a = new MotionProfile();
+        a.reset(new MotionState(0.0, 0.0, 0.0, 0.0));
+        a.appendControl(1.0, 1.0);
+        a.appendControl(0.0, 1.0);
+        a.appendControl(-1.0, 1.0);
+        a.appendControl(-1.0, 1.0);
+        a.appendControl(0.0, 1.0);
+        a.appendControl(1.0, 1.0);
+        a.appendControl(1.0, 1.0);
+        a.appendControl(0.0, 0.5);
+        assertEquals(1.5, a.firstStateByPos(1.0).get().t(), kTestEpsilon);
+        assertEquals(3.0, a.firstStateByPos(2.0).get().t(), kTestEpsilon);
+        assertThat(a.firstStateByPos(-1.0), is(equalTo(Optional.empty())));
+        assertThat(a.firstStateByPos(2.1), is(equalTo(Optional.empty())));
+
+        // Once the first pass is trimmed, the way back is the first instance.
+        a.trimBeforeTime(4.0);
+        assertEquals(4.5, a.firstStateByPos(1.0).get().t(), kTestEpsilon);
+        assertEquals(5.0, a.firstStateByPos(0.5).get().t(), kTestEpsilon);
+        assertThat(a.firstStateByPos(2.0), is(equalTo(Optional.empty())));
+    }
+
+    @Test(timeout = 30000)
+    public void firstStateByPosShared() throws InterruptedException {
+        // Built paths hand the same profile to several threads, each of
+        // which may be the first to look up a position.
+        final int kThreads = 4;
+        AtomicReference<String> failure = new AtomicReference<>();
+        for (int n = 0; n < 200 && failure.get() == null; n++) {
+            MotionProfile a = new MotionProfile();
+            a.reset(new MotionState(0.0, 0.0, 0.0, 0.0));
+            a.appendControl(1.0, 1.0);
+            a.appendControl(0.0, 1.0);
+            a.appendControl(-1.0, 1.0);
+            a.appendControl(-1.0, 1.0);
+            a.appendControl(0.0, 1.0);
+            CountDownLatch go = new CountDownLatch(1);
+            Thread[] threads = new Thread[kThreads];
+            for (int i = 0; i < kThreads; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    Optional<MotionState> s = a.firstStateByPos(1.0);
+                    if (!s.isPresent() || Math.abs(s.get().t() - 1.5) > kTestEpsilon)
+                        failure.set("firstStateByPos(1.0) = " + s);
+                });
+                threads[i].start();
+            }
+            go.countDown();
+            for (Thread t : threads) {
+                t.join();
+            }
+        }
+        assertNull(failure.get(), failure.get());
+    }
+
+    @Test
+    public void manySegments() {
+        MotionProfile a = new MotionProfile();
+        a.reset(new MotionState(0.0, 0.0, 0.0, 0.0));
+        for (int i = 0; i < 1000; i++) {
+            a.appendControl((i % 2 == 0) ? 1.0 : -1.0, 0.1);
+        }
+        assertTrue(a.isValid());
+        for (double t = 0.0; t <= 100.0; t += 0.037) {
+            MotionState expected = null;
+            for (MotionSegment s : a.segments()) {
+                if (s.containsTime(t)) {
+                    expected = s.start().extrapolate(t);
+                    break;
+                }
+            }
+            assertEquals(expected.pos(), a.stateByTime(t).get().pos(), kTestEpsilon);
+            assertEquals(expected.pos(), a.firstStateByPos(expected.pos()).get().pos(), kTestEpsilon);
+        }
+        a.trimBeforeTime(50.05);
+        assertThat(a.size(), is(500));
+        assertEquals(50.05, a.startTime(), kTestEpsilon);
+        assertThat(a.stateByTime(50.0), is(equalTo(Optional.empty())));
+        assertEquals(50.05, a.stateByTime(50.05).get().t(), kTestEpsilon);
+    }
 }
@@ -134,4 +134,27 @@ public class ProfileFollowerTest {
         MotionState final_state = followProfile(follower, new ScaledDynamics(start_state, 1.2), dt, 2000);
         assertTrue(goal.atGoalPos(final_state.pos()));
     }
+
+    @Test
+    public void testSCurveMovingGoal() {
+        // Like PathFollower, move the goal a little every update so the
+        // profile is replanned from the current (accelerating) state.
+        MotionProfileConstraints constraints = new MotionProfileConstraints(10.0, 10.0, 100.0);
+        final double dt = 0.01;
+        ProfileFollower follower = new ProfileFollower(0.0, 0.0, 0.0, 1.0, 0.0);
+        Dynamics dynamics = new IdealDynamics(new MotionState(0.0, 0.0, 0.0, 0.0));
+        int i = 0;
+        for (; i < 1500; ++i) {
+            MotionProfileGoal goal = new MotionProfileGoal(100.0 + (i % 2) * 1E-3);
+            follower.setGoalAndConstraints(goal, constraints);
+            MotionState state = dynamics.getState();
+            dynamics.update(follower.update(state, state.t() + dt), dt);
+            if (follower.onTarget()) {
+                break;
+            }
+        }
+        // 11.1s without replanning.
+        assertTrue("took " + i * dt + "s", i * dt < 11.5);
+        assertEquals(100.0, dynamics.getState().pos(), 0.1);
+    }
 }
@@ -2,12 +2,17 @@ package com.team254.lib.util.motion;
 
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
+
 import org.junit.Test;
 
+import com.spartronics4915.lib.util.motion.MotionProfile;
+
 import com.spartronics4915.lib.util.motion.MotionProfileConstraints;
 import com.spartronics4915.lib.util.motion.MotionProfileGoal;
 import com.spartronics4915.lib.util.motion.MotionState;
 import com.spartronics4915.lib.util.motion.SetpointGenerator;
+import com.spartronics4915.lib.util.motion.MotionProfileGoal.CompletionBehavior;
 
 public class SetpointGeneratorTest {
 
@@ -92,4 +97,56 @@ public class SetpointGeneratorTest {
         final_setpoint = followProfile(spg, constraints, goal, final_setpoint, dt, 1500);
         assertTrue(goal.atGoalState(final_setpoint));
     }
+
+    @Test
+    public void testNudgeGoal() {
+        MotionProfileConstraints constraints = new MotionProfileConstraints(10.0, 10.0);
+        MotionProfileGoal goal = new MotionProfileGoal(100.0, 0.0, CompletionBehavior.OVERSHOOT, 0.5, 0.1);
+        MotionState start_state = new MotionState(0.0, 0.0, 0.0, 0.0);
+        final double dt = 0.01;
+
+        SetpointGenerator spg = new SetpointGenerator();
+        MotionState setpoint = followProfile(spg, constraints, goal, start_state, dt, 100);
+        MotionProfile profile = spg.getProfile();
+
+        // Within the goal's tolerance of where we are headed: keep the profile.
+        goal = new MotionProfileGoal(100.2, 0.0, CompletionBehavior.OVERSHOOT, 0.5, 0.1);
+        setpoint = followProfile(spg, constraints, goal, setpoint, dt, 1);
+        assertSame(profile, spg.getProfile());
+
+        // Further: replan the rest, carrying on smoothly from where we are.
+        goal = new MotionProfileGoal(50.0, 0.0, CompletionBehavior.OVERSHOOT, 0.5, 0.1);
+        MotionState next = followProfile(spg, constraints, goal, setpoint, dt, 1);
+        assertNotSame(profile, spg.getProfile());
+        assertEquals(setpoint.vel(), next.vel(), constraints.max_abs_acc() * dt + 1E-9);
+        setpoint = followProfile(spg, constraints, goal, next, dt, 1500);
+        assertTrue(goal.atGoalState(setpoint));
+    }
+
+    @Test
+    public void testFastPathAllocation() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+        MotionProfileConstraints constraints = new MotionProfileConstraints(10.0, 10.0, 100.0);
+        MotionProfileGoal goal = new MotionProfileGoal(1000.0);
+        SetpointGenerator spg = new SetpointGenerator();
+        MotionState state = new MotionState(0.0, 0.0, 0.0, 0.0);
+        final double dt = 0.01;
+        final int calls = 5000;
+        state = spg.getSetpoint(constraints, goal, state, state.t() + dt).motion_state;
+        long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < calls; i++) {
+            state = spg.getSetpoint(constraints, goal, state, state.t() + dt).motion_state;
+        }
+        double bytes = (double) (bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before) / calls;
+        System.out.println("SetpointGenerator.getSetpoint: " + bytes + " bytes/call");
+        // Just the returned MotionState (4 doubles and a header).
+        assertTrue(bytes + " bytes/call", bytes <= 64);
+    }
 }